@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of queued executions per connector instance and per context. When a limit is reached, a new
+ * execution is either rejected or the oldest queued execution of the instance or context is shed in its favor.
+ */
+public class AdmissionController {
+
+    public enum OverloadPolicy {
+        REJECT, SHED;
+    }
+
+    private volatile int maxQueueLength;
+    private volatile int maxQueueLengthPerContext;
+    private volatile OverloadPolicy overloadPolicy = OverloadPolicy.REJECT;
+
+    /**
+     * Admits the execution to the dispatcher's queue.
+     *
+     * @return the queued execution which has been removed to make room for the new one or null
+     * @throws RejectedExecutionException if the execution must not be queued
+     */
+    public MavenExecution admit(MavenExecution execution, ExecutionDispatcher dispatcher,
+            ExecutionDispatcher.ExecutionRunner owner) {
+        return admit(execution, dispatcher, owner, false);
+    }
+
+    /**
+     * Admits the execution to the dispatcher's queue. If it is going to supersede queued executions once admitted,
+     * these do not count towards the limits.
+     *
+     * @return the queued execution which has been removed to make room for the new one or null
+     * @throws RejectedExecutionException if the execution must not be queued
+     */
+    public MavenExecution admit(MavenExecution execution, ExecutionDispatcher dispatcher,
+            ExecutionDispatcher.ExecutionRunner owner, boolean superseding) {
+        if (maxQueueLengthPerContext > 0) {
+            int queued = dispatcher.getQueueLength(owner, execution.getContextId());
+            if (superseding) {
+                queued -= dispatcher.countSuperseded(owner, execution, execution.getContextId());
+            }
+            if (queued >= maxQueueLengthPerContext) {
+                return handleOverload(String.format("%d executions queued for context %s", queued,
+                    execution.getContextId()), dispatcher, owner, execution.getContextId());
+            }
+        }
+        if (maxQueueLength > 0) {
+            int queued = dispatcher.getQueueLength(owner, null);
+            if (superseding) {
+                queued -= dispatcher.countSuperseded(owner, execution, null);
+            }
+            if (queued >= maxQueueLength) {
+                return handleOverload(String.format("%d executions queued", queued), dispatcher, owner, null);
+            }
+        }
+        return null;
+    }
+
+    private MavenExecution handleOverload(String reason, ExecutionDispatcher dispatcher,
+            ExecutionDispatcher.ExecutionRunner owner, String contextId) {
+        if (overloadPolicy == OverloadPolicy.SHED) {
+            MavenExecution shed = dispatcher.removeOldest(owner, contextId);
+            if (shed != null) {
+                return shed;
+            }
+        }
+        throw new RejectedExecutionException(reason);
+    }
+
+    public void setMaxQueueLength(int maxQueueLength) {
+        this.maxQueueLength = maxQueueLength;
+    }
+
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    public void setMaxQueueLengthPerContext(int maxQueueLengthPerContext) {
+        this.maxQueueLengthPerContext = maxQueueLengthPerContext;
+    }
+
+    public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+}
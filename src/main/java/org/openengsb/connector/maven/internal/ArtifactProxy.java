@@ -0,0 +1,563 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A caching repository proxy listening on the loopback interface, which the maven runs of a node use as mirror so each
+ * artifact is downloaded once. Concurrent requests for a file that is not cached yet wait for a single download.
+ * Release artifacts are served from the cache for good, while metadata and snapshots are revalidated with conditional
+ * requests once they are older than the revalidation interval. If the upstream repositories fail, cached files are
+ * served stale.
+ */
+public class ArtifactProxy {
+
+    /**
+     * Only central goes through the proxy by default, since the credentials of other repositories are configured for
+     * their own ids and would not match the mirror.
+     */
+    public static final String DEFAULT_MIRROR_OF = "central";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactProxy.class);
+
+    private static final String META_SUFFIX = ".proxy-meta";
+    private static final int CONNECT_TIMEOUT = 10 * 1000;
+    private static final int READ_TIMEOUT = 60 * 1000;
+    private static final int IDLE_TIMEOUT = 30 * 1000;
+    private static final int MAX_HEADER_LINES = 100;
+
+    private final File cacheDir;
+    private final List<String> upstreams;
+    private final ConcurrentMap<String, FutureTask<File>> downloads = new ConcurrentHashMap<String, FutureTask<File>>();
+    private final ConcurrentMap<String, Long> missing = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile long revalidateMillis = 5 * 60 * 1000;
+    private ServerSocket serverSocket;
+    private ExecutorService workers;
+
+    public ArtifactProxy(File cacheDir, List<String> upstreams) {
+        this.cacheDir = cacheDir;
+        this.upstreams = new ArrayList<String>();
+        for (String upstream : upstreams) {
+            this.upstreams.add(upstream.endsWith("/") ? upstream : upstream + "/");
+        }
+    }
+
+    /**
+     * Returns the cache directory in the karaf data directory for the given upstream repositories.
+     */
+    public static File getCacheDirectory(List<String> upstreams) {
+        String key = UUID.nameUUIDFromBytes(upstreams.toString().getBytes(Charset.forName("UTF-8"))).toString();
+        return new File(System.getProperty("karaf.data"), "maven/proxy/cache-" + key);
+    }
+
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        workers = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "maven-artifact-proxy");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final ServerSocket socket = serverSocket;
+        final ExecutorService executor = workers;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept(socket, executor);
+            }
+        });
+        LOGGER.info("artifact proxy for {} listening on {}", upstreams, getUrl());
+    }
+
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.warn("could not close artifact proxy socket", e);
+        }
+        workers.shutdownNow();
+        serverSocket = null;
+        workers = null;
+    }
+
+    /**
+     * Returns the url maven runs on this node reach the proxy with.
+     */
+    public synchronized String getUrl() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("artifact proxy is not running");
+        }
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+    }
+
+    /**
+     * Writes a settings file making the proxy the mirror of the given repositories, e.g. "*" or "central".
+     */
+    public void writeSettings(File file, String mirrorOf) throws IOException {
+        FileUtils.writeStringToFile(file, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<settings>\n"
+                + "  <mirrors>\n"
+                + "    <mirror>\n"
+                + "      <id>openengsb-artifact-proxy</id>\n"
+                + "      <mirrorOf>" + mirrorOf + "</mirrorOf>\n"
+                + "      <url>" + getUrl() + "</url>\n"
+                + "    </mirror>\n"
+                + "  </mirrors>\n"
+                + "</settings>\n", "UTF-8");
+    }
+
+    /**
+     * Writes a settings file like {@link #writeSettings(File, String)}, which keeps the content of the given settings
+     * file, if it exists, with the proxy inserted as its first mirror.
+     */
+    public void writeSettings(File file, String mirrorOf, File base) throws IOException {
+        if (!base.isFile()) {
+            writeSettings(file, mirrorOf);
+            return;
+        }
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().parse(base);
+        } catch (Exception e) {
+            throw new IOException("invalid settings " + base + ": " + e.getMessage());
+        }
+        Element settings = document.getDocumentElement();
+        String namespace = settings.getNamespaceURI();
+        Element mirrors = null;
+        for (Node child = settings.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if ("mirrors".equals(child.getLocalName())) {
+                mirrors = (Element) child;
+            }
+        }
+        if (mirrors == null) {
+            mirrors = (Element) settings.appendChild(document.createElementNS(namespace, "mirrors"));
+        }
+        Element mirror = document.createElementNS(namespace, "mirror");
+        appendElement(mirror, "id", "openengsb-artifact-proxy");
+        appendElement(mirror, "mirrorOf", mirrorOf);
+        appendElement(mirror, "url", getUrl());
+        mirrors.insertBefore(mirror, mirrors.getFirstChild());
+        FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+        try {
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document),
+                new StreamResult(file));
+        } catch (TransformerException e) {
+            throw new IOException("could not write settings " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void appendElement(Element parent, String name, String text) {
+        Element element = parent.getOwnerDocument().createElementNS(parent.getNamespaceURI(), name);
+        element.setTextContent(text);
+        parent.appendChild(element);
+    }
+
+    private void accept(ServerSocket socket, ExecutorService executor) {
+        while (!socket.isClosed()) {
+            try {
+                final Socket client = socket.accept();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(client);
+                    }
+                });
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("artifact proxy could not accept a connection", e);
+            } catch (RuntimeException e) {
+                LOGGER.warn("artifact proxy stopped accepting connections", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of a connection, keeping it open between requests unless the client asks to close it.
+     */
+    private void serve(Socket client) {
+        try {
+            client.setSoTimeout(IDLE_TIMEOUT);
+            InputStream input = new BufferedInputStream(client.getInputStream());
+            OutputStream output = new BufferedOutputStream(client.getOutputStream());
+            boolean keepAlive = true;
+            while (keepAlive) {
+                String request = readLine(input);
+                if (request == null || request.isEmpty()) {
+                    return;
+                }
+                keepAlive = request.endsWith("HTTP/1.1");
+                for (int i = 0; i < MAX_HEADER_LINES; i++) {
+                    String header = readLine(input);
+                    if (header == null || header.isEmpty()) {
+                        break;
+                    }
+                    String lower = header.toLowerCase(Locale.ENGLISH);
+                    if (lower.startsWith("connection:")) {
+                        keepAlive = lower.contains("keep-alive") || keepAlive && !lower.contains("close");
+                    }
+                }
+                answer(request, output, keepAlive);
+                output.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("artifact proxy connection failed", e);
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOGGER.debug("could not close artifact proxy connection", e);
+            }
+        }
+    }
+
+    private void answer(String request, OutputStream output, boolean keepAlive) throws IOException {
+        String[] parts = request.split(" ");
+        if (parts.length != 3 || !"GET".equals(parts[0]) && !"HEAD".equals(parts[0])) {
+            respond(output, "405 Method Not Allowed", null, false, keepAlive);
+            return;
+        }
+        String path = toPath(parts[1]);
+        if (path == null) {
+            respond(output, "400 Bad Request", null, false, keepAlive);
+            return;
+        }
+        File file;
+        try {
+            file = resolve(path);
+        } catch (IOException e) {
+            LOGGER.warn("could not fetch {}: {}", path, e.getMessage());
+            respond(output, "502 Bad Gateway", null, false, keepAlive);
+            return;
+        }
+        respond(output, file == null ? "404 Not Found" : "200 OK", file, "GET".equals(parts[0]), keepAlive);
+    }
+
+    private static void respond(OutputStream output, String status, File file, boolean body, boolean keepAlive)
+            throws IOException {
+        StringBuilder headers = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        headers.append("Content-Length: ").append(file == null ? 0 : file.length()).append("\r\n");
+        if (file != null) {
+            headers.append("Content-Type: application/octet-stream\r\n");
+        }
+        headers.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        output.write(headers.toString().getBytes("US-ASCII"));
+        if (file != null && body) {
+            InputStream content = new FileInputStream(file);
+            try {
+                IOUtils.copy(content, output);
+            } finally {
+                content.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the repository path of a request target or null, if it is invalid.
+     */
+    static String toPath(String target) {
+        int query = target.indexOf('?');
+        String path = query < 0 ? target : target.substring(0, query);
+        try {
+            path = URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.isEmpty() || path.endsWith("/") || path.endsWith(META_SUFFIX) || path.contains("\\")) {
+            return null;
+        }
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returns the cached file for a repository path, downloading or revalidating it first if necessary, or null if no
+     * upstream repository has the file.
+     */
+    public File resolve(final String path) throws IOException {
+        final File file = new File(cacheDir, path);
+        if (file.isFile() && !isExpired(path, file)) {
+            hits.incrementAndGet();
+            return file;
+        }
+        Long missingUntil = missing.get(path);
+        if (missingUntil != null && missingUntil > System.currentTimeMillis()) {
+            return null;
+        }
+        FutureTask<File> download = new FutureTask<File>(new Callable<File>() {
+            @Override
+            public File call() throws IOException {
+                return fetch(path, file);
+            }
+        });
+        FutureTask<File> running = downloads.putIfAbsent(path, download);
+        if (running == null) {
+            try {
+                download.run();
+            } finally {
+                downloads.remove(path, download);
+            }
+        } else {
+            coalesced.incrementAndGet();
+            download = running;
+        }
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for " + path);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                : new IOException(String.valueOf(e.getCause()));
+        }
+    }
+
+    private boolean isExpired(String path, File file) {
+        if (!isMutable(path)) {
+            return false;
+        }
+        String fetched = readMeta(file).getProperty("fetched");
+        return fetched == null || System.currentTimeMillis() - Long.parseLong(fetched) >= revalidateMillis;
+    }
+
+    /**
+     * Returns whether the file at the given path may change upstream: repository metadata and snapshots.
+     */
+    static boolean isMutable(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return name.startsWith("maven-metadata") || path.contains("-SNAPSHOT/");
+    }
+
+    private File fetch(String path, File file) throws IOException {
+        Properties meta = file.isFile() ? readMeta(file) : new Properties();
+        IOException failure = null;
+        for (String upstream : upstreams) {
+            HttpURLConnection connection = (HttpURLConnection) new URL(upstream + path).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            if (file.isFile() && meta.getProperty("etag") != null) {
+                connection.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+            }
+            if (file.isFile() && meta.getProperty("lastModified") != null) {
+                connection.setRequestProperty("If-Modified-Since", meta.getProperty("lastModified"));
+            }
+            try {
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && file.isFile()) {
+                    revalidated.incrementAndGet();
+                    meta.setProperty("fetched", String.valueOf(System.currentTimeMillis()));
+                    writeMeta(file, meta);
+                    return file;
+                }
+                if (status == HttpURLConnection.HTTP_OK) {
+                    download(connection, file);
+                    downloaded.incrementAndGet();
+                    missing.remove(path);
+                    return file;
+                }
+                if (status != HttpURLConnection.HTTP_NOT_FOUND) {
+                    failure = new IOException(String.format("%s%s answered with status %d", upstream, path, status));
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                connection.disconnect();
+            }
+        }
+        if (file.isFile()) {
+            if (failure != null) {
+                LOGGER.warn("serving stale {}: {}", path, failure.getMessage());
+            }
+            return file;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        missing.put(path, System.currentTimeMillis() + revalidateMillis);
+        return null;
+    }
+
+    private void download(HttpURLConnection connection, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File temp = File.createTempFile(file.getName(), ".part", file.getParentFile());
+        try {
+            InputStream input = connection.getInputStream();
+            try {
+                OutputStream output = new FileOutputStream(temp);
+                try {
+                    IOUtils.copy(input, output);
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+            if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+                throw new IOException("could not move download to " + file);
+            }
+        } finally {
+            temp.delete();
+        }
+        Properties meta = new Properties();
+        meta.setProperty("fetched", String.valueOf(System.currentTimeMillis()));
+        if (connection.getHeaderField("ETag") != null) {
+            meta.setProperty("etag", connection.getHeaderField("ETag"));
+        }
+        if (connection.getHeaderField("Last-Modified") != null) {
+            meta.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+        }
+        writeMeta(file, meta);
+    }
+
+    private static Properties readMeta(File file) {
+        Properties meta = new Properties();
+        File metaFile = new File(file.getPath() + META_SUFFIX);
+        if (metaFile.isFile()) {
+            try {
+                InputStream input = new FileInputStream(metaFile);
+                try {
+                    meta.load(input);
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                LOGGER.debug("could not read {}", metaFile, e);
+            }
+        }
+        return meta;
+    }
+
+    private static void writeMeta(File file, Properties meta) throws IOException {
+        OutputStream output = new FileOutputStream(file.getPath() + META_SUFFIX);
+        try {
+            meta.store(output, null);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+            if (line.length() > 8192) {
+                throw new IOException("request line too long");
+            }
+        }
+        return c < 0 && line.length() == 0 ? null : line.toString();
+    }
+
+    public void setRevalidateMillis(long revalidateMillis) {
+        this.revalidateMillis = revalidateMillis;
+    }
+
+    public List<String> getUpstreams() {
+        return upstreams;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getDownloads() {
+        return downloaded.get();
+    }
+
+    public long getRevalidations() {
+        return revalidated.get();
+    }
+
+    /**
+     * Returns how many requests waited for a download started by another request.
+     */
+    public long getCoalescedRequests() {
+        return coalesced.get();
+    }
+
+}
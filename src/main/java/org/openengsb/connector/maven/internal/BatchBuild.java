@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Builds several independent projects in a single reactor run using a generated aggregator pom, so that the JVM
+ * startup and plugin resolution are paid once per batch. The results of the members are taken from the reactor
+ * summary, which names projects by their name or, without one, by their artifact id.
+ */
+public class BatchBuild {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchBuild.class);
+
+    private final File directory;
+    private final List<MavenExecution> members;
+    private final List<String> names = new ArrayList<String>();
+    private final List<String> artifactIds = new ArrayList<String>();
+
+    /**
+     * Writes the aggregator pom for the projects of the given executions into a directory below the given root. The
+     * directory only depends on the projects, so repeated batches of the same projects reuse it.
+     */
+    public BatchBuild(File root, List<MavenExecution> members) throws IOException {
+        this.members = Collections.unmodifiableList(new ArrayList<MavenExecution>(members));
+        List<String> paths = new ArrayList<String>();
+        for (MavenExecution member : members) {
+            paths.add(member.getPath().getFile().getAbsolutePath());
+        }
+        Collections.sort(paths);
+        String key = UUID.nameUUIDFromBytes(paths.toString().getBytes("UTF-8")).toString();
+        directory = new File(root, "batch-" + key).getAbsoluteFile();
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+        pom.append("  <groupId>org.openengsb.connector.maven.batch</groupId>\n");
+        pom.append("  <artifactId>").append(directory.getName()).append("</artifactId>\n");
+        pom.append("  <version>1</version>\n");
+        pom.append("  <packaging>pom</packaging>\n");
+        pom.append("  <modules>\n");
+        for (MavenExecution member : members) {
+            File project = member.getPath().getFile().getAbsoluteFile();
+            pom.append("    <module>").append(escape(relativize(directory, project))).append("</module>\n");
+            readCoordinates(new File(project, "pom.xml"));
+        }
+        pom.append("  </modules>\n");
+        pom.append("</project>\n");
+        FileUtils.writeStringToFile(new File(directory, "pom.xml"), pom.toString(), "UTF-8");
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public List<MavenExecution> getMembers() {
+        return members;
+    }
+
+    /**
+     * Returns the reactor result of the given member, SUCCESS, FAILURE or SKIPPED, or null if the summary does not
+     * mention it.
+     */
+    public String getStatus(MavenExecution member, List<BuildDiagnostics.ModuleResult> summary) {
+        int index = members.indexOf(member);
+        for (BuildDiagnostics.ModuleResult module : summary) {
+            if (matches(module.getName(), names.get(index)) || matches(module.getName(), artifactIds.get(index))) {
+                return module.getStatus();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Matches a name of the summary, which newer maven versions follow by the project version.
+     */
+    private static boolean matches(String summaryName, String name) {
+        return name != null && (summaryName.equals(name) || summaryName.startsWith(name + " "));
+    }
+
+    private void readCoordinates(File pom) {
+        String name = null;
+        String artifactId = null;
+        try {
+            Element project = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(pom).getDocumentElement();
+            for (Node child = project.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if ("name".equals(child.getNodeName())) {
+                    name = child.getTextContent().trim();
+                } else if ("artifactId".equals(child.getNodeName())) {
+                    artifactId = child.getTextContent().trim();
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("could not read " + pom, e);
+        }
+        names.add(name == null || name.contains("${") ? null : name);
+        artifactIds.add(artifactId);
+    }
+
+    /**
+     * Returns the path of the target relative to the base directory, as maven only resolves relative module paths.
+     */
+    static String relativize(File base, File target) {
+        List<String> baseParts = split(base);
+        List<String> targetParts = split(target);
+        int common = 0;
+        while (common < baseParts.size() && common < targetParts.size()
+                && baseParts.get(common).equals(targetParts.get(common))) {
+            common++;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = common; i < baseParts.size(); i++) {
+            result.append("../");
+        }
+        for (int i = common; i < targetParts.size(); i++) {
+            result.append(targetParts.get(i)).append('/');
+        }
+        return result.length() == 0 ? "." : result.substring(0, result.length() - 1);
+    }
+
+    private static List<String> split(File file) {
+        List<String> result = new ArrayList<String>();
+        for (File current = file.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+            result.add(0, current.getName().isEmpty() ? current.getPath() : current.getName());
+        }
+        return result;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Structured summary of a maven run as extracted by {@link DiagnosticsExtractor}.
+ */
+public class BuildDiagnostics {
+
+    public static final class Diagnostic {
+        private final String severity;
+        private final String module;
+        private final String file;
+        private final int line;
+        private final int column;
+        private final String message;
+
+        public Diagnostic(String severity, String module, String file, int line, int column, String message) {
+            this.severity = severity;
+            this.module = module;
+            this.file = file;
+            this.line = line;
+            this.column = column;
+            this.message = message;
+        }
+
+        public String getSeverity() {
+            return severity;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        boolean sameLocation(Diagnostic other) {
+            return file.equals(other.file) && line == other.line && column == other.column
+                    && message.equals(other.message);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s%s:[%d,%d] %s", severity, module == null ? "" : module + ": ", file, line,
+                column, message);
+        }
+    }
+
+    public static final class ModuleResult {
+        private final String name;
+        private final String status;
+        private final long millis;
+
+        public ModuleResult(String name, String status, long millis) {
+            this.name = name;
+            this.status = status;
+            this.millis = millis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the build time of the module in milliseconds or -1, if maven did not report one.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return millis < 0 ? name + " " + status : String.format("%s %s %.3f s", name, status, millis / 1000.0);
+        }
+    }
+
+    private final Boolean success;
+    private final String failingModule;
+    private final String failure;
+    private final List<Diagnostic> diagnostics;
+    private final int omittedDiagnostics;
+    private final List<ModuleResult> modules;
+    private final long totalMillis;
+
+    public BuildDiagnostics(Boolean success, String failingModule, String failure, List<Diagnostic> diagnostics,
+            int omittedDiagnostics, List<ModuleResult> modules, long totalMillis) {
+        this.success = success;
+        this.failingModule = failingModule;
+        this.failure = failure;
+        this.diagnostics = Collections.unmodifiableList(new ArrayList<Diagnostic>(diagnostics));
+        this.omittedDiagnostics = omittedDiagnostics;
+        this.modules = Collections.unmodifiableList(new ArrayList<ModuleResult>(modules));
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * Returns whether maven reported a successful build, or null if it did not report a result at all.
+     */
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public String getFailingModule() {
+        return failingModule;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public int getOmittedDiagnostics() {
+        return omittedDiagnostics;
+    }
+
+    public List<ModuleResult> getModules() {
+        return modules;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        if (success != null) {
+            result.append(success ? "BUILD SUCCESS" : "BUILD FAILURE").append("\n");
+        }
+        if (failingModule != null) {
+            result.append("failed module: ").append(failingModule).append("\n");
+        }
+        if (failure != null) {
+            result.append("failure: ").append(failure).append("\n");
+        }
+        for (Diagnostic diagnostic : diagnostics) {
+            result.append(diagnostic).append("\n");
+        }
+        if (omittedDiagnostics > 0) {
+            result.append("... ").append(omittedDiagnostics).append(" more diagnostics\n");
+        }
+        if (!modules.isEmpty()) {
+            result.append("modules:\n");
+            for (ModuleResult module : modules) {
+                result.append("  ").append(module).append("\n");
+            }
+        }
+        if (totalMillis >= 0) {
+            result.append(String.format("total time: %.3f s%n", totalMillis / 1000.0));
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages a dynamic class data sharing archive for a maven installation. The first maven process started without
+ * an archive records the classes it loads into a new archive when it exits successfully; all later processes map
+ * this archive, which saves most of the class loading and verification during JVM and maven startup. Archives
+ * require a JVM supporting <code>-XX:ArchiveClassesAtExit</code> (Java 13 and newer), on older JVMs nothing is
+ * changed.
+ */
+public class ClassDataSharing {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassDataSharing.class);
+
+    private static final Map<String, Boolean> SUPPORTED = new ConcurrentHashMap<String, Boolean>();
+
+    private final File archive;
+    private final File trainingArchive;
+    private final String javaExecutable;
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    public ClassDataSharing(File archive) {
+        this.archive = archive;
+        trainingArchive = new File(archive.getPath() + ".training");
+        javaExecutable = getJavaExecutable();
+    }
+
+    /**
+     * Returns the location of the archive for the given maven version next to its installation in
+     * <code>karaf.data</code>.
+     */
+    public static File getArchive(String mavenVersion) {
+        String name = mavenVersion == null || mavenVersion.isEmpty() ? "mvn-default" : "apache-maven-" + mavenVersion;
+        return new File(System.getProperty("karaf.data"), name + ".jsa");
+    }
+
+    public File getArchive() {
+        return archive;
+    }
+
+    /**
+     * Returns the JVM flag using or recording the archive for a new maven process or null, if the archive cannot be
+     * used right now. Flags recording the archive have to be passed back to {@link #processFinished}.
+     */
+    public String getJvmFlag() {
+        if (archive.exists()) {
+            return "-XX:SharedArchiveFile=" + archive.getAbsolutePath();
+        }
+        if (isSupported() && training.compareAndSet(false, true)) {
+            LOGGER.info("recording class data sharing archive {}", archive);
+            FileUtils.deleteQuietly(trainingArchive);
+            return "-XX:ArchiveClassesAtExit=" + trainingArchive.getAbsolutePath();
+        }
+        return null;
+    }
+
+    public void processFinished(String jvmFlag, boolean success) {
+        if (jvmFlag == null || !jvmFlag.startsWith("-XX:ArchiveClassesAtExit=")) {
+            return;
+        }
+        try {
+            if (success && trainingArchive.isFile() && trainingArchive.renameTo(archive)) {
+                LOGGER.info("class data sharing archive {} is ready", archive);
+            } else {
+                FileUtils.deleteQuietly(trainingArchive);
+            }
+        } finally {
+            training.set(false);
+        }
+    }
+
+    public void deleteArchive() {
+        FileUtils.deleteQuietly(archive);
+    }
+
+    private boolean isSupported() {
+        Boolean supported = SUPPORTED.get(javaExecutable);
+        if (supported == null) {
+            supported = probe();
+            SUPPORTED.put(javaExecutable, supported);
+        }
+        return supported;
+    }
+
+    private boolean probe() {
+        File probeArchive = new File(archive.getPath() + ".probe");
+        try {
+            Process process = new ProcessBuilder(javaExecutable, "-XX:ArchiveClassesAtExit="
+                    + probeArchive.getAbsolutePath(), "-version").redirectErrorStream(true).start();
+            IOUtils.toString(process.getInputStream());
+            boolean result = process.waitFor() == 0;
+            LOGGER.info("class data sharing archives are {}supported by {}", result ? "" : "not ", javaExecutable);
+            return result;
+        } catch (IOException e) {
+            LOGGER.warn("could not probe " + javaExecutable + " for class data sharing support", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            FileUtils.deleteQuietly(probeArchive);
+        }
+    }
+
+    private static String getJavaExecutable() {
+        String javaHome = System.getenv("JAVA_HOME");
+        if (javaHome == null || javaHome.isEmpty()) {
+            return "java";
+        }
+        return new File(javaHome, "bin/java").getPath();
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts compiler diagnostics, the failing module, the reactor summary and the build times from maven output while
+ * it is read. Only a bounded number of diagnostics and modules is kept, so memory does not grow with the output, and
+ * lines are classified by their prefix before any pattern is applied to them.
+ */
+public class DiagnosticsExtractor implements ProcessOutputListener {
+
+    public static final int MAX_DIAGNOSTICS = 100;
+    public static final int MAX_MODULES = 1000;
+    private static final int MAX_MESSAGE_LENGTH = 500;
+
+    private static final Pattern COMPILER_MESSAGE =
+        Pattern.compile("^\\[(ERROR|WARNING)\\] (\\S.*?\\.\\w+):\\[(\\d+)(?:,(\\d+))?\\] (.*)$");
+    private static final Pattern GOAL_FAILURE =
+        Pattern.compile("^\\[ERROR\\] Failed to execute goal .*? on project ([^:]+): (.*)$");
+    private static final Pattern BUILDING_MODULE =
+        Pattern.compile("^\\[INFO\\] Building ([^:]+?) \\S+(?:\\s+\\[\\d+/\\d+\\])?$");
+    private static final Pattern SUMMARY_LINE =
+        Pattern.compile("^\\[INFO\\] (.+?) \\.+ ?(SUCCESS|FAILURE|SKIPPED)(?: \\[ *([0-9.:]+) ?(s|min|h)?\\])?.*$");
+    private static final Pattern TOTAL_TIME = Pattern.compile("^\\[INFO\\] Total time: *([0-9.:]+) ?(s|min|h)?.*$");
+
+    private final List<BuildDiagnostics.Diagnostic> diagnostics = new ArrayList<BuildDiagnostics.Diagnostic>();
+    private final List<BuildDiagnostics.ModuleResult> modules = new ArrayList<BuildDiagnostics.ModuleResult>();
+    private int omittedDiagnostics;
+    private String currentModule;
+    private String failingModule;
+    private String failure;
+    private Boolean success;
+    private long totalMillis = -1;
+    private boolean inSummary;
+    private long lines;
+
+    @Override
+    public synchronized void lineRead(String line) {
+        lines++;
+        if (line.startsWith("[INFO] ")) {
+            handleInfo(line);
+        } else if (line.startsWith("[ERROR] ") || line.startsWith("[WARNING] ")) {
+            handleProblem(line);
+        }
+    }
+
+    private void handleInfo(String line) {
+        if (line.startsWith("[INFO] BUILD ")) {
+            inSummary = false;
+            if (line.startsWith("[INFO] BUILD SUCCESS")) {
+                success = true;
+            } else if (line.startsWith("[INFO] BUILD FAILURE")) {
+                success = false;
+            }
+        } else if (line.contains("Reactor Summary")) {
+            inSummary = true;
+        } else if (inSummary) {
+            Matcher matcher = SUMMARY_LINE.matcher(line);
+            if (matcher.matches() && modules.size() < MAX_MODULES) {
+                long millis = matcher.group(3) == null ? -1 : parseMillis(matcher.group(3), matcher.group(4));
+                modules.add(new BuildDiagnostics.ModuleResult(matcher.group(1), matcher.group(2), millis));
+            }
+        } else if (line.startsWith("[INFO] Building ")) {
+            Matcher matcher = BUILDING_MODULE.matcher(line);
+            if (matcher.matches()) {
+                currentModule = matcher.group(1);
+            }
+        } else if (line.startsWith("[INFO] Total time:")) {
+            Matcher matcher = TOTAL_TIME.matcher(line);
+            if (matcher.matches()) {
+                totalMillis = parseMillis(matcher.group(1), matcher.group(2));
+            }
+        }
+    }
+
+    private void handleProblem(String line) {
+        if (line.startsWith("[ERROR] Failed to execute goal ")) {
+            Matcher matcher = GOAL_FAILURE.matcher(line);
+            if (matcher.matches() && failingModule == null) {
+                failingModule = matcher.group(1);
+                failure = truncate(matcher.group(2));
+            }
+            return;
+        }
+        if (line.indexOf(":[") < 0) {
+            return;
+        }
+        Matcher matcher = COMPILER_MESSAGE.matcher(line);
+        if (!matcher.matches()) {
+            return;
+        }
+        BuildDiagnostics.Diagnostic diagnostic = new BuildDiagnostics.Diagnostic(matcher.group(1), currentModule,
+            matcher.group(2), Integer.parseInt(matcher.group(3)),
+            matcher.group(4) == null ? 0 : Integer.parseInt(matcher.group(4)), truncate(matcher.group(5)));
+        for (BuildDiagnostics.Diagnostic existing : diagnostics) {
+            if (existing.sameLocation(diagnostic)) {
+                return;
+            }
+        }
+        if (diagnostics.size() < MAX_DIAGNOSTICS) {
+            diagnostics.add(diagnostic);
+        } else {
+            omittedDiagnostics++;
+        }
+    }
+
+    public synchronized boolean hasOutput() {
+        return lines > 0;
+    }
+
+    public synchronized BuildDiagnostics getResult() {
+        return new BuildDiagnostics(success, failingModule, failure, diagnostics, omittedDiagnostics, modules,
+            totalMillis);
+    }
+
+    /**
+     * Parses the durations maven prints, like <code>1.234s</code>, <code>1.234 s</code> or <code>01:02 min</code>.
+     */
+    static long parseMillis(String value, String unit) {
+        double seconds = 0;
+        String[] parts = value.split(":");
+        for (String part : parts) {
+            seconds = seconds * 60 + (part.isEmpty() ? 0 : Double.parseDouble(part));
+        }
+        if (parts.length == 1 && "min".equals(unit)) {
+            seconds *= 60;
+        } else if (parts.length == 1 && "h".equals(unit)) {
+            seconds *= 3600;
+        } else if (parts.length == 2 && "h".equals(unit)) {
+            seconds *= 60;
+        }
+        return Math.round(seconds * 1000);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) + "..." : message;
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps an exponentially weighted moving average of the wall time of recent executions per key, so that recent runs
+ * count most while single outliers do not dominate the estimate.
+ */
+public class DurationModel {
+
+    private static final double WEIGHT = 0.3;
+    private static final int MAX_KEYS = 1000;
+
+    private final Map<String, Double> averages = new LinkedHashMap<String, Double>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+
+    /**
+     * Returns the expected duration in milliseconds or -1, if no execution with this key has been recorded.
+     */
+    public synchronized long estimate(String key) {
+        Double average = averages.get(key);
+        return average == null ? -1 : Math.round(average);
+    }
+
+    public synchronized void record(String key, long millis) {
+        Double average = averages.get(key);
+        averages.put(key, average == null ? millis : average + WEIGHT * (millis - average));
+    }
+
+}
@@ -0,0 +1,677 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Distributes maven executions over a set of worker nodes. Every node has its own queue and one thread per slot.
+ * New executions are placed on the node with the lowest load, preferring nodes which already executed the same
+ * project (warm local repository and build output). Idle slots steal queued executions from other nodes. Executions
+ * on the same project directory never run concurrently, since they would share the target directory.
+ */
+public class ExecutionDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionDispatcher.class);
+
+    private static final double WARM_BONUS = 0.5;
+    private static final long THROTTLE_RECHECK_MILLIS = 1000;
+    static final long DEFAULT_EXPECTED_MILLIS = 60 * 1000;
+    static final long STARVATION_LIMIT_MILLIS = 10 * 60 * 1000;
+
+    /**
+     * Order in which a node takes its queued executions. SHORTEST_FIRST picks the execution with the highest response
+     * ratio (waiting time plus expected duration divided by expected duration), which prefers short executions while
+     * the ratio of long ones keeps growing as they wait; executions waiting longer than ten minutes go first in any
+     * case.
+     */
+    public enum QueueOrder {
+        FIFO, SHORTEST_FIRST
+    }
+
+    /**
+     * Decides what happens to older executions of the same operations on the same path when a new one is submitted:
+     * nothing, queued ones are dropped, or additionally running ones are stopped.
+     */
+    public enum SupersedePolicy {
+        NONE, QUEUED, RUNNING
+    }
+
+    public interface ExecutionRunner {
+        void run(MavenExecution execution, WorkerNode node);
+    }
+
+    static final class Job {
+        private final MavenExecution execution;
+        private final ExecutionRunner runner;
+        private final String path;
+        private final Set<String> paths = new HashSet<String>();
+        private final long sequence;
+        private final boolean localOnly;
+        private final long enqueued = System.currentTimeMillis();
+        private long started;
+        private boolean serialized;
+
+        private Job(MavenExecution execution, ExecutionRunner runner, long sequence) {
+            this.execution = execution;
+            this.runner = runner;
+            this.sequence = sequence;
+            localOnly = execution.isLocalOnly();
+            path = execution.getPath().getFile().getAbsolutePath();
+            paths.add(path);
+            if (execution.getBatch() != null) {
+                for (MavenExecution member : execution.getBatch().getMembers()) {
+                    paths.add(member.getPath().getFile().getAbsolutePath());
+                }
+            }
+        }
+
+        private long getExpectedMillis() {
+            long expected = execution.getExpectedMillis();
+            return expected > 0 ? expected : DEFAULT_EXPECTED_MILLIS;
+        }
+
+        MavenExecution getExecution() {
+            return execution;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final String name;
+    private final List<WorkerNode> nodes;
+    private final boolean hasLocalNode;
+    private final Set<String> busyPaths = new HashSet<String>();
+    private final Map<Job, WorkerNode> runningJobs = new HashMap<Job, WorkerNode>();
+    private final Map<ExecutionRunner, Integer> quotas = new HashMap<ExecutionRunner, Integer>();
+    private final Set<ExecutionRunner> parallelOwners = new HashSet<ExecutionRunner>();
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private volatile boolean running = true;
+    private ExecutionDispatcher successor;
+    private long sequence;
+    private volatile double maxLoadPerCpu;
+    private volatile long minFreeMemory;
+    private volatile boolean serializePaths = true;
+    private volatile QueueOrder queueOrder = QueueOrder.FIFO;
+
+    public ExecutionDispatcher(String name, List<WorkerNode> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("at least one worker node is required");
+        }
+        this.name = name;
+        this.nodes = new ArrayList<WorkerNode>(nodes);
+        boolean local = false;
+        for (WorkerNode node : nodes) {
+            local |= node.isLocal();
+            for (int i = 0; i < node.getSlots(); i++) {
+                Thread thread = new Thread(new Worker(node), String.format("maven-%s-%s-%d", name, node, i));
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+        hasLocalNode = local;
+    }
+
+    public void submit(MavenExecution execution, ExecutionRunner runner) {
+        synchronized (lock) {
+            if (!running) {
+                if (successor == null) {
+                    throw new IllegalStateException("dispatcher " + name + " has been shut down");
+                }
+                successor.submit(execution, runner);
+                return;
+            }
+            Job job = new Job(execution, runner, sequence++);
+            WorkerNode node = selectNode(job);
+            LOGGER.debug("queueing {} on node {}", execution, node);
+            node.getQueue().add(job);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Runs the execution in the calling thread on the node which would have been selected for it.
+     */
+    public void runNow(MavenExecution execution, ExecutionRunner runner) {
+        Job job = new Job(execution, runner, 0);
+        WorkerNode node;
+        synchronized (lock) {
+            node = selectNode(job);
+            while (isSerialized(job, node) && isBusy(job)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for " + job.path, e);
+                }
+            }
+            if (isSerialized(job, node)) {
+                job.serialized = true;
+                busyPaths.addAll(job.paths);
+            }
+            node.started(job.path);
+            job.started = System.currentTimeMillis();
+            runningJobs.put(job, node);
+        }
+        try {
+            runner.run(execution, node);
+        } finally {
+            finished(node, job);
+        }
+    }
+
+    public boolean hasLocalNode() {
+        return hasLocalNode;
+    }
+
+    public int getQueueLength() {
+        synchronized (lock) {
+            int result = 0;
+            for (WorkerNode node : nodes) {
+                result += node.getQueue().size();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the number of queued executions of the given runner, restricted to the given context if it is not null.
+     */
+    public int getQueueLength(ExecutionRunner owner, String contextId) {
+        synchronized (lock) {
+            int result = 0;
+            for (WorkerNode node : nodes) {
+                for (Job job : node.getQueue()) {
+                    if (matches(job, owner, contextId)) {
+                        result++;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Removes the oldest queued execution of the given runner, restricted to the given context if it is not null.
+     */
+    public MavenExecution removeOldest(ExecutionRunner owner, String contextId) {
+        synchronized (lock) {
+            Job oldest = null;
+            WorkerNode oldestNode = null;
+            for (WorkerNode node : nodes) {
+                for (Job job : node.getQueue()) {
+                    if (matches(job, owner, contextId) && (oldest == null || job.sequence < oldest.sequence)) {
+                        oldest = job;
+                        oldestNode = node;
+                    }
+                }
+            }
+            if (oldest == null) {
+                return null;
+            }
+            oldestNode.getQueue().remove(oldest);
+            return oldest.execution;
+        }
+    }
+
+    /**
+     * Removes the queued executions of the given runner which the given execution makes obsolete.
+     */
+    public List<MavenExecution> removeSuperseded(ExecutionRunner owner, MavenExecution newer) {
+        List<MavenExecution> result = new ArrayList<MavenExecution>();
+        synchronized (lock) {
+            for (WorkerNode node : nodes) {
+                Iterator<Job> jobs = node.getQueue().iterator();
+                while (jobs.hasNext()) {
+                    Job job = jobs.next();
+                    if (job.runner == owner && job.execution != newer && newer.hasSameTarget(job.execution)) {
+                        jobs.remove();
+                        result.add(job.execution);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of queued executions of the given runner the newer one would supersede, restricted to the
+     * given context if it is not null.
+     */
+    public int countSuperseded(ExecutionRunner owner, MavenExecution newer, String contextId) {
+        synchronized (lock) {
+            int result = 0;
+            for (WorkerNode node : nodes) {
+                for (Job job : node.getQueue()) {
+                    if (matches(job, owner, contextId) && job.execution != newer
+                            && newer.hasSameTarget(job.execution)) {
+                        result++;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static boolean matches(Job job, ExecutionRunner owner, String contextId) {
+        return job.runner == owner && (contextId == null || contextId.equals(job.execution.getContextId()));
+    }
+
+    /**
+     * Controls whether executions on the same path wait for each other, which is required unless every execution runs
+     * in a working copy of its own.
+     */
+    public void setSerializePaths(boolean serializePaths) {
+        synchronized (lock) {
+            this.serializePaths = serializePaths;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Controls whether the executions of the given runner wait for other executions on the same path. Runners sharing
+     * the dispatcher may differ in this, depending on whether they use working copies.
+     */
+    public void setSerializePaths(ExecutionRunner owner, boolean serializePaths) {
+        synchronized (lock) {
+            if (serializePaths) {
+                parallelOwners.remove(owner);
+            } else {
+                parallelOwners.add(owner);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Working copies are only available on local nodes and never used for batches, so these executions always wait
+     * for each other.
+     */
+    private boolean isSerialized(Job job, WorkerNode node) {
+        return serializePaths
+            && (!parallelOwners.contains(job.runner) || !node.isLocal() || job.execution.getBatch() != null);
+    }
+
+    /**
+     * Returns whether a running execution uses one of the project directories of the job, which are the member
+     * projects as well for a batch.
+     */
+    private boolean isBusy(Job job) {
+        for (String path : job.paths) {
+            if (busyPaths.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Limits the number of executions of the given runner running at the same time, so that a single runner cannot
+     * occupy all slots of a shared dispatcher. A quota of 0 removes the limit.
+     */
+    public void setQuota(ExecutionRunner owner, int maxRunning) {
+        synchronized (lock) {
+            if (maxRunning > 0) {
+                quotas.put(owner, maxRunning);
+            } else {
+                quotas.remove(owner);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private boolean isAtQuota(ExecutionRunner owner) {
+        Integer quota = quotas.get(owner);
+        if (quota == null) {
+            return false;
+        }
+        int running = 0;
+        for (Job job : runningJobs.keySet()) {
+            if (job.runner == owner) {
+                running++;
+            }
+        }
+        return running >= quota;
+    }
+
+    /**
+     * Moves the queued executions of the given runner to another dispatcher and forgets the runner's settings.
+     * Executions of the runner which are already running finish here.
+     */
+    public void transfer(ExecutionRunner owner, ExecutionDispatcher target) {
+        for (Job job : removeOwner(owner)) {
+            target.submit(job.execution, job.runner);
+        }
+    }
+
+    /**
+     * Removes the queued executions of the given runner and forgets the runner's settings. Executions of the runner
+     * which are already running finish here.
+     */
+    public List<MavenExecution> release(ExecutionRunner owner) {
+        List<MavenExecution> result = new ArrayList<MavenExecution>();
+        for (Job job : removeOwner(owner)) {
+            result.add(job.execution);
+        }
+        return result;
+    }
+
+    private List<Job> removeOwner(ExecutionRunner owner) {
+        List<Job> pending = new ArrayList<Job>();
+        synchronized (lock) {
+            for (WorkerNode node : nodes) {
+                for (Job job : node.getQueue()) {
+                    if (job.runner == owner) {
+                        pending.add(job);
+                    }
+                }
+                node.getQueue().removeAll(pending);
+            }
+            quotas.remove(owner);
+            parallelOwners.remove(owner);
+            lock.notifyAll();
+        }
+        return pending;
+    }
+
+    /**
+     * Holds back queued executions on local nodes while the host load per cpu exceeds the given maximum or the free
+     * memory drops below the given minimum. A local node always runs at least one execution, a value of 0 disables
+     * the respective check.
+     */
+    public void setThrottle(double maxLoadPerCpu, long minFreeMemory) {
+        this.maxLoadPerCpu = maxLoadPerCpu;
+        this.minFreeMemory = minFreeMemory;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private boolean isThrottled(WorkerNode node) {
+        if (!node.isLocal() || node.getRunning() == 0) {
+            return false;
+        }
+        if (maxLoadPerCpu > 0 && HostLoad.getLoadPerCpu() > maxLoadPerCpu) {
+            return true;
+        }
+        long freeMemory = HostLoad.getFreeMemory();
+        return minFreeMemory > 0 && freeMemory >= 0 && freeMemory < minFreeMemory;
+    }
+
+    public int getRunningCount() {
+        synchronized (lock) {
+            int result = 0;
+            for (WorkerNode node : nodes) {
+                result += node.getRunning();
+            }
+            return result;
+        }
+    }
+
+    public List<WorkerNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Stops accepting executions and lets the worker threads finish their current execution. Executions still queued
+     * are moved to the given dispatcher, if any.
+     */
+    public void shutdown(ExecutionDispatcher successor) {
+        List<Job> pending = new ArrayList<Job>();
+        synchronized (lock) {
+            running = false;
+            this.successor = successor;
+            for (WorkerNode node : nodes) {
+                pending.addAll(node.getQueue());
+                node.getQueue().clear();
+            }
+            lock.notifyAll();
+        }
+        if (successor != null) {
+            for (Job job : pending) {
+                successor.submit(job.execution, job.runner);
+            }
+        } else if (!pending.isEmpty()) {
+            LOGGER.warn("dispatcher {} discarded {} queued executions", name, pending.size());
+        }
+    }
+
+    private WorkerNode selectNode(Job job) {
+        double localLoad = Math.max(0, HostLoad.getLoadPerCpu() - 1);
+        WorkerNode result = null;
+        double best = Double.MAX_VALUE;
+        for (WorkerNode node : nodes) {
+            if (!canRun(node, job)) {
+                continue;
+            }
+            double score = (double) (node.getQueue().size() + node.getRunning()) / node.getSlots();
+            if (node.isLocal()) {
+                score += localLoad;
+            }
+            if (node.isWarm(job.path)) {
+                score -= WARM_BONUS;
+            }
+            if (score < best) {
+                best = score;
+                result = node;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executions with a pinned maven version only run on local nodes, unless there are none, in which case the runner
+     * has to fail them.
+     */
+    private boolean canRun(WorkerNode node, Job job) {
+        return node.isLocal() || !job.localOnly || !hasLocalNode;
+    }
+
+    private Job take(WorkerNode node) throws InterruptedException {
+        synchronized (lock) {
+            while (running) {
+                if (isThrottled(node)) {
+                    lock.wait(THROTTLE_RECHECK_MILLIS);
+                    continue;
+                }
+                Job job = pollRunnable(node, node);
+                if (job == null) {
+                    job = steal(node);
+                }
+                if (job != null) {
+                    if (isSerialized(job, node)) {
+                        job.serialized = true;
+                        busyPaths.addAll(job.paths);
+                    }
+                    node.started(job.path);
+                    job.started = System.currentTimeMillis();
+                    runningJobs.put(job, node);
+                    return job;
+                }
+                lock.wait();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Removes the next job of the queue of the given node which may start on the given target node now.
+     */
+    private Job pollRunnable(WorkerNode node, WorkerNode target) {
+        Comparator<Job> order = getOrder(System.currentTimeMillis());
+        Job result = null;
+        for (Job job : node.getQueue()) {
+            if (canRun(target, job) && (!isSerialized(job, target) || !isBusy(job))
+                    && !isAtQuota(job.runner) && (result == null || order.compare(job, result) < 0)) {
+                result = job;
+                if (queueOrder == QueueOrder.FIFO) {
+                    break;
+                }
+            }
+        }
+        if (result != null) {
+            node.getQueue().remove(result);
+        }
+        return result;
+    }
+
+    private Comparator<Job> getOrder(final long now) {
+        if (queueOrder == QueueOrder.FIFO) {
+            return new Comparator<Job>() {
+                @Override
+                public int compare(Job job1, Job job2) {
+                    return Long.valueOf(job1.sequence).compareTo(job2.sequence);
+                }
+            };
+        }
+        return new Comparator<Job>() {
+            @Override
+            public int compare(Job job1, Job job2) {
+                boolean starved1 = now - job1.enqueued >= STARVATION_LIMIT_MILLIS;
+                boolean starved2 = now - job2.enqueued >= STARVATION_LIMIT_MILLIS;
+                if (starved1 != starved2) {
+                    return starved1 ? -1 : 1;
+                }
+                if (!starved1) {
+                    int result = Double.compare(responseRatio(job2, now), responseRatio(job1, now));
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return Long.valueOf(job1.sequence).compareTo(job2.sequence);
+            }
+        };
+    }
+
+    private static double responseRatio(Job job, long now) {
+        double expected = job.getExpectedMillis();
+        return (now - job.enqueued + expected) / expected;
+    }
+
+    /**
+     * Estimates when the execution with the given key will be finished from the expected durations of the executions
+     * running on its node and queued before it. Returns the estimated time in milliseconds since the epoch or -1, if
+     * the execution is neither queued nor running.
+     */
+    public long estimateCompletion(String key) {
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            for (Job job : runningJobs.keySet()) {
+                if (job.execution.getKey().equals(key)) {
+                    return Math.max(now, job.started + job.getExpectedMillis());
+                }
+            }
+            for (WorkerNode node : nodes) {
+                List<Job> queue = new ArrayList<Job>(node.getQueue());
+                Collections.sort(queue, getOrder(now));
+                long ahead = 0;
+                for (Map.Entry<Job, WorkerNode> running : runningJobs.entrySet()) {
+                    if (running.getValue() == node) {
+                        Job job = running.getKey();
+                        ahead += Math.max(0, job.started + job.getExpectedMillis() - now);
+                    }
+                }
+                for (Job job : queue) {
+                    if (job.execution.getKey().equals(key)) {
+                        return now + ahead / node.getSlots() + job.getExpectedMillis();
+                    }
+                    ahead += job.getExpectedMillis();
+                }
+            }
+            return -1;
+        }
+    }
+
+    public void setQueueOrder(QueueOrder queueOrder) {
+        synchronized (lock) {
+            this.queueOrder = queueOrder;
+        }
+    }
+
+    private Job steal(WorkerNode thief) {
+        List<WorkerNode> victims = new ArrayList<WorkerNode>(nodes);
+        victims.remove(thief);
+        Collections.sort(victims, new Comparator<WorkerNode>() {
+            @Override
+            public int compare(WorkerNode n1, WorkerNode n2) {
+                return Integer.valueOf(n2.getQueue().size()).compareTo(n1.getQueue().size());
+            }
+        });
+        for (WorkerNode victim : victims) {
+            Job job = pollRunnable(victim, thief);
+            if (job != null) {
+                LOGGER.debug("node {} steals {} from node {}", new Object[]{ thief, job.execution, victim });
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private void finished(WorkerNode node, Job job) {
+        synchronized (lock) {
+            if (job.serialized) {
+                busyPaths.removeAll(job.paths);
+            }
+            runningJobs.remove(job);
+            node.finished();
+            lock.notifyAll();
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final WorkerNode node;
+
+        public Worker(WorkerNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Job job;
+                try {
+                    job = take(node);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job == null) {
+                    return;
+                }
+                try {
+                    job.runner.run(job.execution, node);
+                } catch (RuntimeException e) {
+                    LOGGER.error("execution " + job.execution + " failed on node " + node, e);
+                } finally {
+                    finished(node, job);
+                }
+            }
+        }
+    }
+
+}
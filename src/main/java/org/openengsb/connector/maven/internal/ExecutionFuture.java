@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Result of an execution started through the asynchronous methods of the maven service. It completes with the results
+ * of all operations once the last of their success or fail events has been raised, and passes the progress to its
+ * listeners. Listeners added after completion are informed about the completion right away. Executions cannot be
+ * cancelled.
+ */
+public class ExecutionFuture implements Future<List<OperationResult>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionFuture.class);
+
+    private final String id;
+    private final int operations;
+    private final List<OperationResult> results = new ArrayList<OperationResult>();
+    private final List<ExecutionListener> listeners = new CopyOnWriteArrayList<ExecutionListener>();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    public ExecutionFuture(String id, int operations) {
+        this.id = id;
+        this.operations = operations;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void addListener(ExecutionListener listener) {
+        synchronized (results) {
+            if (done.getCount() > 0) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        notifyFinished(listener, getResults());
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public List<OperationResult> get() throws InterruptedException {
+        done.await();
+        return getResults();
+    }
+
+    @Override
+    public List<OperationResult> get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("execution " + id + " is not finished yet");
+        }
+        return getResults();
+    }
+
+    /**
+     * Waits for the execution and returns whether all of its operations succeeded.
+     */
+    public boolean isSuccess() throws InterruptedException {
+        for (OperationResult result : get()) {
+            if (!result.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void operationStarted(MavenOperation operation) {
+        for (ExecutionListener listener : listeners) {
+            try {
+                listener.operationStarted(operation);
+            } catch (RuntimeException e) {
+                LOGGER.warn("execution listener failed", e);
+            }
+        }
+    }
+
+    void lineRead(String line) {
+        for (ExecutionListener listener : listeners) {
+            try {
+                listener.lineRead(line);
+            } catch (RuntimeException e) {
+                LOGGER.warn("execution listener failed", e);
+            }
+        }
+    }
+
+    void operationFinished(OperationResult result) {
+        boolean complete;
+        synchronized (results) {
+            if (done.getCount() == 0) {
+                return;
+            }
+            results.add(result);
+            complete = results.size() == operations;
+        }
+        for (ExecutionListener listener : listeners) {
+            try {
+                listener.operationFinished(result);
+            } catch (RuntimeException e) {
+                LOGGER.warn("execution listener failed", e);
+            }
+        }
+        if (complete) {
+            List<ExecutionListener> finishedListeners;
+            synchronized (results) {
+                done.countDown();
+                finishedListeners = new ArrayList<ExecutionListener>(listeners);
+                listeners.clear();
+            }
+            for (ExecutionListener listener : finishedListeners) {
+                notifyFinished(listener, getResults());
+            }
+        }
+    }
+
+    private List<OperationResult> getResults() {
+        synchronized (results) {
+            return Collections.unmodifiableList(new ArrayList<OperationResult>(results));
+        }
+    }
+
+    private static void notifyFinished(ExecutionListener listener, List<OperationResult> results) {
+        try {
+            listener.executionFinished(results);
+        } catch (RuntimeException e) {
+            LOGGER.warn("execution listener failed", e);
+        }
+    }
+
+}
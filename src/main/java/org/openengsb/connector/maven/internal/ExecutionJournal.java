@@ -0,0 +1,410 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of submitted, started and finished executions, kept in a memory mapped file. Appending only
+ * copies the record into the mapping, the mapping is forced to disk by a committer thread in fixed intervals, so all
+ * submissions arriving during one interval share a single disk sync. Submissions wait for their commit, start and
+ * finish records do not. When the mapping is full, the journal is compacted into a new file containing only
+ * the executions which have not finished yet.
+ */
+public class ExecutionJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionJournal.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte SUBMIT = 1;
+    private static final byte START = 2;
+    private static final byte FINISH = 3;
+
+    private static final int RECORD_HEADER = 8;
+    private static final long NO_PROCESS_ID = Long.MIN_VALUE;
+
+    public enum RecoveryPolicy {
+        NONE, REQUEUE, FAIL;
+    }
+
+    private final File file;
+    private final long commitInterval;
+    private final Map<String, byte[]> pending = new LinkedHashMap<String, byte[]>();
+    private final List<MavenExecution> recovered = new ArrayList<MavenExecution>();
+    private final Map<String, String> recoveredVersions = new HashMap<String, String>();
+    private final Thread committer;
+
+    private int capacity;
+    private MappedByteBuffer buffer;
+    private long appended;
+    private long committed;
+    private boolean closed;
+
+    public ExecutionJournal(File file, int capacity, long commitInterval) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        this.commitInterval = commitInterval;
+        FileUtils.forceMkdir(file.getParentFile());
+        File newFile = getNewFile();
+        if (!file.exists() && newFile.exists() && !newFile.renameTo(file)) {
+            throw new IOException("could not restore journal " + file + " from " + newFile);
+        }
+        if (file.exists()) {
+            readRecords(map(file, Math.max(capacity, (int) file.length())));
+            for (byte[] record : pending.values()) {
+                recovered.add(readExecution(ByteBuffer.wrap(record, RECORD_HEADER + 1, record.length
+                        - RECORD_HEADER - 1)));
+            }
+        }
+        rewrite();
+        committer = new Thread(new Committer(), "maven-journal-" + file.getName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Returns the executions which were submitted but not finished when the journal was opened.
+     */
+    public List<MavenExecution> getIncompleteExecutions() {
+        return recovered;
+    }
+
+    /**
+     * Returns the maven version the given incomplete execution was submitted with, an empty string for the maven on
+     * the path, or null if the journal does not tell.
+     */
+    public String getToolchainVersion(MavenExecution execution) {
+        return recoveredVersions.get(execution.getKey());
+    }
+
+    /**
+     * Records the submission and waits until it has been committed to disk.
+     */
+    public void submitted(MavenExecution execution) {
+        byte[] record = createRecord(SUBMIT, execution);
+        long sequence;
+        synchronized (this) {
+            pending.put(execution.getKey(), record);
+            sequence = append(record);
+        }
+        awaitCommit(sequence);
+    }
+
+    public void started(MavenExecution execution) {
+        byte[] record = createRecord(START, execution);
+        synchronized (this) {
+            append(record);
+        }
+    }
+
+    public void finished(MavenExecution execution) {
+        byte[] record = createRecord(FINISH, execution);
+        synchronized (this) {
+            pending.remove(execution.getKey());
+            append(record);
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    private long append(byte[] record) {
+        if (closed) {
+            throw new IllegalStateException("journal " + file + " is closed");
+        }
+        if (buffer.remaining() < record.length + 4) {
+            try {
+                rewrite();
+            } catch (IOException e) {
+                throw new IllegalStateException("could not compact journal " + file, e);
+            }
+        }
+        buffer.put(record);
+        appended++;
+        notifyAll();
+        return appended;
+    }
+
+    private synchronized void awaitCommit(long sequence) {
+        boolean interrupted = false;
+        while (committed < sequence && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes all pending submissions to a new journal file which replaces the current one.
+     */
+    private void rewrite() throws IOException {
+        int size = 0;
+        for (byte[] record : pending.values()) {
+            size += record.length;
+        }
+        while (capacity < size * 2) {
+            capacity *= 2;
+        }
+        File newFile = getNewFile();
+        FileUtils.deleteQuietly(newFile);
+        MappedByteBuffer newBuffer = map(newFile, capacity);
+        for (byte[] record : pending.values()) {
+            newBuffer.put(record);
+        }
+        newBuffer.force();
+        // renaming over the journal replaces it atomically where the platform supports it; elsewhere the old journal
+        // has to be deleted first, and a crash in between leaves the new one, which is picked up on the next start
+        if (!newFile.renameTo(file) && (file.exists() && !file.delete() || !newFile.renameTo(file))) {
+            throw new IOException("could not replace journal " + file);
+        }
+        buffer = newBuffer;
+        committed = appended;
+    }
+
+    private File getNewFile() {
+        return new File(file.getPath() + ".new");
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void readRecords(ByteBuffer records) {
+        while (records.remaining() > RECORD_HEADER) {
+            int start = records.position();
+            int length = records.getInt();
+            int checksum = records.getInt();
+            if (length <= RECORD_HEADER || length > records.remaining() + RECORD_HEADER) {
+                break;
+            }
+            byte[] record = new byte[length];
+            records.position(start);
+            records.get(record);
+            if (checksum(record) != checksum) {
+                LOGGER.warn("journal {} ends with a torn record at offset {}", file, start);
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.wrap(record, RECORD_HEADER, length - RECORD_HEADER);
+            byte type = payload.get();
+            String key = readString(payload);
+            if (type == SUBMIT) {
+                pending.put(key, record);
+            } else if (type == FINISH) {
+                pending.remove(key);
+            }
+        }
+    }
+
+    private static byte[] createRecord(byte type, MavenExecution execution) {
+        ByteBuffer payload = ByteBuffer.allocate(256);
+        payload.put(type);
+        payload = writeString(payload, execution.getKey());
+        if (type == SUBMIT) {
+            payload = writeString(payload, execution.getId());
+            payload = ensureCapacity(payload, 12 + execution.getOperations().size());
+            payload.putLong(execution.hasProcessId() ? execution.getProcessId() : NO_PROCESS_ID);
+            payload.putInt(execution.getOperations().size());
+            for (MavenOperation operation : execution.getOperations()) {
+                payload.put((byte) operation.ordinal());
+            }
+            payload = writeString(payload, execution.getPath().getFile().getAbsolutePath());
+            payload = writeString(payload, execution.getContextId());
+            List<MavenExecution> members = execution.getBatch() == null ? Collections.<MavenExecution>emptyList()
+                : execution.getBatch().getMembers();
+            payload = ensureCapacity(payload, 4).putInt(members.size());
+            for (MavenExecution member : members) {
+                payload = writeString(payload, member.getId());
+                payload = writeString(payload, member.getPath().getFile().getAbsolutePath());
+            }
+            payload = ensureCapacity(payload, 5);
+            payload.put((byte) (execution.isFailedTestsOnly() ? 1 : 0));
+            payload.putInt(execution.getModules().size());
+            for (String module : execution.getModules()) {
+                payload = writeString(payload, module);
+            }
+            payload = writeString(payload, execution.getToolchain() == null ? null
+                : execution.getToolchain().getVersion());
+        }
+        payload.flip();
+        byte[] record = new byte[RECORD_HEADER + payload.remaining()];
+        payload.get(record, RECORD_HEADER, payload.limit());
+        ByteBuffer header = ByteBuffer.wrap(record);
+        header.putInt(record.length);
+        header.putInt(checksum(record));
+        return record;
+    }
+
+    private MavenExecution readExecution(ByteBuffer payload) {
+        try {
+            String key = readString(payload);
+            String id = readString(payload);
+            long processId = payload.getLong();
+            List<MavenOperation> operations = new ArrayList<MavenOperation>();
+            for (int i = payload.getInt(); i > 0; i--) {
+                operations.add(MavenOperation.values()[payload.get()]);
+            }
+            OpenEngSBFileModel path = new OpenEngSBFileModel();
+            path.setFile(new File(readString(payload)));
+            MavenExecution execution = new MavenExecution(key, id, processId == NO_PROCESS_ID ? null : processId,
+                path, operations);
+            execution.setContextId(readString(payload));
+            // journals written by earlier versions end here or after the batch members
+            int memberCount = payload.hasRemaining() ? payload.getInt() : 0;
+            if (memberCount > 0) {
+                List<MavenExecution> members = new ArrayList<MavenExecution>();
+                for (int i = 0; i < memberCount; i++) {
+                    String memberId = readString(payload);
+                    OpenEngSBFileModel memberPath = new OpenEngSBFileModel();
+                    memberPath.setFile(new File(readString(payload)));
+                    members.add(new MavenExecution(memberId, null, memberPath, MavenOperation.BUILD));
+                }
+                execution.setBatch(restoreBatch(path.getFile(), members));
+            }
+            if (payload.hasRemaining()) {
+                execution.setFailedTestsOnly(payload.get() != 0);
+                List<String> modules = new ArrayList<String>();
+                for (int i = payload.getInt(); i > 0; i--) {
+                    modules.add(readString(payload));
+                }
+                execution.setModules(modules);
+                recoveredVersions.put(key, readString(payload));
+            }
+            return execution;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("corrupt submit record in execution journal", e);
+        }
+    }
+
+    /**
+     * Recreates the batch, whose aggregator directory only depends on the member projects.
+     */
+    private static BatchBuild restoreBatch(File directory, List<MavenExecution> members) {
+        try {
+            return new BatchBuild(directory.getParentFile(), members);
+        } catch (IOException e) {
+            throw new IllegalStateException("could not restore the aggregator of batch " + directory, e);
+        }
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, record.length - RECORD_HEADER);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            return ensureCapacity(buffer, 4).putInt(-1);
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        ByteBuffer result = ensureCapacity(buffer, 4 + bytes.length);
+        result.putInt(bytes.length);
+        result.put(bytes);
+        return result;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if (buffer.remaining() >= required) {
+            return buffer;
+        }
+        ByteBuffer result = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + required));
+        buffer.flip();
+        result.put(buffer);
+        return result;
+    }
+
+    private class Committer implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                MappedByteBuffer target;
+                long sequence;
+                synchronized (ExecutionJournal.this) {
+                    try {
+                        while (committed == appended && !closed) {
+                            ExecutionJournal.this.wait();
+                        }
+                        long deadline = System.currentTimeMillis() + commitInterval;
+                        for (long now = System.currentTimeMillis(); now < deadline && !closed; now = System
+                            .currentTimeMillis()) {
+                            ExecutionJournal.this.wait(deadline - now);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    target = buffer;
+                    sequence = appended;
+                }
+                target.force();
+                synchronized (ExecutionJournal.this) {
+                    committed = Math.max(committed, sequence);
+                    ExecutionJournal.this.notifyAll();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.List;
+
+/**
+ * Receives the progress of an execution started through the asynchronous methods of the maven service. The methods
+ * are called from the threads running the execution and reading its output and must not block.
+ */
+public interface ExecutionListener {
+
+    void operationStarted(MavenOperation operation);
+
+    void lineRead(String line);
+
+    void operationFinished(OperationResult result);
+
+    void executionFinished(List<OperationResult> results);
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the spans of one execution below a root span and hands them to the exporter when the execution is
+ * finished. The maven output read while a span is open adds a child span for every phase of every module. The trace
+ * of an unsampled execution is {@link #NONE}, which hands out no-op spans.
+ */
+public class ExecutionTrace implements ProcessOutputListener {
+
+    public static final ExecutionTrace NONE = new ExecutionTrace();
+
+    static final int MAX_SPANS = 1000;
+
+    private final String traceId;
+    private final SpanExporter exporter;
+    private final TraceSpan root;
+    private final List<TraceSpan> spans = new ArrayList<TraceSpan>();
+    private final List<TraceSpan> open = new ArrayList<TraceSpan>();
+    private final AtomicLong nextSpanId = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private TraceSpan phase;
+    private String phaseKey;
+
+    private ExecutionTrace() {
+        traceId = null;
+        exporter = null;
+        root = TraceSpan.NOOP;
+    }
+
+    ExecutionTrace(String traceId, String name, SpanExporter exporter) {
+        this.traceId = traceId;
+        this.exporter = exporter;
+        root = new TraceSpan(traceId, newSpanId(), null, name);
+        spans.add(root);
+    }
+
+    public boolean isSampled() {
+        return this != NONE;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public TraceSpan getRoot() {
+        return root;
+    }
+
+    /**
+     * Starts a span below the root span.
+     */
+    public TraceSpan startSpan(String name) {
+        return startSpan(name, root);
+    }
+
+    public synchronized TraceSpan startSpan(String name, TraceSpan parent) {
+        if (!isSampled() || finished.get() || spans.size() >= MAX_SPANS) {
+            return TraceSpan.NOOP;
+        }
+        TraceSpan span = new TraceSpan(traceId, newSpanId(), parent.getSpanId(), name);
+        spans.add(span);
+        open.add(span);
+        return span;
+    }
+
+    /**
+     * Ends the most recently started open span with the given name and the spans opened below it afterwards.
+     */
+    public synchronized TraceSpan endSpan(String name) {
+        for (int i = open.size() - 1; i >= 0; i--) {
+            if (open.get(i).getName().equals(name)) {
+                TraceSpan span = open.get(i);
+                endFrom(i);
+                return span;
+            }
+        }
+        return TraceSpan.NOOP;
+    }
+
+    private void endFrom(int index) {
+        while (open.size() > index) {
+            TraceSpan span = open.remove(open.size() - 1);
+            span.end();
+            if (span == phase) {
+                phase = null;
+                phaseKey = null;
+            }
+        }
+    }
+
+    @Override
+    public void lineRead(String line) {
+        if (!isSampled()) {
+            return;
+        }
+        MavenLifecycle.MojoStart mojo = MavenLifecycle.parseMojoStart(line);
+        if (mojo == null) {
+            return;
+        }
+        int index = mojo.getPhaseIndex();
+        String name = index < 0 ? "mojo" : MavenLifecycle.DEFAULT_PHASES.get(index);
+        synchronized (this) {
+            String key = mojo.getModule() + ":" + name;
+            if (key.equals(phaseKey) || open.isEmpty()) {
+                return;
+            }
+            if (phase != null) {
+                endFrom(open.indexOf(phase));
+            }
+            TraceSpan span = startSpan(name, open.get(open.size() - 1)).setAttribute("module", mojo.getModule())
+                .setAttribute("mojo", mojo);
+            phase = span == TraceSpan.NOOP ? null : span;
+            phaseKey = key;
+        }
+    }
+
+    /**
+     * Ends all open spans and the root span and exports the trace. Only the first call has an effect.
+     */
+    public void finish() {
+        if (!isSampled() || !finished.compareAndSet(false, true)) {
+            return;
+        }
+        List<TraceSpan> result;
+        synchronized (this) {
+            for (int i = open.size() - 1; i >= 0; i--) {
+                open.get(i).end();
+            }
+            open.clear();
+            root.end();
+            result = new ArrayList<TraceSpan>(spans);
+        }
+        exporter.export(result);
+    }
+
+    private String newSpanId() {
+        return String.format("%s-%d", traceId, nextSpanId.incrementAndGet());
+    }
+
+}
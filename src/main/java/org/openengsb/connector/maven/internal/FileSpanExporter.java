@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends spans as JSON lines to a file. When the file grows beyond its size limit, it is moved aside to a file with
+ * the suffix ".1", replacing the previous one.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final File file;
+    private final long maxBytes;
+
+    public FileSpanExporter(File file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void export(List<TraceSpan> spans) {
+        StringBuilder lines = new StringBuilder();
+        for (TraceSpan span : spans) {
+            lines.append(span.toJson()).append('\n');
+        }
+        try {
+            if (file.length() > maxBytes) {
+                File rolled = new File(file.getPath() + ".1");
+                if (rolled.exists() && !rolled.delete() || !file.renameTo(rolled)) {
+                    LOGGER.warn("could not roll over trace file {}", file);
+                }
+            }
+            file.getParentFile().mkdirs();
+            OutputStream output = new FileOutputStream(file, true);
+            try {
+                output.write(lines.toString().getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("could not write spans to {}: {}", file, e.getMessage());
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+}
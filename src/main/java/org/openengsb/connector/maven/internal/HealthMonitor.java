@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import org.openengsb.core.api.AliveState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Derives the alive state of a connector from its health signals. A missing maven installation, a full disk or
+ * stuck executions on every slot take the connector offline, a saturated queue, single stuck executions or a pending
+ * warmup make it report connecting. Worse states are reported at once, better ones only after they have been observed
+ * for the whole recovery period, and a saturated queue counts as saturated until it drained below three quarters of
+ * its limit, so that the state does not flap under fluctuating load.
+ */
+public class HealthMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HealthMonitor.class);
+
+    public static final long DEFAULT_RECOVERY_MILLIS = 10000;
+    public static final long MIN_FREE_DISK = 64L * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_LIMIT_PER_SLOT = 100;
+    private static final double QUEUE_RECOVERY_RATIO = 0.75;
+
+    public static final class Signals {
+        private boolean installed = true;
+        private int queueLength;
+        private int queueLimit;
+        private int stuckExecutions;
+        private int slots = 1;
+        private long freeDisk = Long.MAX_VALUE;
+        private boolean warming;
+
+        public Signals installed(boolean value) {
+            installed = value;
+            return this;
+        }
+
+        public Signals queue(int length, int limit) {
+            queueLength = length;
+            queueLimit = limit;
+            return this;
+        }
+
+        public Signals stuckExecutions(int stuck, int totalSlots) {
+            stuckExecutions = stuck;
+            slots = totalSlots;
+            return this;
+        }
+
+        public Signals freeDisk(long bytes) {
+            freeDisk = bytes;
+            return this;
+        }
+
+        public Signals warming(boolean value) {
+            warming = value;
+            return this;
+        }
+    }
+
+    private final long recoveryMillis;
+    private AliveState state = AliveState.ONLINE;
+    private boolean queueSaturated;
+    private long betterSince = -1;
+
+    public HealthMonitor() {
+        this(DEFAULT_RECOVERY_MILLIS);
+    }
+
+    public HealthMonitor(long recoveryMillis) {
+        this.recoveryMillis = recoveryMillis;
+    }
+
+    public AliveState update(Signals signals) {
+        return update(signals, System.currentTimeMillis());
+    }
+
+    synchronized AliveState update(Signals signals, long now) {
+        AliveState observed = evaluate(signals);
+        if (severity(observed) > severity(state)) {
+            LOGGER.warn("connector health changes from {} to {}", state, observed);
+            state = observed;
+            betterSince = -1;
+        } else if (severity(observed) < severity(state)) {
+            if (betterSince < 0) {
+                betterSince = now;
+            }
+            if (now - betterSince >= recoveryMillis) {
+                LOGGER.info("connector health recovers from {} to {}", state, observed);
+                state = observed;
+                betterSince = -1;
+            }
+        } else {
+            betterSince = -1;
+        }
+        return state;
+    }
+
+    private AliveState evaluate(Signals signals) {
+        int limit = signals.queueLimit > 0 ? signals.queueLimit : DEFAULT_QUEUE_LIMIT_PER_SLOT * signals.slots;
+        if (signals.queueLength >= limit) {
+            queueSaturated = true;
+        } else if (signals.queueLength <= limit * QUEUE_RECOVERY_RATIO) {
+            queueSaturated = false;
+        }
+        if (!signals.installed || signals.freeDisk < MIN_FREE_DISK
+                || signals.slots > 0 && signals.stuckExecutions >= signals.slots) {
+            return AliveState.OFFLINE;
+        }
+        if (queueSaturated || signals.stuckExecutions > 0 || signals.warming) {
+            return AliveState.CONNECTING;
+        }
+        return AliveState.ONLINE;
+    }
+
+    private static int severity(AliveState state) {
+        switch (state) {
+            case ONLINE:
+                return 0;
+            case CONNECTING:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the load and free memory of this host. Values are cached for a second, since they are queried whenever an
+ * execution is placed or started.
+ */
+public final class HostLoad {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostLoad.class);
+
+    private static final long CACHE_MILLIS = 1000;
+
+    private static volatile long lastUpdate;
+    private static volatile double loadPerCpu;
+    private static volatile long freeMemory = -1;
+
+    private HostLoad() {
+    }
+
+    /**
+     * Returns the system load average divided by the number of processors or 0 if it is not available.
+     */
+    public static double getLoadPerCpu() {
+        update();
+        return loadPerCpu;
+    }
+
+    /**
+     * Returns the free physical memory in bytes or -1 if it is not available.
+     */
+    public static long getFreeMemory() {
+        update();
+        return freeMemory;
+    }
+
+    private static void update() {
+        long now = System.currentTimeMillis();
+        if (now - lastUpdate < CACHE_MILLIS) {
+            return;
+        }
+        lastUpdate = now;
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        loadPerCpu = load < 0 ? 0 : load / Runtime.getRuntime().availableProcessors();
+        try {
+            Object value = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("java.lang:type=OperatingSystem"), "FreePhysicalMemorySize");
+            freeMemory = ((Number) value).longValue();
+        } catch (Exception e) {
+            LOGGER.debug("free physical memory is not available", e);
+            freeMemory = -1;
+        }
+    }
+
+}
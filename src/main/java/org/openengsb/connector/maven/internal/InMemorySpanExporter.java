@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Keeps the spans of the most recent traces in memory.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+    private final int capacity;
+    private final LinkedList<TraceSpan> spans = new LinkedList<TraceSpan>();
+
+    public InMemorySpanExporter(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void export(List<TraceSpan> newSpans) {
+        spans.addAll(newSpans);
+        while (spans.size() > capacity) {
+            spans.removeFirst();
+        }
+    }
+
+    public synchronized List<TraceSpan> getSpans() {
+        return new ArrayList<TraceSpan>(spans);
+    }
+
+    public synchronized void clear() {
+        spans.clear();
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM flags for the maven processes started by the connector.
+ */
+public final class JvmProfile {
+
+    public static final JvmProfile DEFAULT = new JvmProfile(0, null, false, null, null);
+
+    private final int heap;
+    private final String garbageCollector;
+    private final boolean quickStart;
+    private final File sharedArchive;
+    private final String options;
+
+    /**
+     * @param heap maximum heap in megabytes, 0 for the JVM default
+     * @param garbageCollector serial, parallel, g1 or null for the JVM default
+     * @param quickStart limits the JIT to the C1 compiler, which starts faster for short builds
+     * @param sharedArchive class data sharing archive to use or null
+     * @param options further JVM options
+     */
+    public JvmProfile(int heap, String garbageCollector, boolean quickStart, File sharedArchive, String options) {
+        if (garbageCollector != null && !garbageCollector.isEmpty()
+                && getGarbageCollectorFlag(garbageCollector) == null) {
+            throw new IllegalArgumentException("unknown garbage collector " + garbageCollector);
+        }
+        this.heap = heap;
+        this.garbageCollector = garbageCollector;
+        this.quickStart = quickStart;
+        this.sharedArchive = sharedArchive;
+        this.options = options;
+    }
+
+    public JvmProfile withHeap(int newHeap) {
+        return new JvmProfile(newHeap, garbageCollector, quickStart, sharedArchive, options);
+    }
+
+    public JvmProfile withGarbageCollector(String newGarbageCollector) {
+        return new JvmProfile(heap, newGarbageCollector, quickStart, sharedArchive, options);
+    }
+
+    public JvmProfile withQuickStart(boolean newQuickStart) {
+        return new JvmProfile(heap, garbageCollector, newQuickStart, sharedArchive, options);
+    }
+
+    public JvmProfile withSharedArchive(File newSharedArchive) {
+        return new JvmProfile(heap, garbageCollector, quickStart, newSharedArchive, options);
+    }
+
+    public JvmProfile withOptions(String newOptions) {
+        return new JvmProfile(heap, garbageCollector, quickStart, sharedArchive, newOptions);
+    }
+
+    public int getHeap() {
+        return heap;
+    }
+
+    public File getSharedArchive() {
+        return sharedArchive;
+    }
+
+    public List<String> getFlags() {
+        List<String> flags = new ArrayList<String>();
+        if (heap > 0) {
+            flags.add("-Xmx" + heap + "m");
+        }
+        if (garbageCollector != null && !garbageCollector.isEmpty()) {
+            flags.add(getGarbageCollectorFlag(garbageCollector));
+        }
+        if (quickStart) {
+            flags.add("-XX:TieredStopAtLevel=1");
+        }
+        if (sharedArchive != null) {
+            flags.add("-XX:SharedArchiveFile=" + sharedArchive.getAbsolutePath());
+        }
+        if (options != null && !options.trim().isEmpty()) {
+            Collections.addAll(flags, options.trim().split("\\s+"));
+        }
+        return flags;
+    }
+
+    private static String getGarbageCollectorFlag(String garbageCollector) {
+        if ("serial".equalsIgnoreCase(garbageCollector)) {
+            return "-XX:+UseSerialGC";
+        }
+        if ("parallel".equalsIgnoreCase(garbageCollector)) {
+            return "-XX:+UseParallelGC";
+        }
+        if ("g1".equalsIgnoreCase(garbageCollector)) {
+            return "-XX:+UseG1GC";
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,399 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A maven command line parsed into goals, profiles, properties and further options. Templates are immutable and
+ * compiled once when the connector attributes are applied, so executions only substitute the placeholders
+ * (<code>${path}</code>, <code>${contextId}</code>, <code>${id}</code> and <code>${operation}</code>).
+ */
+public final class MavenCommandTemplate {
+
+    public static final Set<String> PLACEHOLDERS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+        "path", "contextId", "id", "operation")));
+
+    private static final Set<String> OPTIONS_WITH_VALUE = new HashSet<String>(Arrays.asList("-pl", "--projects",
+        "-rf", "--resume-from", "-s", "--settings", "-gs", "--global-settings", "-f", "--file", "-T", "--threads",
+        "-l", "--log-file", "-t", "--toolchains", "-b", "--builder"));
+
+    /** Flags which start like a short option taking a value, but are options of their own. */
+    private static final Set<String> FLAGS_LIKE_ATTACHED_VALUES = new HashSet<String>(Arrays.asList("-fae", "-ff",
+        "-fn", "-llr"));
+    private static final Set<String> SKIP_TESTS_PROPERTIES = new HashSet<String>(Arrays.asList("skipTests",
+        "maven.test.skip", "maven.test.skip.exec"));
+    private static final List<String> QUIET = Arrays.asList("-q", "--quiet");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]*)\\}");
+    private static final Pattern THREADS = Pattern.compile("\\d+(\\.\\d+)?C?");
+
+    private final List<String> goals;
+    private final List<String> profiles;
+    private final Map<String, String> properties;
+    private final List<List<String>> options;
+    private final List<String> arguments;
+    private final boolean constant;
+
+    private MavenCommandTemplate(List<String> goals, List<String> profiles, Map<String, String> properties,
+            List<List<String>> options) {
+        this.goals = Collections.unmodifiableList(goals);
+        this.profiles = Collections.unmodifiableList(profiles);
+        this.properties = Collections.unmodifiableMap(properties);
+        this.options = Collections.unmodifiableList(options);
+        List<String> args = new ArrayList<String>(goals);
+        if (!profiles.isEmpty()) {
+            args.add("-P" + join(profiles, ","));
+        }
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            args.add(property.getValue() == null ? "-D" + property.getKey()
+                : "-D" + property.getKey() + "=" + property.getValue());
+        }
+        for (List<String> option : options) {
+            args.addAll(option);
+        }
+        arguments = Collections.unmodifiableList(args);
+        boolean hasPlaceholder = false;
+        for (String argument : arguments) {
+            hasPlaceholder |= argument.contains("${");
+        }
+        constant = !hasPlaceholder;
+    }
+
+    /**
+     * Parses the given command. Arguments are separated by whitespace and may be quoted with single or double quotes.
+     *
+     * @throws IllegalArgumentException if the command is empty, contains unbalanced quotes, unknown placeholders or
+     *         options lacking their value
+     */
+    public static MavenCommandTemplate compile(String command) {
+        if (command == null || command.trim().isEmpty()) {
+            throw new IllegalArgumentException("maven command must not be empty");
+        }
+        List<String> tokens = tokenize(command);
+        List<String> goals = new ArrayList<String>();
+        List<String> profiles = new ArrayList<String>();
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        List<List<String>> options = new ArrayList<List<String>>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            validatePlaceholders(token);
+            if (token.equals("-P") || token.equals("--activate-profiles")) {
+                addProfiles(profiles, requireValue(tokens, ++i, token));
+            } else if (token.startsWith("-P")) {
+                addProfiles(profiles, token.substring(2));
+            } else if (token.equals("-D") || token.equals("--define")) {
+                addProperty(properties, requireValue(tokens, ++i, token));
+            } else if (token.startsWith("-D")) {
+                addProperty(properties, token.substring(2));
+            } else if (OPTIONS_WITH_VALUE.contains(token)) {
+                String value = requireValue(tokens, ++i, token);
+                validatePlaceholders(value);
+                if ((token.equals("-T") || token.equals("--threads")) && !isValidThreadCount(value)) {
+                    throw new IllegalArgumentException("invalid thread count " + value);
+                }
+                options.add(Arrays.asList(token, value));
+            } else if (token.startsWith("-")) {
+                options.add(Collections.singletonList(token));
+            } else {
+                goals.add(token);
+            }
+        }
+        if (goals.isEmpty()) {
+            throw new IllegalArgumentException("maven command '" + command + "' does not contain any goal");
+        }
+        return new MavenCommandTemplate(goals, profiles, properties, options);
+    }
+
+    /**
+     * Merges several templates into a single invocation. Options and profiles are taken over once, goals keep the order
+     * of their first occurrence and all phases of the default lifecycle collapse into the highest phase requested,
+     * since maven executes all preceding phases anyway. Since the merged invocation runs every command at once, the
+     * templates must not define a property differently, skip the tests or suppress the mojo output with -q.
+     */
+    public static MavenCommandTemplate merge(List<MavenCommandTemplate> templates) {
+        List<String> goals = new ArrayList<String>();
+        Set<String> profiles = new LinkedHashSet<String>();
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        List<List<String>> options = new ArrayList<List<String>>();
+        int phasePosition = -1;
+        int highestPhase = -1;
+        for (MavenCommandTemplate template : templates) {
+            for (String goal : template.goals) {
+                int phase = MavenLifecycle.phaseIndex(goal);
+                if (phase >= 0) {
+                    if (phasePosition < 0) {
+                        phasePosition = goals.size();
+                        goals.add(goal);
+                    }
+                    highestPhase = Math.max(highestPhase, phase);
+                } else if (!goals.contains(goal)) {
+                    goals.add(goal);
+                }
+            }
+            profiles.addAll(template.profiles);
+            for (Map.Entry<String, String> property : template.properties.entrySet()) {
+                String name = property.getKey();
+                if (SKIP_TESTS_PROPERTIES.contains(name) && !"false".equals(property.getValue())) {
+                    throw new IllegalArgumentException("-D" + name + " would skip the tests of the whole pipeline");
+                }
+                if (properties.containsKey(name) && !equal(properties.get(name), property.getValue())) {
+                    throw new IllegalArgumentException("conflicting values for property " + name);
+                }
+                properties.put(name, property.getValue());
+            }
+            if (template.hasOption(QUIET)) {
+                throw new IllegalArgumentException("-q would hide the stages of the pipeline");
+            }
+            for (List<String> option : template.options) {
+                if (!options.contains(option)) {
+                    options.add(option);
+                }
+            }
+        }
+        if (phasePosition >= 0) {
+            goals.set(phasePosition, MavenLifecycle.DEFAULT_PHASES.get(highestPhase));
+        }
+        return new MavenCommandTemplate(goals, new ArrayList<String>(profiles), properties, options);
+    }
+
+    /**
+     * Returns a template with the given option appended unless the command already contains one of the given option
+     * names, so settings configured explicitly in the command always win.
+     */
+    public MavenCommandTemplate withOption(List<String> names, String... option) {
+        if (hasOption(names)) {
+            return this;
+        }
+        List<List<String>> newOptions = new ArrayList<List<String>>(options);
+        newOptions.add(Arrays.asList(option));
+        return new MavenCommandTemplate(new ArrayList<String>(goals), new ArrayList<String>(profiles),
+            new LinkedHashMap<String, String>(properties), newOptions);
+    }
+
+    /**
+     * Returns a template with the given property set unless the command already defines it.
+     */
+    public MavenCommandTemplate withProperty(String name, String value) {
+        if (properties.containsKey(name)) {
+            return this;
+        }
+        Map<String, String> newProperties = new LinkedHashMap<String, String>(properties);
+        newProperties.put(name, value);
+        return new MavenCommandTemplate(new ArrayList<String>(goals), new ArrayList<String>(profiles),
+            newProperties, new ArrayList<List<String>>(options));
+    }
+
+    /**
+     * Returns a template with the given property set, replacing a value the command defines.
+     */
+    public MavenCommandTemplate overrideProperty(String name, String value) {
+        Map<String, String> newProperties = new LinkedHashMap<String, String>(properties);
+        newProperties.put(name, value);
+        return new MavenCommandTemplate(new ArrayList<String>(goals), new ArrayList<String>(profiles),
+            newProperties, new ArrayList<List<String>>(options));
+    }
+
+    public static boolean isValidThreadCount(String threads) {
+        return THREADS.matcher(threads).matches();
+    }
+
+    public boolean hasOption(List<String> names) {
+        for (List<String> option : options) {
+            for (String name : names) {
+                String flag = option.get(0);
+                if (flag.equals(name) || hasAttachedValue(flag, name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the flag is the given short option with its value attached, e.g. -T4 for -T.
+     */
+    private static boolean hasAttachedValue(String flag, String name) {
+        return name.length() == 2 && OPTIONS_WITH_VALUE.contains(name) && flag.startsWith(name)
+            && !FLAGS_LIKE_ATTACHED_VALUES.contains(flag);
+    }
+
+    public List<String> getGoals() {
+        return goals;
+    }
+
+    public List<String> getProfiles() {
+        return profiles;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the highest default lifecycle phase index invoked by this command or -1 if it invokes none.
+     */
+    public int getHighestPhaseIndex() {
+        int result = -1;
+        for (String goal : goals) {
+            result = Math.max(result, MavenLifecycle.phaseIndex(goal));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the command line arguments with all placeholders replaced by the given values.
+     */
+    public List<String> toArguments(Map<String, String> variables) {
+        if (constant) {
+            return arguments;
+        }
+        List<String> result = new ArrayList<String>(arguments.size());
+        for (String argument : arguments) {
+            result.add(substitute(argument, variables));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return join(arguments, " ");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MavenCommandTemplate && arguments.equals(((MavenCommandTemplate) obj).arguments);
+    }
+
+    @Override
+    public int hashCode() {
+        return arguments.hashCode();
+    }
+
+    private static String substitute(String argument, Map<String, String> variables) {
+        if (!argument.contains("${")) {
+            return argument;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(argument);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String value = variables.get(matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value == null ? "" : value));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static void validatePlaceholders(String token) {
+        Matcher matcher = PLACEHOLDER.matcher(token);
+        while (matcher.find()) {
+            if (!PLACEHOLDERS.contains(matcher.group(1))) {
+                throw new IllegalArgumentException(String.format("unknown placeholder %s, supported are %s",
+                    matcher.group(), PLACEHOLDERS));
+            }
+        }
+    }
+
+    private static String requireValue(List<String> tokens, int index, String option) {
+        if (index >= tokens.size()) {
+            throw new IllegalArgumentException("option " + option + " requires a value");
+        }
+        return tokens.get(index);
+    }
+
+    private static void addProfiles(List<String> profiles, String value) {
+        for (String profile : value.split(",")) {
+            if (!profile.trim().isEmpty() && !profiles.contains(profile.trim())) {
+                profiles.add(profile.trim());
+            }
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void addProperty(Map<String, String> properties, String definition) {
+        int separator = definition.indexOf('=');
+        if (separator == 0 || definition.isEmpty()) {
+            throw new IllegalArgumentException("invalid property definition -D" + definition);
+        }
+        if (separator < 0) {
+            properties.put(definition, null);
+        } else {
+            properties.put(definition.substring(0, separator), definition.substring(separator + 1));
+        }
+    }
+
+    private static List<String> tokenize(String command) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        boolean inToken = false;
+        char quote = 0;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                current.append(c);
+                inToken = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("unbalanced quotes in maven command: " + command);
+        }
+        if (inToken) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private static String join(List<String> values, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (String value : values) {
+            if (result.length() > 0) {
+                result.append(separator);
+            }
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+}
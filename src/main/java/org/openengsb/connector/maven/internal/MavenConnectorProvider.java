@@ -29,9 +29,96 @@ public class MavenConnectorProvider extends AbstractConnectorProvider {
         builder.id(this.id);
         builder.name("service.name").description("service.description");
         builder.attribute(builder.newAttribute().id("command").name("service.command.name")
-            .description("service.command.description").required().build());
+            .description("service.command.description").build());
+        builder.attribute(builder.newAttribute().id("buildCommand").name("service.buildCommand.name")
+            .description("service.buildCommand.description").build());
+        builder.attribute(builder.newAttribute().id("testCommand").name("service.testCommand.name")
+            .description("service.testCommand.description").build());
+        builder.attribute(builder.newAttribute().id("deployCommand").name("service.deployCommand.name")
+            .description("service.deployCommand.description").build());
+        builder.attribute(builder.newAttribute().id("offline").name("service.offline.name")
+            .description("service.offline.description").defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("quiet").name("service.quiet.name")
+            .description("service.quiet.description").defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("threads").name("service.threads.name")
+            .description("service.threads.description").build());
+        builder.attribute(builder.newAttribute().id("testAcceleration").name("service.testAcceleration.name")
+            .description("service.testAcceleration.description").defaultValue("off").build());
+        builder.attribute(builder.newAttribute().id("testRetries").name("service.testRetries.name")
+            .description("service.testRetries.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("eventOutput").name("service.eventOutput.name")
+            .description("service.eventOutput.description").defaultValue("full").build());
+        builder.attribute(builder.newAttribute().id("recordTimings").name("service.recordTimings.name")
+            .description("service.recordTimings.description").defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("nodes").name("service.nodes.name")
+            .description("service.nodes.description").build());
+        builder.attribute(builder.newAttribute().id("nodeSlots").name("service.nodeSlots.name")
+            .description("service.nodeSlots.description").defaultValue("1").build());
+        builder.attribute(builder.newAttribute().id("maxConcurrentExecutions")
+            .name("service.maxConcurrentExecutions.name").description("service.maxConcurrentExecutions.description")
+            .defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("queueOrder").name("service.queueOrder.name")
+            .description("service.queueOrder.description").defaultValue("fifo").build());
+        builder.attribute(builder.newAttribute().id("supersede").name("service.supersede.name")
+            .description("service.supersede.description").defaultValue("none").build());
+        builder.attribute(builder.newAttribute().id("deployRepository").name("service.deployRepository.name")
+            .description("service.deployRepository.description").build());
+        builder.attribute(builder.newAttribute().id("deployThreads").name("service.deployThreads.name")
+            .description("service.deployThreads.description").defaultValue("4").build());
+        builder.attribute(builder.newAttribute().id("traceSampleRate").name("service.traceSampleRate.name")
+            .description("service.traceSampleRate.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("traceLimit").name("service.traceLimit.name")
+            .description("service.traceLimit.description").defaultValue("60").build());
+        builder.attribute(builder.newAttribute().id("artifactProxy").name("service.artifactProxy.name")
+            .description("service.artifactProxy.description").build());
+        builder.attribute(builder.newAttribute().id("artifactProxyMirrorOf").name("service.artifactProxyMirrorOf.name")
+            .description("service.artifactProxyMirrorOf.description").defaultValue(ArtifactProxy.DEFAULT_MIRROR_OF)
+            .build());
+        builder.attribute(builder.newAttribute().id("resourceSampleInterval")
+            .name("service.resourceSampleInterval.name").description("service.resourceSampleInterval.description")
+            .defaultValue("1000").build());
+        builder.attribute(builder.newAttribute().id("isolatedWorkingCopies")
+            .name("service.isolatedWorkingCopies.name").description("service.isolatedWorkingCopies.description")
+            .defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("maxQueueLength").name("service.maxQueueLength.name")
+            .description("service.maxQueueLength.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("maxQueueLengthPerContext")
+            .name("service.maxQueueLengthPerContext.name").description("service.maxQueueLengthPerContext.description")
+            .defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("overloadPolicy").name("service.overloadPolicy.name")
+            .description("service.overloadPolicy.description").defaultValue("reject").build());
+        builder.attribute(builder.newAttribute().id("maxLoad").name("service.maxLoad.name")
+            .description("service.maxLoad.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("minFreeMemory").name("service.minFreeMemory.name")
+            .description("service.minFreeMemory.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("executionTimeout").name("service.executionTimeout.name")
+            .description("service.executionTimeout.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("buildMemory").name("service.buildMemory.name")
+            .description("service.buildMemory.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("jvmGarbageCollector").name("service.jvmGarbageCollector.name")
+            .description("service.jvmGarbageCollector.description").build());
+        builder.attribute(builder.newAttribute().id("jvmQuickStart").name("service.jvmQuickStart.name")
+            .description("service.jvmQuickStart.description").defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("jvmOptions").name("service.jvmOptions.name")
+            .description("service.jvmOptions.description").build());
+        builder.attribute(builder.newAttribute().id("classDataSharing").name("service.classDataSharing.name")
+            .description("service.classDataSharing.description").defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("niceLevel").name("service.niceLevel.name")
+            .description("service.niceLevel.description").defaultValue("0").build());
+        builder.attribute(builder.newAttribute().id("cpuAffinity").name("service.cpuAffinity.name")
+            .description("service.cpuAffinity.description").build());
         builder.attribute(builder.newAttribute().id("mvnVersion").name("service.mvnVersion.name")
                 .description("service.mvnVersion.description").build());
+        builder.attribute(builder.newAttribute().id("recoveryPolicy").name("service.recoveryPolicy.name")
+            .description("service.recoveryPolicy.description").defaultValue("none").build());
+        builder.attribute(builder.newAttribute().id("warmup").name("service.warmup.name")
+            .description("service.warmup.description").defaultValue("false").build());
+        builder.attribute(builder.newAttribute().id("warmupPaths").name("service.warmupPaths.name")
+            .description("service.warmupPaths.description").build());
+        builder.attribute(builder.newAttribute().id("watchPaths").name("service.watchPaths.name")
+            .description("service.watchPaths.description").build());
+        builder.attribute(builder.newAttribute().id("watchOperation").name("service.watchOperation.name")
+            .description("service.watchOperation.description").defaultValue("test").build());
 
         return builder.build();
     }
@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+
+public class MavenExecution {
+
+    private final String key;
+    private final String id;
+    private final Long processId;
+    private final OpenEngSBFileModel path;
+    private final List<MavenOperation> operations;
+    private String contextId;
+    private volatile long expectedMillis = -1;
+    private volatile ExecutionFuture future;
+    private volatile boolean failedTestsOnly;
+    private volatile MavenToolchain toolchain;
+    private volatile List<String> modules = Collections.emptyList();
+    private volatile BatchBuild batch;
+    private volatile String supersededBy;
+    private volatile ExecutionTrace trace = ExecutionTrace.NONE;
+
+    public MavenExecution(String id, Long processId, OpenEngSBFileModel path, List<MavenOperation> operations) {
+        this(id != null ? id : UUID.randomUUID().toString(), id, processId, path, operations);
+    }
+
+    public MavenExecution(String id, Long processId, OpenEngSBFileModel path, MavenOperation operation) {
+        this(id, processId, path, Collections.singletonList(operation));
+    }
+
+    MavenExecution(String key, String id, Long processId, OpenEngSBFileModel path, List<MavenOperation> operations) {
+        this.key = key;
+        this.id = id;
+        this.processId = processId;
+        this.path = path;
+        this.operations = Collections.unmodifiableList(new ArrayList<MavenOperation>(operations));
+    }
+
+    /**
+     * Returns a key identifying this execution inside the connector, which is the returned id if there is one.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getProcessId() {
+        return processId;
+    }
+
+    public boolean hasProcessId() {
+        return processId != null;
+    }
+
+    public OpenEngSBFileModel getPath() {
+        return path;
+    }
+
+    public List<MavenOperation> getOperations() {
+        return operations;
+    }
+
+    public boolean isPipeline() {
+        return operations.size() > 1;
+    }
+
+    public String getContextId() {
+        return contextId;
+    }
+
+    public void setContextId(String contextId) {
+        this.contextId = contextId;
+    }
+
+    /**
+     * Returns the expected duration of the execution in milliseconds or -1, if it is not known.
+     */
+    public long getExpectedMillis() {
+        return expectedMillis;
+    }
+
+    public void setExpectedMillis(long expectedMillis) {
+        this.expectedMillis = expectedMillis;
+    }
+
+    /**
+     * Returns the future to complete with the results of this execution, if it was started asynchronously.
+     */
+    public ExecutionFuture getFuture() {
+        return future;
+    }
+
+    public void setFuture(ExecutionFuture future) {
+        this.future = future;
+    }
+
+    /**
+     * Returns whether only the tests which failed in the last execution on the same path should be run.
+     */
+    public boolean isFailedTestsOnly() {
+        return failedTestsOnly;
+    }
+
+    public void setFailedTestsOnly(boolean failedTestsOnly) {
+        this.failedTestsOnly = failedTestsOnly;
+    }
+
+    /**
+     * Returns the maven installation captured when the execution was submitted.
+     */
+    public MavenToolchain getToolchain() {
+        return toolchain;
+    }
+
+    public void setToolchain(MavenToolchain toolchain) {
+        this.toolchain = toolchain;
+    }
+
+    /**
+     * Returns whether the execution must run on a local node, because its pinned maven version is installed in the
+     * local karaf data directory.
+     */
+    public boolean isLocalOnly() {
+        return toolchain != null && !toolchain.isSystem();
+    }
+
+    /**
+     * Returns the modules the execution is restricted to, together with the modules depending on them. An empty list
+     * means the whole project.
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+    public void setModules(List<String> modules) {
+        this.modules = Collections.unmodifiableList(new ArrayList<String>(modules));
+    }
+
+    /**
+     * Returns the batch this execution builds in a single reactor run on behalf of its members, if any.
+     */
+    public BatchBuild getBatch() {
+        return batch;
+    }
+
+    public void setBatch(BatchBuild batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Returns the id of the newer execution which made this one obsolete, if any.
+     */
+    public String getSupersededBy() {
+        return supersededBy;
+    }
+
+    public void setSupersededBy(String supersededBy) {
+        this.supersededBy = supersededBy;
+    }
+
+    /**
+     * Returns the trace recording the stages of this execution, which is {@link ExecutionTrace#NONE} unless the
+     * execution was sampled.
+     */
+    public ExecutionTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(ExecutionTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Returns whether both executions run the same operations on the same modules of the same project, so that the
+     * result of the newer one makes the older one obsolete.
+     */
+    public boolean hasSameTarget(MavenExecution other) {
+        return batch == null && other.batch == null && failedTestsOnly == other.failedTestsOnly
+            && operations.equals(other.operations) && modules.equals(other.modules)
+            && path.getFile().getAbsoluteFile().equals(other.path.getFile().getAbsoluteFile());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s on %s", operations, hasProcessId() ? processId : id, path.getFile());
+    }
+
+}
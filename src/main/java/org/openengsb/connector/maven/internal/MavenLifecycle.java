@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public final class MavenLifecycle {
+
+    public static final List<String> DEFAULT_PHASES = Arrays.asList("validate", "initialize",
+        "generate-sources", "process-sources", "generate-resources", "process-resources", "compile",
+        "process-classes", "generate-test-sources", "process-test-sources", "generate-test-resources",
+        "process-test-resources", "test-compile", "process-test-classes", "test", "prepare-package", "package",
+        "pre-integration-test", "integration-test", "post-integration-test", "verify", "install", "deploy");
+
+    private static final Map<String, String> DEFAULT_MOJO_PHASES = new HashMap<String, String>();
+
+    private static final Pattern MOJO_START = Pattern
+        .compile("--- ([^:\\s]+):([^:\\s]+):([^\\s]+) \\(([^)]*)\\) @ (\\S+) ---");
+
+    static {
+        DEFAULT_MOJO_PHASES.put("resources", "process-resources");
+        DEFAULT_MOJO_PHASES.put("compile", "compile");
+        DEFAULT_MOJO_PHASES.put("testResources", "process-test-resources");
+        DEFAULT_MOJO_PHASES.put("testCompile", "test-compile");
+        DEFAULT_MOJO_PHASES.put("test", "test");
+        DEFAULT_MOJO_PHASES.put("jar", "package");
+        DEFAULT_MOJO_PHASES.put("war", "package");
+        DEFAULT_MOJO_PHASES.put("ear", "package");
+        DEFAULT_MOJO_PHASES.put("bundle", "package");
+        DEFAULT_MOJO_PHASES.put("integration-test", "integration-test");
+        DEFAULT_MOJO_PHASES.put("verify", "verify");
+        DEFAULT_MOJO_PHASES.put("install", "install");
+        DEFAULT_MOJO_PHASES.put("deploy", "deploy");
+    }
+
+    /**
+     * A mojo execution as announced in the maven output.
+     */
+    public static final class MojoStart {
+        private final String plugin;
+        private final String goal;
+        private final String execution;
+        private final String module;
+
+        private MojoStart(String plugin, String goal, String execution, String module) {
+            this.plugin = plugin;
+            this.goal = goal;
+            this.execution = execution;
+            this.module = module;
+        }
+
+        public String getPlugin() {
+            return plugin;
+        }
+
+        public String getGoal() {
+            return goal;
+        }
+
+        public String getExecution() {
+            return execution;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        /**
+         * Returns the default lifecycle index of the phase the mojo is bound to by default or -1.
+         */
+        public int getPhaseIndex() {
+            String phase = DEFAULT_MOJO_PHASES.get(goal);
+            return phase == null ? -1 : phaseIndex(phase);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%s (%s)", plugin, goal, execution);
+        }
+    }
+
+    private MavenLifecycle() {
+    }
+
+    /**
+     * Returns the index of the given phase in the default lifecycle or -1 if it is no default lifecycle phase
+     */
+    public static int phaseIndex(String phase) {
+        return DEFAULT_PHASES.indexOf(phase);
+    }
+
+    /**
+     * Parses a line of maven output and returns the default lifecycle index of the mojo started in this line. If the
+     * line does not announce a mojo execution or the mojo is not bound to the default lifecycle by default, -1 is
+     * returned.
+     */
+    public static int phaseIndexOfMojoStart(String line) {
+        MojoStart mojo = parseMojoStart(line);
+        return mojo == null ? -1 : mojo.getPhaseIndex();
+    }
+
+    /**
+     * Parses a line of maven output and returns the mojo execution started in this line or null.
+     */
+    public static MojoStart parseMojoStart(String line) {
+        if (!line.contains("--- ")) {
+            return null;
+        }
+        Matcher matcher = MOJO_START.matcher(line);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new MojoStart(matcher.group(1), matcher.group(3), matcher.group(4), matcher.group(5));
+    }
+
+}
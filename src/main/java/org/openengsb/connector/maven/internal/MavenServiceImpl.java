@@ -18,28 +18,30 @@
 package org.openengsb.connector.maven.internal;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.openengsb.core.api.AliveState;
 import org.openengsb.core.api.context.ContextCurrentService;
@@ -70,15 +72,83 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
 
     private static final int MAX_LOG_FILES = 5;
 
-    private String mvnVersion = "";
-    private String mvnCommand;
+    private static final int JOURNAL_CAPACITY = 1024 * 1024;
+    private static final int MAX_DIAGNOSTICS_REPORTS = 100;
+    private static final String PROCESS_KEY_PREFIX = "process:";
+    private static final double REGRESSION_FACTOR = 1.5;
+    private static final long REGRESSION_MINIMUM_MILLIS = 1000;
+    private static final long JOURNAL_COMMIT_INTERVAL = 10;
+    private static final long WATCH_INTERVAL_MILLIS = 250;
+    private static final long WATCH_QUIET_MILLIS = 500;
+    /** Above this number of failed tests the filter gets too long and rerunning them saves little. */
+    private static final int MAX_RERUN_TESTS = 200;
+    private static final int DEFAULT_DEPLOY_THREADS = 4;
+    private static final String ALT_DEPLOYMENT_REPOSITORY = "altDeploymentRepository";
+    private static final long MAX_TRACE_FILE_BYTES = 10 * 1024 * 1024;
+    private static final long DEFAULT_RESOURCE_SAMPLE_INTERVAL = 1000;
+    private static final File USER_SETTINGS = new File(System.getProperty("user.home"), ".m2/settings.xml");
+
+    private final ToolchainRegistry toolchains;
+    private volatile MavenToolchain toolchain;
 
     private BuildDomainEvents buildEvents;
     private TestDomainEvents testEvents;
     private DeployDomainEvents deployEvents;
 
-    private Executor executor = Executors.newSingleThreadExecutor();
-    private ExecutorService outputReaderPool = Executors.newCachedThreadPool();
+    private volatile ExecutionDispatcher dispatcher;
+    private volatile ExecutionJournal journal;
+    private AdmissionController admissionController = new AdmissionController();
+    private ProcessLauncher launcher = new ProcessLauncher();
+    private TestAcceleration testAcceleration = new TestAcceleration();
+    private final Map<String, Set<String>> failedTests = new ConcurrentHashMap<String, Set<String>>();
+    private volatile int testRetries;
+    private volatile boolean classDataSharing;
+    private volatile WorkingCopyPool workingCopies;
+    private double maxLoad;
+    private long minFreeMemory;
+    private final SharedExecutionService executionService;
+    private final ExecutorService outputReaderPool;
+    private final ExecutorService warmupExecutor;
+    private final ScheduledExecutorService samplerScheduler;
+    private volatile int maxConcurrentExecutions;
+    private final AtomicInteger pendingWarmups = new AtomicInteger();
+    private List<File> warmedUpProjects;
+    private ProjectWatcher watcher;
+    private volatile MavenOperation watchOperation = MavenOperation.TEST;
+    private volatile String watchContextId;
+    private volatile ExecutionDispatcher.SupersedePolicy supersedePolicy = ExecutionDispatcher.SupersedePolicy.NONE;
+    private final Map<String, MavenExecution> runningExecutions = new ConcurrentHashMap<String, MavenExecution>();
+    private final Map<String, Process> runningProcesses = new ConcurrentHashMap<String, Process>();
+    private volatile String deployRepository;
+    private volatile int deployThreads = DEFAULT_DEPLOY_THREADS;
+    private final Tracer tracer;
+    private ArtifactProxy artifactProxy;
+    private volatile File proxySettings;
+    private String proxyMirrorOf;
+    private long proxySettingsBase;
+    private volatile long resourceSampleInterval = DEFAULT_RESOURCE_SAMPLE_INTERVAL;
+    private ResourceUsage totalResourceUsage = ResourceUsage.NONE;
+    private int measuredExecutions;
+    private final Map<String, ResourceUsage> resourceUsage = new ConcurrentHashMap<String, ResourceUsage>();
+    private final Object totalResourceUsageLock = new Object();
+    private final Map<String, ExecutionFuture> watchExecutions = new ConcurrentHashMap<String, ExecutionFuture>();
+    private volatile HealthMonitor healthMonitor = new HealthMonitor();
+    private final Map<String, Long> runningSince = new ConcurrentHashMap<String, Long>();
+    private volatile long executionTimeout;
+    private volatile boolean diagnosticsOutput;
+    private volatile boolean recordTimings;
+    private final DurationModel durationModel = new DurationModel();
+    private volatile ExecutionDispatcher.QueueOrder queueOrder = ExecutionDispatcher.QueueOrder.FIFO;
+    private final ConcurrentHashMap<String, TimingHistory> timingHistories =
+        new ConcurrentHashMap<String, TimingHistory>();
+    private final Map<String, BuildDiagnostics> diagnostics = new LinkedHashMap<String, BuildDiagnostics>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BuildDiagnostics> eldest) {
+            return size() > MAX_DIAGNOSTICS_REPORTS;
+        }
+    };
 
     private boolean synchronous = false;
 
@@ -86,11 +156,70 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
 
     private ContextCurrentService contextService;
 
-    private String command;
+    private MavenCommandTemplate command;
+    private Map<MavenOperation, MavenCommandTemplate> commands =
+        new EnumMap<MavenOperation, MavenCommandTemplate>(MavenOperation.class);
+    private volatile Map<MavenOperation, MavenCommandTemplate> effectiveCommands =
+        new EnumMap<MavenOperation, MavenCommandTemplate>(MavenOperation.class);
+    private volatile MavenCommandTemplate pipelineCommand;
+    private volatile String pipelineProblem;
+    private boolean offline;
+    private boolean quiet;
+    private String threads;
     private File logDir;
 
+    private final ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+        @Override
+        public void run(MavenExecution execution, WorkerNode node) {
+            ContextHolder.get().setCurrentContextId(execution.getContextId());
+            execution.getTrace().endSpan("queue").setAttribute("node", node);
+            ExecutionJournal currentJournal = journal;
+            if (currentJournal != null) {
+                currentJournal.started(execution);
+            }
+            long start = System.currentTimeMillis();
+            runningSince.put(execution.getKey(), start);
+            runningExecutions.put(execution.getKey(), execution);
+            boolean success = false;
+            try {
+                success = runExecution(execution, node);
+            } finally {
+                runningSince.remove(execution.getKey());
+                runningExecutions.remove(execution.getKey());
+                // failed runs often stop early and would make later estimates too optimistic
+                if (success && execution.getSupersededBy() == null) {
+                    durationModel.record(getDurationKey(execution), System.currentTimeMillis() - start);
+                }
+                if (currentJournal != null) {
+                    currentJournal.finished(execution);
+                }
+                execution.getTrace().finish();
+            }
+        }
+    };
+
     public MavenServiceImpl(String id) {
+        this(id, null);
+    }
+
+    /**
+     * Creates an instance running its executions with the given node-wide resources or with resources of its own, if
+     * no execution service is given.
+     */
+    public MavenServiceImpl(String id, SharedExecutionService executionService) {
         super(id);
+        this.executionService = executionService;
+        if (executionService == null) {
+            dispatcher = new ExecutionDispatcher(id, WorkerNode.local(1));
+            outputReaderPool = Executors.newCachedThreadPool();
+            warmupExecutor = Executors.newSingleThreadExecutor();
+            samplerScheduler = ProcessTreeSampler.newScheduler();
+        } else {
+            dispatcher = executionService.getDispatcher();
+            outputReaderPool = executionService.getOutputReaderPool();
+            warmupExecutor = executionService.getWarmupExecutor();
+            samplerScheduler = executionService.getSamplerScheduler();
+        }
         String karafData = System.getProperty("karaf.data");
         logDir = new File(karafData, "log");
         if (!logDir.exists()) {
@@ -98,253 +227,853 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         } else if (!logDir.isDirectory()) {
             throw new IllegalStateException("cannot access log-directory");
         }
+        tracer = new Tracer(new FileSpanExporter(new File(karafData, "maven/traces/" + id + ".log"),
+            MAX_TRACE_FILE_BYTES));
 
-        if (!mvnVersion.isEmpty()) {
-            if (!isMavenInstalled()) {
-                try {
-                    installMaven();
-                } catch (IOException e) {
-                    throw new IllegalStateException(e);
-                }
+        toolchains = ToolchainRegistry.getDefault();
+        toolchain = toolchains.getSystemToolchain();
+    }
+
+    public Boolean isMavenInstalled() {
+        return toolchains.isInstalled(toolchain.getVersion());
+    }
+
+    @Override
+    public AliveState getAliveState() {
+        ExecutionDispatcher currentDispatcher = dispatcher;
+        int slots = 0;
+        for (WorkerNode node : currentDispatcher.getNodes()) {
+            slots += node.getSlots();
+        }
+        // a shared dispatcher also serves other instances, only the executions and slots of this one count
+        if (maxConcurrentExecutions > 0) {
+            slots = Math.min(slots, maxConcurrentExecutions);
+        }
+        HealthMonitor.Signals signals = new HealthMonitor.Signals()
+            .installed(toolchain.isAvailable())
+            .queue(currentDispatcher.getQueueLength(runner, null), admissionController.getMaxQueueLength())
+            .stuckExecutions(countStuckExecutions(), slots)
+            .freeDisk(getUsableSpace(logDir))
+            .warming(pendingWarmups.get() > 0);
+        return healthMonitor.update(signals);
+    }
+
+    /**
+     * Replaces the health monitor, e.g. by one with a shorter recovery period in tests.
+     */
+    void setHealthMonitor(HealthMonitor healthMonitor) {
+        this.healthMonitor = healthMonitor;
+    }
+
+    private int countStuckExecutions() {
+        long timeout = executionTimeout;
+        if (timeout <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int result = 0;
+        for (Long start : runningSince.values()) {
+            if (now - start > timeout) {
+                result++;
             }
-        } else {
-            mvnCommand = "mvn" + addSystemEnding();
         }
+        return result;
     }
 
-    public Boolean isMavenInstalled() {
-        return new File(System.getProperty("karaf.data"), "apache-maven-" + mvnVersion).exists();
+    private static long getUsableSpace(File file) {
+        File existing = file.getAbsoluteFile();
+        while (existing != null && !existing.exists()) {
+            existing = existing.getParentFile();
+        }
+        return existing == null ? 0 : existing.getUsableSpace();
+    }
+
+    @Override
+    public String runTests(OpenEngSBFileModel path) {
+        String id = createId();
+        submit(new MavenExecution(id, null, path, MavenOperation.TEST));
+        return id;
     }
 
+    /**
+     * Runs only the tests which failed in the last test execution on the given path. If no failed tests are known,
+     * all tests are run.
+     */
+    public String rerunFailedTests(OpenEngSBFileModel path) {
+        String id = createId();
+        MavenExecution execution = new MavenExecution(id, null, path, MavenOperation.TEST);
+        execution.setFailedTestsOnly(true);
+        submit(execution);
+        return id;
+    }
+
+    /**
+     * Returns the tests which failed in the last test execution on the given path as <code>class#method</code>.
+     */
+    public Set<String> getFailedTests(OpenEngSBFileModel path) {
+        Set<String> result = failedTests.get(path.getFile().getAbsolutePath());
+        return result == null ? Collections.<String> emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public void runTestsProcessId(OpenEngSBFileModel path, long processId) {
+        submit(new MavenExecution(null, processId, path, MavenOperation.TEST));
+    }
+
+    @Override
+    public String build(OpenEngSBFileModel path) {
+        String id = createId();
+        submit(new MavenExecution(id, null, path, MavenOperation.BUILD));
+        return id;
+    }
+
+    @Override
+    public void build(OpenEngSBFileModel path, long processId) {
+        submit(new MavenExecution(null, processId, path, MavenOperation.BUILD));
+    }
+
+    @Override
+    public String deploy(OpenEngSBFileModel path) {
+        String id = createId();
+        submit(new MavenExecution(id, null, path, MavenOperation.DEPLOY));
+        return id;
+    }
+
+    @Override
+    public void deploy(OpenEngSBFileModel path, long processId) {
+        submit(new MavenExecution(null, processId, path, MavenOperation.DEPLOY));
+    }
+
+    /**
+     * Builds, tests and deploys the project with a single maven invocation. The build, test and deploy events are
+     * raised with the returned id as soon as maven leaves the phases covered by the respective command.
+     */
+    public String runPipeline(OpenEngSBFileModel path) {
+        String id = createId();
+        submit(new MavenExecution(id, null, path, Arrays.asList(MavenOperation.values())));
+        return id;
+    }
 
-    public void installMaven() throws IOException {
-        File tmp = File.createTempFile("mvn_setup", "zip");
-        initializeDownload(tmp);
-        unzipFile(tmp.getAbsolutePath(), System.getProperty("karaf.data"));
+    public void runPipeline(OpenEngSBFileModel path, long processId) {
+        submit(new MavenExecution(null, processId, path, Arrays.asList(MavenOperation.values())));
     }
 
-    private void initializeDownload(File tmp) {
-        String baseUrl = "http://repo1.maven.org/maven2/org/apache/maven/apache-maven";
-        String fullUrl = String.format("%s/%s/apache-maven-%s-bin.zip", baseUrl, mvnVersion, mvnVersion);
-        if (!download(fullUrl, tmp)) {
-            throw new IllegalStateException(
-                String.format("Maven download not possible, because %s does not answer", fullUrl));
+    /**
+     * Builds the given independent projects in a single parallel reactor run. Every project gets an id of its own
+     * and its own build events, taken from the reactor summary; the ids are returned in the order of the paths.
+     */
+    public List<String> buildBatch(List<OpenEngSBFileModel> paths) {
+        List<MavenExecution> members = new ArrayList<MavenExecution>();
+        List<String> ids = new ArrayList<String>();
+        for (OpenEngSBFileModel path : paths) {
+            String id = createId();
+            members.add(new MavenExecution(id, null, path, MavenOperation.BUILD));
+            ids.add(id);
+        }
+        BatchBuild batch;
+        try {
+            batch = new BatchBuild(new File(System.getProperty("karaf.data"), "maven/batches"), members);
+        } catch (IOException e) {
+            throw new IllegalStateException("could not create aggregator for " + paths, e);
         }
+        OpenEngSBFileModel batchPath = new OpenEngSBFileModel();
+        batchPath.setFile(batch.getDirectory());
+        MavenExecution execution = new MavenExecution(createId(), null, batchPath, MavenOperation.BUILD);
+        execution.setBatch(batch);
+        submit(execution);
+        return ids;
+    }
+
+    /**
+     * Builds the project like {@link #build(OpenEngSBFileModel)} and additionally returns a future completing with
+     * the result, so that in-process callers need not correlate the events.
+     */
+    public ExecutionFuture buildAsync(OpenEngSBFileModel path) {
+        return submitAsync(path, Arrays.asList(MavenOperation.BUILD));
+    }
+
+    public ExecutionFuture runTestsAsync(OpenEngSBFileModel path) {
+        return submitAsync(path, Arrays.asList(MavenOperation.TEST));
     }
 
-    public boolean download(String urlString, File tmp) {
+    public ExecutionFuture deployAsync(OpenEngSBFileModel path) {
+        return submitAsync(path, Arrays.asList(MavenOperation.DEPLOY));
+    }
+
+    public ExecutionFuture runPipelineAsync(OpenEngSBFileModel path) {
+        return submitAsync(path, Arrays.asList(MavenOperation.values()));
+    }
+
+    /**
+     * Runs a single operation with the given maven version instead of the configured one, installing the version
+     * first if necessary.
+     */
+    public String runWithMavenVersion(OpenEngSBFileModel path, MavenOperation operation, String mvnVersion) {
+        MavenToolchain requested;
         try {
-            URL url = new URL(urlString);
-            FileUtils.copyURLToFile(url, tmp);
+            requested = toolchains.resolve(mvnVersion);
         } catch (IOException e) {
-            LOGGER.error("could not download maven from mirror " + urlString, e);
+            throw new IllegalStateException(e);
+        }
+        String id = createId();
+        MavenExecution execution = new MavenExecution(id, null, path, operation);
+        execution.setToolchain(requested);
+        submit(execution);
+        return id;
+    }
+
+    private ExecutionFuture submitAsync(OpenEngSBFileModel path, List<MavenOperation> operations) {
+        String id = createId();
+        MavenExecution execution = new MavenExecution(id, null, path, operations);
+        ExecutionFuture future = new ExecutionFuture(id, operations.size());
+        execution.setFuture(future);
+        submit(execution);
+        return future;
+    }
+
+    private void submit(MavenExecution execution) {
+        execution.setContextId(ContextHolder.get().getCurrentContextId());
+        if (execution.getToolchain() == null) {
+            execution.setToolchain(toolchain);
+        }
+        ExecutionTrace trace = tracer.startTrace(execution);
+        execution.setTrace(trace);
+        trace.getRoot().setAttribute("toolchain", execution.getToolchain());
+        TraceSpan admission = trace.startSpan("admission");
+        execution.setExpectedMillis(durationModel.estimate(getDurationKey(execution)));
+        if (execution.isLocalOnly() && !dispatcher.hasLocalNode()) {
+            LOGGER.warn("rejecting {}: {} is not available on remote nodes", execution, execution.getToolchain());
+            failExecution(execution, "cannot run " + execution.getToolchain()
+                    + ", only the maven on the path of the remote nodes is available");
+            return;
+        }
+        if (!synchronous) {
+            if (!admit(execution)) {
+                return;
+            }
+            supersede(execution);
+        }
+        admission.end();
+        trace.startSpan("queue").setAttribute("expectedMillis", execution.getExpectedMillis());
+        ExecutionJournal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.submitted(execution);
+        }
+        if (synchronous) {
+            dispatcher.runNow(execution, runner);
+        } else {
+            dispatcher.submit(execution, runner);
+        }
+    }
+
+    /**
+     * Identifies executions which are expected to take equally long: the same operations on the same project with the
+     * same command.
+     */
+    private String getDurationKey(MavenExecution execution) {
+        MavenCommandTemplate template = execution.isPipeline() ? pipelineCommand
+            : effectiveCommands.get(execution.getOperations().get(0));
+        return String.format("%s\n%s\n%s\n%s%s", execution.getPath().getFile().getAbsolutePath(), template,
+            execution.getOperations(), execution.getToolchain(), execution.isFailedTestsOnly() ? "\nfailed tests" : "");
+    }
+
+    /**
+     * Returns the estimated completion time of a queued or running execution in milliseconds since the epoch, based on
+     * the durations of earlier executions, or -1 if there is no such execution.
+     */
+    public long getEstimatedCompletion(String id) {
+        return dispatcher.estimateCompletion(id);
+    }
+
+    /**
+     * Fails the queued executions the given one makes obsolete and, depending on the policy, stops the running ones.
+     */
+    private void supersede(MavenExecution execution) {
+        ExecutionDispatcher.SupersedePolicy policy = supersedePolicy;
+        if (policy == ExecutionDispatcher.SupersedePolicy.NONE || execution.getBatch() != null) {
+            return;
+        }
+        String winner = execution.hasProcessId() ? "process " + execution.getProcessId() : execution.getId();
+        for (MavenExecution obsolete : dispatcher.removeSuperseded(runner, execution)) {
+            LOGGER.info("{} superseded by {}", obsolete, execution);
+            obsolete.setSupersededBy(winner);
+            failExecution(obsolete, getSupersededMessage(obsolete));
+            ExecutionJournal currentJournal = journal;
+            if (currentJournal != null) {
+                currentJournal.finished(obsolete);
+            }
+        }
+        if (policy != ExecutionDispatcher.SupersedePolicy.RUNNING) {
+            return;
+        }
+        for (MavenExecution running : runningExecutions.values()) {
+            if (running.hasSameTarget(execution)) {
+                LOGGER.info("stopping {}, superseded by {}", running, execution);
+                running.setSupersededBy(winner);
+                Process process = runningProcesses.get(running.getKey());
+                if (process != null) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    private boolean isSuperseding(MavenExecution execution) {
+        return supersedePolicy != ExecutionDispatcher.SupersedePolicy.NONE && execution.getBatch() == null;
+    }
+
+    private static String getSupersededMessage(MavenExecution execution) {
+        return "superseded by execution " + execution.getSupersededBy();
+    }
+
+    private boolean admit(MavenExecution execution) {
+        MavenExecution shed;
+        try {
+            shed = admissionController.admit(execution, dispatcher, runner, isSuperseding(execution));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("rejecting {}: {}", execution, e.getMessage());
+            failExecution(execution, "rejected, because the connector is overloaded: " + e.getMessage());
             return false;
         }
+        if (shed != null) {
+            LOGGER.warn("shedding {} in favor of {}", shed, execution);
+            failExecution(shed, "shed in favor of a newer execution, because the connector is overloaded");
+            ExecutionJournal currentJournal = journal;
+            if (currentJournal != null) {
+                currentJournal.finished(shed);
+            }
+        }
         return true;
     }
 
-    public void unzipFile(String archivePath, String targetPath)
-            throws IOException {
-        File archiveFile = new File(archivePath);
-        File targetFile = new File(targetPath);
-        ZipFile zipFile = new ZipFile(archiveFile);
-        Enumeration<?> e = zipFile.getEntries();
-        while (e.hasMoreElements()) {
-            ZipArchiveEntry zipEntry = (ZipArchiveEntry) e.nextElement();
-            File file = new File(targetFile, zipEntry.getName());
-            if (zipEntry.isDirectory()) {
-                FileUtils.forceMkdir(file);
+    /**
+     * Raises start and fail events for all operations of an execution which is not going to be run.
+     */
+    private void failExecution(MavenExecution execution, String reason) {
+        String currentContext = ContextHolder.get().getCurrentContextId();
+        ContextHolder.get().setCurrentContextId(execution.getContextId());
+        execution.getTrace().getRoot().setAttribute("success", false).setAttribute("failure", reason);
+        try {
+            for (MavenOperation operation : execution.getOperations()) {
+                raiseStartEvent(execution, operation);
+                raiseFailEvent(execution, operation, reason);
+            }
+        } finally {
+            ContextHolder.get().setCurrentContextId(currentContext);
+            execution.getTrace().finish();
+        }
+    }
+
+    /**
+     * Runs the execution and returns whether it succeeded.
+     */
+    private boolean runExecution(MavenExecution execution, WorkerNode node) {
+        TraceSpan prepare = execution.getTrace().startSpan("prepare");
+        Map<MavenOperation, MavenCommandTemplate> templates = effectiveCommands;
+        MavenCommandTemplate template = execution.isPipeline() ? pipelineCommand
+            : templates.get(execution.getOperations().get(0));
+        if (template != null && !execution.getModules().isEmpty()) {
+            template = restrictToModules(template, execution.getModules());
+        }
+        if (template != null && execution.getBatch() != null) {
+            template = template.withOption(Arrays.asList("-fae", "--fail-at-end"), "-fae")
+                .withOption(Arrays.asList("-T", "--threads"), "-T", "1C");
+        }
+        // the pool lives in the local karaf data directory, remote nodes build the project itself one at a time
+        WorkingCopyPool pool = execution.getBatch() == null && node.isLocal() ? workingCopies : null;
+        File dir = execution.getPath().getFile();
+        File copy = null;
+        MavenResult result = null;
+        if (pool != null) {
+            try {
+                copy = pool.lease(dir);
+                dir = copy;
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+                result = new MavenResult(false, "could not prepare working copy: " + e.getMessage());
+            }
+        }
+        prepare.setAttribute("workingCopy", copy).end();
+        // events report the project itself, a working copy is handed to the next execution once it is released
+        StageTracker tracker = new StageTracker(execution, templates, execution.getPath().getFile());
+        try {
+            if (result != null) {
+                tracker.finish(result);
+                return false;
+            }
+            if (template == null && execution.isPipeline() && pipelineProblem != null) {
+                result = new MavenResult(false, "the configured commands cannot run as a pipeline: " + pipelineProblem);
+            } else if (template == null) {
+                result = new MavenResult(false, "no maven command configured for " + execution.getOperations());
+            } else if (isTestOnly(execution)) {
+                result = runTests(template, execution, dir, node, tracker);
+            } else if (isOptimizedDeploy(execution, template, node)) {
+                result = runOptimizedDeploy(template, execution, dir, node, tracker);
             } else {
-                InputStream is = zipFile.getInputStream(zipEntry);
-                FileOutputStream os = FileUtils.openOutputStream(file);
-                try {
-                    IOUtils.copy(is, os);
-                } finally {
-                    os.close();
-                    is.close();
+                result = excuteCommand(template, execution, dir, node, tracker);
+            }
+            tracker.finish(result);
+            return result.isSuccess() && execution.getSupersededBy() == null;
+        } finally {
+            if (copy != null) {
+                pool.release(copy);
+            }
+        }
+    }
+
+    private static MavenCommandTemplate restrictToModules(MavenCommandTemplate template, List<String> modules) {
+        StringBuilder projects = new StringBuilder();
+        for (String module : modules) {
+            if (projects.length() > 0) {
+                projects.append(',');
+            }
+            projects.append(module);
+        }
+        return template.withOption(Arrays.asList("-pl", "--projects"), "-pl", projects.toString())
+            .withOption(Arrays.asList("-amd", "--also-make-dependents"), "-amd");
+    }
+
+    private static boolean isTestOnly(MavenExecution execution) {
+        return !execution.isPipeline() && execution.getOperations().get(0) == MavenOperation.TEST;
+    }
+
+    /**
+     * Runs the tests of an execution, retrying with the default settings if accelerated tests fail and rerunning only
+     * the failed tests as often as configured. All runs report to the same tracker, so a single event carries the
+     * merged outcome.
+     */
+    private MavenResult runTests(MavenCommandTemplate template, MavenExecution execution, File dir, WorkerNode node,
+            StageTracker tracker) {
+        String project = execution.getPath().getFile().getAbsolutePath();
+        MavenCommandTemplate command = template;
+        if (execution.isFailedTestsOnly()) {
+            Set<String> previous = failedTests.get(project);
+            if (previous == null) {
+                LOGGER.info("no failed tests known for {}, running all tests", project);
+            } else {
+                command = withTestFilter(template, previous);
+                tracker.skipTimings();
+            }
+        }
+        long start = System.currentTimeMillis();
+        MavenResult result;
+        if (testAcceleration.isApplicable(execution)) {
+            result = excuteCommand(testAcceleration.tune(command, dispatcher.getRunningCount()), execution, dir, node,
+                tracker);
+            MavenCommandTemplate fallback = result.isSuccess() ? null
+                : getDefaultSettingsFallback(command, SurefireReports.findFailedTests(dir, start), result);
+            if (fallback != null) {
+                LOGGER.info("tests of {} failed with accelerated settings, rerunning with the defaults", execution);
+                // the timings of the accelerated run and the rerun would not add up to a single run
+                tracker.skipTimings();
+                start = System.currentTimeMillis();
+                MavenResult plain = excuteCommand(fallback, execution, dir, node, tracker);
+                if (plain.isSuccess()) {
+                    LOGGER.warn("tests of {} only pass with the default settings", project);
+                    testAcceleration.markUnsafe(execution.getPath().getFile());
                 }
+                result = new MavenResult(plain.isSuccess(), result.getOutput()
+                        + "\n--- rerun with default settings ---\n" + plain.getOutput());
+            }
+        } else {
+            result = excuteCommand(command, execution, dir, node, tracker);
+        }
+        if (result.isSuccess()) {
+            failedTests.remove(project);
+            return result;
+        }
+        Set<String> failed = SurefireReports.findFailedTests(dir, start);
+        for (int i = 0; i < testRetries && !failed.isEmpty() && failed.size() <= MAX_RERUN_TESTS; i++) {
+            LOGGER.info("rerunning {} failed tests of {}", failed.size(), project);
+            tracker.skipTimings();
+            start = System.currentTimeMillis();
+            MavenResult rerun = excuteCommand(withTestFilter(template, failed), execution, dir, node, tracker);
+            result = new MavenResult(rerun.isSuccess(), result.getOutput() + "\n--- rerun of failed tests " + failed
+                    + " ---\n" + rerun.getOutput());
+            if (rerun.isSuccess()) {
+                failedTests.remove(project);
+                return result;
             }
+            failed = SurefireReports.findFailedTests(dir, start);
         }
-        zipFile.close();
+        if (!failed.isEmpty()) {
+            failedTests.put(project, failed);
+        }
+        return result;
     }
 
-    private static String addSystemEnding() {
-        if (System.getProperty("os.name").contains("Windows")) {
-            return ".bat";
+    /**
+     * Returns whether a deploy can go through a staging repository, which has to be on this host to be synchronized.
+     */
+    private boolean isOptimizedDeploy(MavenExecution execution, MavenCommandTemplate template, WorkerNode node) {
+        return deployRepository != null && node.isLocal() && !execution.isPipeline()
+            && execution.getOperations().get(0) == MavenOperation.DEPLOY
+            && !template.getProperties().containsKey(ALT_DEPLOYMENT_REPOSITORY);
+    }
+
+    /**
+     * Deploys into a staging repository and copies only the artifacts the deploy repository does not hold yet.
+     */
+    private MavenResult runOptimizedDeploy(MavenCommandTemplate template, MavenExecution execution, File dir,
+            WorkerNode node, StageTracker tracker) {
+        String repository = deployRepository;
+        String displayRepository = RepositorySync.stripUserInfo(repository);
+        File staging = new File(System.getProperty("karaf.data"), "maven/staging/" + execution.getKey());
+        try {
+            MavenResult result = excuteCommand(template.withProperty(ALT_DEPLOYMENT_REPOSITORY,
+                "staging::default::" + staging.toURI()), execution, dir, node, tracker);
+            if (!result.isSuccess()) {
+                return result;
+            }
+            TraceSpan upload = execution.getTrace().startSpan("upload").setAttribute("repository",
+                displayRepository);
+            try {
+                RepositorySync.Report report =
+                    new RepositorySync(RepositorySync.createTransport(repository), deployThreads).sync(staging);
+                upload.setAttribute("uploaded", report.getUploaded().size())
+                    .setAttribute("skipped", report.getSkipped().size());
+                LOGGER.info("deployed {}: uploaded {}, skipped {} unchanged", new Object[]{ execution,
+                    report.getUploaded().size(), report.getSkipped().size() });
+                tracker.appendOutput(report.toString());
+                return result;
+            } catch (IOException e) {
+                LOGGER.error("could not upload the staged artifacts to " + displayRepository, e);
+                return new MavenResult(false, result.getOutput() + "\ncould not upload the staged artifacts to "
+                        + displayRepository + ": " + e.getMessage());
+            } finally {
+                upload.end();
+            }
+        } finally {
+            FileUtils.deleteQuietly(staging);
         }
-        return "";
     }
 
-    @Override
-    public AliveState getAliveState() {
-        return AliveState.ONLINE;
+    /**
+     * Returns the part of a failed accelerated test run which could pass with the default settings: the failed tests,
+     * or all tests if a forked JVM failed before reporting them. Other failures, e.g. compile errors, do not depend on
+     * the settings, so there is nothing to rerun.
+     */
+    private static MavenCommandTemplate getDefaultSettingsFallback(MavenCommandTemplate command, Set<String> failed,
+            MavenResult accelerated) {
+        if (!failed.isEmpty() && failed.size() <= MAX_RERUN_TESTS) {
+            return withTestFilter(command, failed);
+        }
+        if (failed.isEmpty() && TestAcceleration.isForkFailure(accelerated.getOutput())) {
+            return command;
+        }
+        return null;
     }
 
-    @Override
-    public String runTests(final OpenEngSBFileModel path) {
-        final String id = createId();
-        final String contextId = ContextHolder.get().getCurrentContextId();
-        Runnable runTests = new Runnable() {
+    private static MavenCommandTemplate withTestFilter(MavenCommandTemplate template, Set<String> tests) {
+        String filter = SurefireReports.toTestFilter(tests);
+        // a filter configured in the command would select other tests than the ones to rerun
+        return template.overrideProperty("test", filter).overrideProperty("it.test", filter)
+            .overrideProperty("failIfNoTests", "false").overrideProperty("surefire.failIfNoSpecifiedTests", "false")
+            .overrideProperty("failsafe.failIfNoSpecifiedTests", "false");
+    }
 
-            @Override
-            public void run() {
-                ContextHolder.get().setCurrentContextId(contextId);
-                MavenResult result = excuteCommand(command, path.getFile());
-                testEvents.raiseTestStartEvent(new TestStartEvent(id));
-                if (result.isSuccess()) {
-                    OpenEngSBFileModel outPath = new OpenEngSBFileModel();
-                    outPath.setFile(path.getFile());
-                    testEvents.raiseTestSuccessEvent(new TestSuccessEvent(id, result
-                            .getOutput(), outPath));
-                } else {
-                    testEvents.raiseTestFailEvent(new TestFailEvent(id, result
-                            .getOutput()));
-                }
+    private void updateEffectiveCommands() {
+        Map<MavenOperation, MavenCommandTemplate> result =
+            new EnumMap<MavenOperation, MavenCommandTemplate>(MavenOperation.class);
+        List<MavenCommandTemplate> stages = new ArrayList<MavenCommandTemplate>();
+        for (MavenOperation operation : MavenOperation.values()) {
+            MavenCommandTemplate template = commands.containsKey(operation) ? commands.get(operation) : command;
+            if (template != null) {
+                result.put(operation, optimize(template, quiet));
+                // the pipeline reports its stages from the mojo lines, which -q suppresses
+                stages.add(optimize(template, false));
             }
-        };
-        execute(runTests);
-        return id;
+        }
+        effectiveCommands = result;
+        pipelineCommand = null;
+        pipelineProblem = null;
+        if (stages.size() == MavenOperation.values().length) {
+            try {
+                pipelineCommand = MavenCommandTemplate.merge(stages);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("pipelines are disabled, the configured commands cannot be merged: {}", e.getMessage());
+                pipelineProblem = e.getMessage();
+            }
+        }
+        if (quiet && pipelineCommand != null) {
+            LOGGER.warn("quiet output is not applied to pipelines, their stages are tracked from the maven output");
+        }
     }
 
-    @Override
-    public void runTestsProcessId(final OpenEngSBFileModel path, final long processId) {
-        final String contextId = ContextHolder.get().getCurrentContextId();
-        Runnable runTests = new Runnable() {
-            @Override
-            public void run() {
-                ContextHolder.get().setCurrentContextId(contextId);
-                MavenResult result = excuteCommand(command, path.getFile());
-                testEvents.raiseTestStartEvent(new TestStartEvent(processId));
-                if (result.isSuccess()) {
-                    OpenEngSBFileModel outPath = new OpenEngSBFileModel();
-                    outPath.setFile(path.getFile());
-                    testEvents.raiseTestSuccessEvent(new TestSuccessEvent(processId,
-                            result.getOutput(), outPath));
+    private MavenCommandTemplate optimize(MavenCommandTemplate template, boolean suppressOutput) {
+        MavenCommandTemplate result = template;
+        if (offline) {
+            result = result.withOption(Arrays.asList("-o", "--offline"), "-o");
+        }
+        if (suppressOutput) {
+            result = result.withOption(Arrays.asList("-q", "--quiet"), "-q");
+        }
+        if (threads != null) {
+            result = result.withOption(Arrays.asList("-T", "--threads"), "-T", threads);
+        }
+        return result;
+    }
+
+    private void raiseStartEvent(MavenExecution execution, MavenOperation operation) {
+        if (execution.getBatch() != null) {
+            for (MavenExecution member : execution.getBatch().getMembers()) {
+                raiseStartEvent(member, operation);
+            }
+            return;
+        }
+        switch (operation) {
+            case BUILD:
+                if (execution.hasProcessId()) {
+                    BuildStartEvent buildStartEvent = new BuildStartEvent();
+                    buildStartEvent.setProcessId(execution.getProcessId());
+                    buildEvents.raiseEvent(buildStartEvent);
                 } else {
-                    testEvents.raiseTestFailEvent(new TestFailEvent(processId, result
-                            .getOutput()));
+                    buildEvents.raiseEvent(new BuildStartEvent(execution.getId()));
                 }
-            }
-        };
-        execute(runTests);
+                break;
+            case TEST:
+                if (execution.hasProcessId()) {
+                    testEvents.raiseTestStartEvent(new TestStartEvent(execution.getProcessId()));
+                } else {
+                    testEvents.raiseTestStartEvent(new TestStartEvent(execution.getId()));
+                }
+                break;
+            case DEPLOY:
+                if (execution.hasProcessId()) {
+                    deployEvents.raiseEvent(new DeployStartEvent(execution.getProcessId()));
+                } else {
+                    deployEvents.raiseEvent(new DeployStartEvent(execution.getId()));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown operation " + operation);
+        }
+        if (execution.getFuture() != null) {
+            execution.getFuture().operationStarted(operation);
+        }
     }
 
-    @Override
-    public String build(final OpenEngSBFileModel path) {
-        final String id = createId();
-        final String contextId = ContextHolder.get().getCurrentContextId();
-        Runnable doBuild = new Runnable() {
-            @Override
-            public void run() {
-                ContextHolder.get().setCurrentContextId(contextId);
-                MavenResult result = excuteCommand(command, path.getFile());
-                buildEvents.raiseEvent(new BuildStartEvent(id));
-                if (result.isSuccess()) {
-                    OpenEngSBFileModel outPath = new OpenEngSBFileModel();
-                    outPath.setFile(path.getFile());
-                    buildEvents.raiseEvent(new BuildSuccessEvent(id, result
-                            .getOutput(), outPath));
+    private void raiseSuccessEvent(MavenExecution execution, MavenOperation operation, String output, File dir) {
+        OpenEngSBFileModel outPath = new OpenEngSBFileModel();
+        outPath.setFile(dir);
+        switch (operation) {
+            case BUILD:
+                if (execution.hasProcessId()) {
+                    buildEvents.raiseEvent(new BuildSuccessEvent(execution.getProcessId(), output, outPath));
                 } else {
-                    buildEvents.raiseEvent(new BuildFailEvent(id, result
-                            .getOutput()));
+                    buildEvents.raiseEvent(new BuildSuccessEvent(execution.getId(), output, outPath));
                 }
+                break;
+            case TEST:
+                if (execution.hasProcessId()) {
+                    testEvents.raiseTestSuccessEvent(new TestSuccessEvent(execution.getProcessId(), output, outPath));
+                } else {
+                    testEvents.raiseTestSuccessEvent(new TestSuccessEvent(execution.getId(), output, outPath));
+                }
+                break;
+            case DEPLOY:
+                if (execution.hasProcessId()) {
+                    deployEvents.raiseEvent(new DeploySuccessEvent(execution.getProcessId(), output));
+                } else {
+                    deployEvents.raiseEvent(new DeploySuccessEvent(execution.getId(), output));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown operation " + operation);
+        }
+        if (execution.getFuture() != null) {
+            execution.getFuture().operationFinished(new OperationResult(operation, true, output));
+        }
+    }
+
+    private void raiseFailEvent(MavenExecution execution, MavenOperation operation, String output) {
+        if (execution.getBatch() != null) {
+            for (MavenExecution member : execution.getBatch().getMembers()) {
+                raiseFailEvent(member, operation, output);
             }
-        };
-        execute(doBuild);
-        return id;
+            return;
+        }
+        switch (operation) {
+            case BUILD:
+                if (execution.hasProcessId()) {
+                    buildEvents.raiseEvent(new BuildFailEvent(execution.getProcessId(), output));
+                } else {
+                    buildEvents.raiseEvent(new BuildFailEvent(execution.getId(), output));
+                }
+                break;
+            case TEST:
+                if (execution.hasProcessId()) {
+                    testEvents.raiseTestFailEvent(new TestFailEvent(execution.getProcessId(), output));
+                } else {
+                    testEvents.raiseTestFailEvent(new TestFailEvent(execution.getId(), output));
+                }
+                break;
+            case DEPLOY:
+                if (execution.hasProcessId()) {
+                    deployEvents.raiseEvent(new DeployFailEvent(execution.getProcessId(), output));
+                } else {
+                    deployEvents.raiseEvent(new DeployFailEvent(execution.getId(), output));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown operation " + operation);
+        }
+        if (execution.getFuture() != null) {
+            execution.getFuture().operationFinished(new OperationResult(operation, false, output));
+        }
     }
 
-    @Override
-    public void build(final OpenEngSBFileModel path, final long processId) {
-        final String contextId = ContextHolder.get().getCurrentContextId();
-        Runnable doBuild = new Runnable() {
+    /**
+     * Resolves the plugins and dependencies of the given projects with dependency:go-offline in the background, which
+     * also records the class data sharing archive if enabled. The instance is reported as connecting until the warmup
+     * is done. Projects which were warmed up last time are not warmed up again.
+     */
+    public synchronized void warmup(final List<File> projects) {
+        if (projects.equals(warmedUpProjects)) {
+            return;
+        }
+        warmedUpProjects = new ArrayList<File>(projects);
+        pendingWarmups.incrementAndGet();
+        warmupExecutor.execute(new Runnable() {
             @Override
             public void run() {
-                ContextHolder.get().setCurrentContextId(contextId);
-                MavenResult result = excuteCommand(command, path.getFile());
-                BuildStartEvent buildStartEvent = new BuildStartEvent();
-                buildStartEvent.setProcessId(processId);
-                buildEvents.raiseEvent(buildStartEvent);
-                if (result.isSuccess()) {
-                    OpenEngSBFileModel outPath = new OpenEngSBFileModel();
-                    outPath.setFile(path.getFile());
-                    buildEvents.raiseEvent(new BuildSuccessEvent(processId,
-                            result.getOutput(), outPath));
-                } else {
-                    buildEvents.raiseEvent(new BuildFailEvent(processId, result
-                            .getOutput()));
+                try {
+                    for (File project : projects) {
+                        prefetch(project);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    pendingWarmups.decrementAndGet();
                 }
             }
-        };
-        execute(doBuild);
-
+        });
     }
 
-    private void execute(Runnable runnable) {
-        if (synchronous) {
-            runnable.run();
+    /**
+     * Watches the given project directories and runs the watch operation on the modules containing changed files,
+     * raising the usual events in the context active now. Changes made while such an execution is queued or running
+     * are collected for the next one. An empty list stops watching.
+     */
+    public synchronized void watch(List<File> projects) {
+        watchContextId = ContextHolder.get().getCurrentContextId();
+        if (projects.isEmpty()) {
+            if (watcher != null) {
+                watcher.stop();
+                watcher = null;
+            }
+            return;
+        }
+        if (watcher == null) {
+            ProjectWatcher.ChangeListener listener = new ProjectWatcher.ChangeListener() {
+                @Override
+                public boolean projectChanged(File project, Set<String> modules) {
+                    return submitWatchExecution(project, modules);
+                }
+            };
+            watcher = new ProjectWatcher(WATCH_INTERVAL_MILLIS, WATCH_QUIET_MILLIS, listener);
+            watcher.setProjects(projects);
+            try {
+                watcher.start();
+            } catch (Exception e) {
+                watcher = null;
+                throw new IllegalStateException("could not start watching " + projects, e);
+            }
         } else {
-            executor.execute(runnable);
+            watcher.setProjects(projects);
         }
     }
 
-    @Override
-    public String deploy(final OpenEngSBFileModel path) {
-        final String id = createId();
-        final String contextId = ContextHolder.get().getCurrentContextId();
-        Runnable doDeploy = new Runnable() {
+    public void setWatchOperation(MavenOperation watchOperation) {
+        this.watchOperation = watchOperation;
+    }
 
-            @Override
-            public void run() {
-                ContextHolder.get().setCurrentContextId(contextId);
-                MavenResult result = excuteCommand(command, path.getFile());
-                deployEvents.raiseEvent(new DeployStartEvent(id));
-                if (result.isSuccess()) {
-                    deployEvents.raiseEvent(new DeploySuccessEvent(id, result
-                            .getOutput()));
-                } else {
-                    deployEvents.raiseEvent(new DeployFailEvent(id, result
-                            .getOutput()));
-                }
-            }
-        };
-        execute(doDeploy);
-        return id;
+    private boolean submitWatchExecution(File project, Set<String> modules) {
+        ExecutionFuture previous = watchExecutions.get(project.getPath());
+        if (previous != null && !previous.isDone()) {
+            return false;
+        }
+        LOGGER.info("changes in {} of {}, running {}", new Object[]{ modules, project, watchOperation });
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(project);
+        String id = createId();
+        MavenExecution execution = new MavenExecution(id, null, path, watchOperation);
+        if (!modules.contains("")) {
+            execution.setModules(new ArrayList<String>(modules));
+        }
+        ExecutionFuture future = new ExecutionFuture(id, 1);
+        execution.setFuture(future);
+        watchExecutions.put(project.getPath(), future);
+        String currentContext = ContextHolder.get().getCurrentContextId();
+        ContextHolder.get().setCurrentContextId(watchContextId);
+        try {
+            submit(execution);
+        } finally {
+            ContextHolder.get().setCurrentContextId(currentContext);
+        }
+        return true;
     }
 
-    @Override
-    public void deploy(final OpenEngSBFileModel path, final long processId) {
-        final String contextId = ContextHolder.get().getCurrentContextId();
-        Runnable doDeploy = new Runnable() {
-            @Override
-            public void run() {
-                ContextHolder.get().setCurrentContextId(contextId);
-                MavenResult result = excuteCommand(command, path.getFile());
-                deployEvents.raiseEvent(new DeployStartEvent(processId));
-                if (result.isSuccess()) {
-                    deployEvents.raiseEvent(new DeploySuccessEvent(processId,
-                            result.getOutput()));
-                } else {
-                    deployEvents.raiseEvent(new DeployFailEvent(processId,
-                            result.getOutput()));
+    private void prefetch(File project) throws InterruptedException {
+        LOGGER.info("prefetching dependencies of {}", project);
+        MavenToolchain currentToolchain = toolchain;
+        List<String> command =
+            new ArrayList<String>(Arrays.asList(currentToolchain.getCommand(), "-B", "dependency:go-offline"));
+        addProxySettings(command);
+        try {
+            ProcessLauncher.Launch launch = launcher.start(project, command, WorkerNode.local(1).get(0),
+                getClassDataSharing(currentToolchain));
+            try {
+                Process process = launch.getProcess();
+                Future<String> outputFuture =
+                    outputReaderPool.submit(new ProcessOutputReader(process.getInputStream()));
+                Future<String> errorFuture = configureProcessErrorReader(process);
+                boolean success = process.waitFor() == 0;
+                String output = readResultFromFuture(outputFuture);
+                readResultFromFuture(errorFuture);
+                if (!success) {
+                    LOGGER.warn("prefetching dependencies of {} failed: {}", project, output);
                 }
-
+            } finally {
+                launcher.release(launch);
             }
-        };
-        execute(doDeploy);
+        } catch (IOException e) {
+            LOGGER.warn("could not prefetch dependencies of " + project, e);
+        }
     }
 
     private String createId() {
         return UUID.randomUUID().toString();
     }
 
-    private synchronized MavenResult excuteCommand(String goal, File dir) {
-        List<String> command = new ArrayList<String>();
-        command.add(mvnCommand);
-        command.addAll(Arrays.asList(goal.trim().split(" ")));
+    private MavenResult excuteCommand(MavenCommandTemplate template, MavenExecution execution, File dir,
+            WorkerNode node, StageTracker tracker) {
+        if (execution.getSupersededBy() != null) {
+            return new MavenResult(false, getSupersededMessage(execution));
+        }
+        if (!node.isLocal() && execution.isLocalOnly()) {
+            // rejected on submission already, unless the dispatcher has been replaced in the meantime
+            return new MavenResult(false, "cannot run " + execution.getToolchain() + " on the remote node " + node
+                    + ", only the maven on its path is available there");
+        }
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put("path", dir.getAbsolutePath());
+        variables.put("contextId", execution.getContextId());
+        variables.put("id", execution.hasProcessId() ? String.valueOf(execution.getProcessId()) : execution.getId());
+        variables.put("operation", execution.getOperations().get(0).name().toLowerCase());
+        List<String> command = new ArrayList<String>(node.getLauncher());
+        command.add(execution.getToolchain().getCommand());
+        command.addAll(template.toArguments(variables));
+        if (!node.isLocal() && !template.hasOption(Arrays.asList("-f", "--file"))) {
+            command.add("-f");
+            command.add(new File(dir, "pom.xml").getAbsolutePath());
+        }
+        if (node.isLocal() && !template.hasOption(Arrays.asList("-s", "--settings"))) {
+            addProxySettings(command);
+        }
 
         try {
-            return runMaven(dir, command);
+            return runMaven(dir, command, node, execution, tracker);
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             return new MavenResult(false, e.getMessage());
@@ -354,27 +1083,123 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         }
     }
 
-    private MavenResult runMaven(File dir, List<String> command)
-            throws IOException, InterruptedException {
-        LOGGER.info("running '{}' in directory '{}'", command, dir.getPath());
-        Process process = configureProcess(dir, command);
-        Future<String> outputFuture = configureProcessOutputReader(process);
-        Future<String> errorFuture = configureProcessErrorReader(process);
-        boolean processResultCode = process.waitFor() == 0;
-        String outputResult = readResultFromFuture(outputFuture);
-        String errorResult = readResultFromFuture(errorFuture);
-        if (!errorResult.isEmpty()) {
-            LOGGER.warn("Maven connector error stream output: {}", errorResult);
+    private MavenResult runMaven(File dir, List<String> command, WorkerNode node, MavenExecution execution,
+            StageTracker tracker) throws IOException, InterruptedException {
+        LOGGER.info("running '{}' in directory '{}' on node {}", new Object[]{ command, dir.getPath(), node });
+        ExecutionTrace trace = execution.getTrace();
+        trace.startSpan("spawn").setAttribute("command", command);
+        ProcessLauncher.Launch launch = configureProcess(dir, command, node, execution.getToolchain());
+        trace.endSpan("spawn");
+        ProcessTreeSampler sampler = null;
+        try {
+            Process process = launch.getProcess();
+            runningProcesses.put(execution.getKey(), process);
+            if (execution.getSupersededBy() != null) {
+                process.destroy();
+            }
+            long interval = resourceSampleInterval;
+            if (node.isLocal() && interval > 0) {
+                sampler = ProcessTreeSampler.start(process, interval, samplerScheduler);
+            }
+            tracker.start();
+            Future<String> outputFuture = configureProcessOutputReader(process, tracker);
+            Future<String> errorFuture = configureProcessErrorReader(process);
+            trace.startSpan("maven");
+            int exitCode = process.waitFor();
+            boolean processResultCode = exitCode == 0;
+            trace.endSpan("maven").setAttribute("exitCode", exitCode);
+            if (sampler != null) {
+                tracker.addResourceUsage(sampler.stop());
+                sampler = null;
+            }
+            trace.startSpan("drain");
+            String outputResult = readResultFromFuture(outputFuture);
+            String errorResult = readResultFromFuture(errorFuture);
+            trace.endSpan("drain");
+            if (!errorResult.isEmpty()) {
+                LOGGER.warn("Maven connector error stream output: {}", errorResult);
+            }
+            LOGGER.info("maven exited with status {}", processResultCode);
+            return new MavenResult(processResultCode, outputResult);
+        } finally {
+            if (sampler != null) {
+                sampler.stop();
+            }
+            runningProcesses.remove(execution.getKey());
+            launcher.release(launch);
         }
-        LOGGER.info("maven exited with status {}", processResultCode);
-        return new MavenResult(processResultCode, outputResult);
     }
 
-    private Process configureProcess(File dir, List<String> command)
-            throws IOException {
-        ProcessBuilder builder = new ProcessBuilder(command);
-        Process process = builder.directory(dir).start();
-        return process;
+    private void recordResourceUsage(MavenExecution execution, ResourceUsage usage) {
+        LOGGER.info("{} used {}", execution, usage);
+        resourceUsage.put(execution.getPath().getFile().getAbsolutePath(), usage);
+        synchronized (totalResourceUsageLock) {
+            totalResourceUsage = totalResourceUsage.plus(usage);
+            measuredExecutions++;
+        }
+    }
+
+    /**
+     * Returns the resources used by the last measured execution of the given project or null.
+     */
+    public ResourceUsage getResourceUsage(File project) {
+        return resourceUsage.get(project.getAbsolutePath());
+    }
+
+    /**
+     * Returns the resources used by all measured executions of this instance together.
+     */
+    public ResourceUsage getTotalResourceUsage() {
+        synchronized (totalResourceUsageLock) {
+            return totalResourceUsage;
+        }
+    }
+
+    public int getMeasuredExecutions() {
+        synchronized (totalResourceUsageLock) {
+            return measuredExecutions;
+        }
+    }
+
+    /**
+     * Makes a maven command resolve through the artifact proxy, if there is one, using a copy of the user settings
+     * with the proxy as mirror, so the global settings of the installation still apply.
+     */
+    private void addProxySettings(List<String> command) {
+        File settings = getProxySettings();
+        if (settings != null) {
+            command.add("-s");
+            command.add(settings.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the proxy settings, written again if the user settings they copy have changed since.
+     */
+    private synchronized File getProxySettings() {
+        if (proxySettings != null && USER_SETTINGS.lastModified() != proxySettingsBase) {
+            try {
+                writeProxySettings(artifactProxy, proxySettings, proxyMirrorOf);
+            } catch (IOException e) {
+                LOGGER.warn("could not update the artifact proxy settings " + proxySettings, e);
+            }
+        }
+        return proxySettings;
+    }
+
+    private void writeProxySettings(ArtifactProxy proxy, File settings, String mirrorOf) throws IOException {
+        long base = USER_SETTINGS.lastModified();
+        proxy.writeSettings(settings, mirrorOf, USER_SETTINGS);
+        proxySettingsBase = base;
+    }
+
+    private ProcessLauncher.Launch configureProcess(File dir, List<String> command, WorkerNode node,
+            MavenToolchain executionToolchain) throws IOException, InterruptedException {
+        return launcher.start(dir, command, node, getClassDataSharing(executionToolchain));
+    }
+
+    private ClassDataSharing getClassDataSharing(MavenToolchain executionToolchain) {
+        return classDataSharing ? executionToolchain.getClassDataSharing() : null;
     }
 
     private Future<String> configureProcessErrorReader(Process process) {
@@ -383,7 +1208,7 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         return outputReaderPool.submit(error);
     }
 
-    private Future<String> configureProcessOutputReader(Process process)
+    private Future<String> configureProcessOutputReader(Process process, StageTracker tracker)
             throws IOException {
         ProcessOutputReader output;
         if (useLogFile) {
@@ -392,6 +1217,10 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         } else {
             output = new ProcessOutputReader(process.getInputStream());
         }
+        if (diagnosticsOutput) {
+            output.discardOutput();
+        }
+        output.addListener(tracker);
         return outputReaderPool.submit(output);
     }
 
@@ -407,15 +1236,16 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         return result;
     }
 
-    private File getNewLogFile() throws IOException {
+    private synchronized File getNewLogFile() throws IOException {
         if (logDir.list().length + 1 > MAX_LOG_FILES) {
             assertLogLimit();
         }
         String dateString = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss")
                 .format(new Date());
-        String fileName = String.format("maven.%s.log", dateString);
-        File logFile = new File(logDir, fileName);
-        logFile.createNewFile();
+        File logFile = new File(logDir, String.format("maven.%s.log", dateString));
+        for (int i = 1; !logFile.createNewFile(); i++) {
+            logFile = new File(logDir, String.format("maven.%s-%d.log", dateString, i));
+        }
         return logFile;
     }
 
@@ -431,18 +1261,20 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         return logFiles[0].delete();
     }
 
+    /**
+     * Switches to the given maven version, installing it first if necessary. Running and queued executions keep the
+     * version they were submitted with.
+     */
     public void setMvnVersion(String mvnVersion) {
-        String tmpMvnVersion = this.mvnVersion;
-        this.mvnVersion = mvnVersion;
         try {
-            installMaven();
+            toolchain = toolchains.resolve(mvnVersion);
         } catch (IOException e) {
-            this.mvnVersion = tmpMvnVersion;
             throw new RuntimeException(e);
         }
-        mvnCommand = System.getProperty("karaf.data") + "/apache-maven-"
-                + mvnVersion + "/bin/mvn" + addSystemEnding();
-        new File(mvnCommand).setExecutable(true);
+    }
+
+    public MavenToolchain getToolchain() {
+        return toolchain;
     }
 
     public void setBuildEvents(BuildDomainEvents buildEvents) {
@@ -477,6 +1309,423 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         return contextService;
     }
 
+    /**
+     * Replaces the worker nodes maven executions are dispatched to. Queued executions are moved to the new nodes,
+     * running ones finish on the old nodes. With a shared execution service a single local node means the slots of
+     * the service, which are shared with all other instances.
+     */
+    public void setNodes(List<WorkerNode> nodes) {
+        ExecutionDispatcher newDispatcher;
+        if (executionService != null && nodes.size() == 1 && nodes.get(0).isLocal()) {
+            newDispatcher = executionService.getDispatcher();
+        } else {
+            newDispatcher = new ExecutionDispatcher(getInstanceId(), nodes);
+            newDispatcher.setThrottle(maxLoad, minFreeMemory);
+            newDispatcher.setQueueOrder(queueOrder);
+        }
+        newDispatcher.setSerializePaths(runner, workingCopies == null);
+        newDispatcher.setQuota(runner, maxConcurrentExecutions);
+        ExecutionDispatcher oldDispatcher = dispatcher;
+        if (newDispatcher == oldDispatcher) {
+            return;
+        }
+        dispatcher = newDispatcher;
+        if (isShared(oldDispatcher)) {
+            oldDispatcher.transfer(runner, newDispatcher);
+        } else {
+            oldDispatcher.shutdown(newDispatcher);
+        }
+    }
+
+    private boolean isShared(ExecutionDispatcher currentDispatcher) {
+        return executionService != null && currentDispatcher == executionService.getDispatcher();
+    }
+
+    /**
+     * Releases everything the instance holds once it is removed: queued executions fail, running ones finish, the
+     * worker threads, journal, project watcher and artifact proxy of the instance stop, and the slots and settings it
+     * claimed on the shared dispatcher are given back.
+     */
+    public synchronized void dispose() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+        ExecutionDispatcher currentDispatcher = dispatcher;
+        for (MavenExecution execution : currentDispatcher.release(runner)) {
+            failExecution(execution, "the connector instance " + getInstanceId() + " has been removed");
+            ExecutionJournal currentJournal = journal;
+            if (currentJournal != null) {
+                currentJournal.finished(execution);
+            }
+        }
+        if (!isShared(currentDispatcher)) {
+            currentDispatcher.shutdown(null);
+        }
+        if (executionService == null) {
+            outputReaderPool.shutdown();
+            warmupExecutor.shutdownNow();
+            samplerScheduler.shutdownNow();
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (artifactProxy != null) {
+            ArtifactProxy proxy = artifactProxy;
+            artifactProxy = null;
+            releaseArtifactProxy(proxy);
+        }
+    }
+
+    /**
+     * Limits the number of executions of this instance running at the same time, 0 for no limit besides the slots
+     * of the nodes.
+     */
+    public void setMaxConcurrentExecutions(int maxConcurrentExecutions) {
+        if (maxConcurrentExecutions < 0) {
+            throw new IllegalArgumentException("invalid number of concurrent executions " + maxConcurrentExecutions);
+        }
+        this.maxConcurrentExecutions = maxConcurrentExecutions;
+        dispatcher.setQuota(runner, maxConcurrentExecutions);
+    }
+
+    /**
+     * Sets how often the failed tests of a test execution are rerun before the execution is reported as failed.
+     */
+    public void setTestRetries(int testRetries) {
+        if (testRetries < 0) {
+            throw new IllegalArgumentException("invalid number of test retries " + testRetries);
+        }
+        this.testRetries = testRetries;
+    }
+
+    /**
+     * Sets the repository deploy executions copy their changed artifacts to, or null to deploy with the plain deploy
+     * command.
+     */
+    public void setDeployRepository(String deployRepository) {
+        if (deployRepository != null) {
+            RepositorySync.createTransport(deployRepository);
+        }
+        this.deployRepository = deployRepository;
+    }
+
+    public void setDeployThreads(int deployThreads) {
+        if (deployThreads < 1) {
+            throw new IllegalArgumentException("invalid number of deploy threads " + deployThreads);
+        }
+        this.deployThreads = deployThreads;
+    }
+
+    /**
+     * Lets local maven runs resolve the repositories matching the mirrorOf pattern through a caching proxy of the
+     * given upstream repositories, which is shared with the other instances on the node. An empty list stops using
+     * the proxy.
+     */
+    public synchronized void setArtifactProxy(List<String> upstreams, String mirrorOf) {
+        ArtifactProxy proxy = null;
+        File settings = null;
+        try {
+            if (!upstreams.isEmpty()) {
+                if (executionService != null) {
+                    proxy = executionService.acquireArtifactProxy(upstreams);
+                } else if (artifactProxy != null && artifactProxy.getUpstreams().equals(upstreams)) {
+                    proxy = artifactProxy;
+                } else {
+                    proxy = new ArtifactProxy(ArtifactProxy.getCacheDirectory(upstreams), upstreams);
+                    proxy.start();
+                }
+                settings = new File(System.getProperty("karaf.data"), "maven/proxy/settings-" + getInstanceId()
+                        + ".xml");
+                writeProxySettings(proxy, settings, mirrorOf);
+            }
+        } catch (IOException e) {
+            if (proxy != null && proxy != artifactProxy) {
+                releaseArtifactProxy(proxy);
+            }
+            throw new IllegalStateException("could not start the artifact proxy", e);
+        }
+        ArtifactProxy previous = artifactProxy;
+        artifactProxy = proxy;
+        proxySettings = settings;
+        proxyMirrorOf = mirrorOf;
+        if (previous != null) {
+            releaseArtifactProxy(previous);
+        }
+    }
+
+    /**
+     * Gives back a proxy the instance no longer uses: a shared one is stopped once no instance uses it anymore, an
+     * own one right away unless it is still the current proxy.
+     */
+    private void releaseArtifactProxy(ArtifactProxy proxy) {
+        if (executionService != null) {
+            executionService.releaseArtifactProxy(proxy);
+        } else if (proxy != artifactProxy) {
+            proxy.stop();
+        }
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the resources used by local maven processes and their descendants
+     * are sampled, 0 to not measure them.
+     */
+    public void setResourceSampleInterval(long resourceSampleInterval) {
+        if (resourceSampleInterval < 0) {
+            throw new IllegalArgumentException("invalid resource sample interval " + resourceSampleInterval);
+        }
+        this.resourceSampleInterval = resourceSampleInterval;
+    }
+
+    /**
+     * Sets the probability with which executions are traced, 0 to disable tracing.
+     */
+    public void setTraceSampleRate(double sampleRate) {
+        tracer.setSampleRate(sampleRate);
+    }
+
+    public void setMaxTracesPerMinute(int maxTracesPerMinute) {
+        tracer.setMaxTracesPerMinute(maxTracesPerMinute);
+    }
+
+    /**
+     * Replaces the exporter receiving the spans of traced executions, which by default writes them to a file in the
+     * karaf data directory.
+     */
+    public void setSpanExporter(SpanExporter exporter) {
+        tracer.setExporter(exporter);
+    }
+
+    public void setTestAcceleration(TestAcceleration.Mode mode) {
+        testAcceleration.setMode(mode);
+    }
+
+    /**
+     * Sets whether a new execution makes queued or running executions of the same operations on the same path
+     * obsolete. Obsolete executions fail with a message naming the superseding execution.
+     */
+    public void setSupersedePolicy(ExecutionDispatcher.SupersedePolicy supersedePolicy) {
+        this.supersedePolicy = supersedePolicy;
+    }
+
+    /**
+     * Sets the order of the queued executions. The order of a shared execution service is configured node-wide.
+     */
+    public void setQueueOrder(ExecutionDispatcher.QueueOrder queueOrder) {
+        this.queueOrder = queueOrder;
+        ExecutionDispatcher currentDispatcher = dispatcher;
+        if (!isShared(currentDispatcher)) {
+            currentDispatcher.setQueueOrder(queueOrder);
+        }
+    }
+
+    /**
+     * Enables the execution journal. Executions which were submitted but did not finish before the last shutdown are
+     * either queued again or reported as failed, depending on the policy.
+     */
+    public synchronized void setRecoveryPolicy(ExecutionJournal.RecoveryPolicy recoveryPolicy) {
+        if (recoveryPolicy == ExecutionJournal.RecoveryPolicy.NONE) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            return;
+        }
+        if (journal == null) {
+            File journalFile = new File(System.getProperty("karaf.data"), "maven/journal/" + getInstanceId()
+                    + ".journal");
+            try {
+                journal = new ExecutionJournal(journalFile, JOURNAL_CAPACITY, JOURNAL_COMMIT_INTERVAL);
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot open execution journal " + journalFile, e);
+            }
+            recover(journal.getIncompleteExecutions(), recoveryPolicy);
+        }
+    }
+
+    private void recover(List<MavenExecution> executions, ExecutionJournal.RecoveryPolicy recoveryPolicy) {
+        for (MavenExecution execution : executions) {
+            LOGGER.info("recovering interrupted execution {} ({})", execution, recoveryPolicy);
+            if (recoveryPolicy == ExecutionJournal.RecoveryPolicy.REQUEUE) {
+                String version = journal.getToolchainVersion(execution);
+                try {
+                    execution.setToolchain(version == null ? toolchain : toolchains.resolve(version));
+                    dispatcher.submit(execution, runner);
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.warn("could not resolve maven " + version + " for interrupted execution " + execution, e);
+                }
+            }
+            failExecution(execution, "execution was interrupted by a restart of the connector");
+            journal.finished(execution);
+        }
+    }
+
+    public void setMaxQueueLength(int maxQueueLength) {
+        admissionController.setMaxQueueLength(maxQueueLength);
+    }
+
+    public void setMaxQueueLengthPerContext(int maxQueueLengthPerContext) {
+        admissionController.setMaxQueueLengthPerContext(maxQueueLengthPerContext);
+    }
+
+    public void setOverloadPolicy(AdmissionController.OverloadPolicy overloadPolicy) {
+        admissionController.setOverloadPolicy(overloadPolicy);
+    }
+
+    /**
+     * Sets the host limits above which local nodes do not start further executions. The limits of a shared
+     * execution service are configured node-wide.
+     *
+     * @param maxLoad maximum system load average per cpu, 0 for no limit
+     * @param minFreeMemory minimum free physical memory in bytes, 0 for no limit
+     */
+    public void setThrottle(double maxLoad, long minFreeMemory) {
+        this.maxLoad = maxLoad;
+        this.minFreeMemory = minFreeMemory;
+        ExecutionDispatcher currentDispatcher = dispatcher;
+        if (!isShared(currentDispatcher)) {
+            currentDispatcher.setThrottle(maxLoad, minFreeMemory);
+        }
+    }
+
+    public void setJvmProfile(JvmProfile jvmProfile) {
+        launcher.setProfile(jvmProfile);
+    }
+
+    public JvmProfile getJvmProfile() {
+        return launcher.getProfile();
+    }
+
+    /**
+     * Enables a class data sharing archive for the maven installation in use, which is recorded by the first
+     * successful execution.
+     */
+    public void setClassDataSharing(boolean classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    /**
+     * Runs every execution on a local node in a working copy of its own project directory, so that executions on the
+     * same project no longer wait for each other. Events still report the project directory, the build output of a
+     * working copy is not kept. Executions on remote nodes keep running in the project directory one at a time.
+     */
+    public void setIsolatedWorkingCopies(boolean isolated) {
+        workingCopies = isolated
+            ? new WorkingCopyPool(new File(System.getProperty("karaf.data"), "maven/copies/" + getInstanceId()))
+            : null;
+        dispatcher.setSerializePaths(runner, !isolated);
+    }
+
+    /**
+     * Returns the diagnostics extracted from the last run of the execution with the given id, if it is among the
+     * recently finished ones.
+     */
+    public BuildDiagnostics getDiagnostics(String id) {
+        synchronized (diagnostics) {
+            return diagnostics.get(id);
+        }
+    }
+
+    public BuildDiagnostics getDiagnostics(long processId) {
+        synchronized (diagnostics) {
+            return diagnostics.get(PROCESS_KEY_PREFIX + processId);
+        }
+    }
+
+    private static String getDiagnosticsKey(MavenExecution execution) {
+        return execution.hasProcessId() ? PROCESS_KEY_PREFIX + execution.getProcessId() : execution.getKey();
+    }
+
+    /**
+     * Enables recording a timing profile of every run into a history per project path.
+     */
+    public void setRecordTimings(boolean recordTimings) {
+        this.recordTimings = recordTimings;
+    }
+
+    /**
+     * Returns the recorded timing profiles of the given project, the oldest first.
+     */
+    public List<TimingProfile> getTimingProfiles(OpenEngSBFileModel path) {
+        try {
+            return getTimingHistory(path.getFile()).read();
+        } catch (IOException e) {
+            LOGGER.warn("could not read timing history of " + path.getFile(), e);
+            return new ArrayList<TimingProfile>();
+        }
+    }
+
+    /**
+     * Returns the mojos and resolution steps of the given project which took at least half again as long and one
+     * second more in the latest run than in the median of the runs before.
+     */
+    public List<TimingHistory.Regression> getTimingRegressions(OpenEngSBFileModel path) {
+        try {
+            return getTimingHistory(path.getFile()).findRegressions(REGRESSION_FACTOR, REGRESSION_MINIMUM_MILLIS);
+        } catch (IOException e) {
+            LOGGER.warn("could not read timing history of " + path.getFile(), e);
+            return new ArrayList<TimingHistory.Regression>();
+        }
+    }
+
+    private void recordTimingProfile(File project, TimingProfile profile) {
+        try {
+            getTimingHistory(project).append(profile);
+        } catch (IOException e) {
+            LOGGER.warn("could not record timing profile of " + project, e);
+        }
+    }
+
+    private TimingHistory getTimingHistory(File project) {
+        File absolute = project.getAbsoluteFile();
+        TimingHistory history = timingHistories.get(absolute.getPath());
+        if (history == null) {
+            String name = String.format("%s-%08x.timings", absolute.getName(), absolute.getPath().hashCode());
+            history = new TimingHistory(new File(System.getProperty("karaf.data"), "maven/timings/" + name));
+            TimingHistory existing = timingHistories.putIfAbsent(absolute.getPath(), history);
+            if (existing != null) {
+                history = existing;
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Selects the output passed to the events: "full" for the complete maven output or "diagnostics" for the
+     * extracted diagnostics only, in which case the complete output is not kept in memory at all.
+     */
+    public void setEventOutput(String eventOutput) {
+        if (eventOutput == null || eventOutput.trim().isEmpty() || "full".equalsIgnoreCase(eventOutput.trim())) {
+            diagnosticsOutput = false;
+        } else if ("diagnostics".equalsIgnoreCase(eventOutput.trim())) {
+            diagnosticsOutput = true;
+        } else {
+            throw new IllegalArgumentException("unknown event output " + eventOutput);
+        }
+    }
+
+    /**
+     * Sets the time in milliseconds after which a running execution counts as stuck in the alive state, 0 disables
+     * the check.
+     */
+    public void setExecutionTimeout(long executionTimeout) {
+        this.executionTimeout = executionTimeout;
+    }
+
+    public void setNiceLevel(int niceLevel) {
+        launcher.setNiceLevel(niceLevel);
+    }
+
+    public void setCpuAffinity(String cpuAffinity) {
+        launcher.setCpuAffinity(cpuAffinity);
+    }
+
+    public List<WorkerNode> getNodes() {
+        return dispatcher.getNodes();
+    }
+
     public void setSynchronous(boolean synchronous) {
         this.synchronous = synchronous;
     }
@@ -486,7 +1735,54 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
     }
 
     public void setCommand(String command) {
-        this.command = command;
+        setCommand(MavenCommandTemplate.compile(command));
+    }
+
+    public void setCommand(MavenCommandTemplate command) {
+        synchronized (commands) {
+            this.command = command;
+            updateEffectiveCommands();
+        }
+    }
+
+    public void setCommand(MavenOperation operation, String command) {
+        setCommand(operation, MavenCommandTemplate.compile(command));
+    }
+
+    public void setCommand(MavenOperation operation, MavenCommandTemplate command) {
+        synchronized (commands) {
+            if (command == null) {
+                commands.remove(operation);
+            } else {
+                commands.put(operation, command);
+            }
+            updateEffectiveCommands();
+        }
+    }
+
+    public void setOffline(boolean offline) {
+        synchronized (commands) {
+            this.offline = offline;
+            updateEffectiveCommands();
+        }
+    }
+
+    public void setQuiet(boolean quiet) {
+        synchronized (commands) {
+            this.quiet = quiet;
+            updateEffectiveCommands();
+        }
+    }
+
+    public void setThreads(String threads) {
+        String value = threads == null || threads.trim().isEmpty() ? null : threads.trim();
+        if (value != null && !MavenCommandTemplate.isValidThreadCount(value)) {
+            throw new IllegalArgumentException("invalid thread count " + value);
+        }
+        synchronized (commands) {
+            this.threads = value;
+            updateEffectiveCommands();
+        }
     }
 
     public void setUseLogFile(boolean useLogFile) {
@@ -497,6 +1793,181 @@ public class MavenServiceImpl extends AbstractOpenEngSBConnectorService implemen
         return MAX_LOG_FILES;
     }
 
+    /**
+     * Raises the start, success and fail events for the operations of an execution. For pipelines it follows the
+     * mojos announced in the maven output and completes an operation as soon as maven starts a phase beyond the ones
+     * requested by the operation's command. Reactor builds interleave the phases of their modules, so there all
+     * operations are completed when maven exits. The tracker is started before the output is read and is called from
+     * the output reader and the executing thread, so its methods are synchronized.
+     */
+    private class StageTracker implements ProcessOutputListener {
+
+        private final MavenExecution execution;
+        private final List<MavenOperation> operations;
+        private final File dir;
+        private final int[] lastPhases;
+        private final DiagnosticsExtractor extractor = new DiagnosticsExtractor();
+        private final TimingProfiler profiler = new TimingProfiler();
+        private final boolean keepStageOutput;
+        private StringBuilder stageOutput = new StringBuilder();
+        private int current;
+        private boolean started;
+        private boolean reactor;
+        private boolean skipTimings;
+        private final StringBuilder appendedOutput = new StringBuilder();
+        private ResourceUsage usage;
+
+        public StageTracker(MavenExecution execution, Map<MavenOperation, MavenCommandTemplate> templates, File dir) {
+            this.execution = execution;
+            this.dir = dir;
+            operations = execution.getOperations();
+            keepStageOutput = execution.isPipeline() && !diagnosticsOutput;
+            lastPhases = new int[operations.size()];
+            for (int i = 0; i < lastPhases.length; i++) {
+                MavenCommandTemplate template = templates.get(operations.get(i));
+                lastPhases[i] = template == null ? -1 : template.getHighestPhaseIndex();
+            }
+        }
+
+        public synchronized void start() {
+            profiler.start();
+            if (!started) {
+                started = true;
+                raiseStartEvent(execution, operations.get(current));
+            }
+        }
+
+        /**
+         * Keeps the timings of a run over a subset of the tests from being recorded as the project's profile.
+         */
+        public synchronized void skipTimings() {
+            skipTimings = true;
+        }
+
+        /**
+         * Adds the resources used by one of the maven runs of the execution.
+         */
+        public synchronized void addResourceUsage(ResourceUsage runUsage) {
+            usage = usage == null ? runUsage : usage.plus(runUsage);
+        }
+
+        /**
+         * Adds text to the output of the finished execution, whatever the configured event output.
+         */
+        public synchronized void appendOutput(String text) {
+            appendedOutput.append('\n').append(text);
+        }
+
+        @Override
+        public synchronized void lineRead(String line) {
+            execution.getTrace().lineRead(line);
+            if (execution.getFuture() != null) {
+                execution.getFuture().lineRead(line);
+            }
+            extractor.lineRead(line);
+            profiler.lineRead(line);
+            if (!execution.isPipeline()) {
+                return;
+            }
+            if (keepStageOutput) {
+                stageOutput.append(line).append("\n");
+            }
+            if (line.contains("Reactor Build Order")) {
+                reactor = true;
+            }
+            int phase = MavenLifecycle.phaseIndexOfMojoStart(line);
+            if (reactor || phase < 0) {
+                return;
+            }
+            while (current < operations.size() - 1 && lastPhases[current] >= 0 && phase > lastPhases[current]) {
+                ContextHolder.get().setCurrentContextId(execution.getContextId());
+                raiseSuccessEvent(execution, operations.get(current), render(stageOutput.toString()), dir);
+                stageOutput = new StringBuilder();
+                current++;
+                raiseStartEvent(execution, operations.get(current));
+            }
+        }
+
+        private String render(String output) {
+            if (!diagnosticsOutput || !extractor.hasOutput()) {
+                return output + appendedOutput;
+            }
+            return extractor.getResult().toString() + appendedOutput;
+        }
+
+        /**
+         * Raises the events of the batch members from the reactor summary. Members missing from the summary share
+         * the outcome of the whole run.
+         */
+        private void finishBatch(MavenResult result) {
+            BatchBuild batch = execution.getBatch();
+            List<BuildDiagnostics.ModuleResult> summary = extractor.getResult().getModules();
+            String output = render(result.getOutput());
+            for (MavenExecution member : batch.getMembers()) {
+                String status = batch.getStatus(member, summary);
+                if (status == null ? result.isSuccess() : "SUCCESS".equals(status)) {
+                    raiseSuccessEvent(member, operations.get(0), output, member.getPath().getFile());
+                } else if ("SKIPPED".equals(status)) {
+                    raiseFailEvent(member, operations.get(0), "not built, because the batch failed before it");
+                } else {
+                    raiseFailEvent(member, operations.get(0), output);
+                }
+            }
+        }
+
+        public synchronized void finish(MavenResult processResult) {
+            boolean superseded = execution.getSupersededBy() != null;
+            MavenResult result = superseded ? new MavenResult(false, getSupersededMessage(execution)) : processResult;
+            execution.getTrace().getRoot().setAttribute("success", result.isSuccess())
+                .setAttribute("supersededBy", execution.getSupersededBy());
+            if (usage != null) {
+                recordResourceUsage(execution, usage);
+                execution.getTrace().getRoot().setAttribute("cpuMillis", usage.getCpuMillis())
+                    .setAttribute("peakMemory", usage.getPeakMemory());
+            }
+            TraceSpan events = execution.getTrace().startSpan("events");
+            try {
+                raiseEvents(result, superseded);
+            } finally {
+                events.end();
+            }
+        }
+
+        private void raiseEvents(MavenResult result, boolean superseded) {
+            if (!started) {
+                raiseStartEvent(execution, operations.get(current));
+            } else if (recordTimings && !skipTimings && !superseded && execution.getBatch() == null) {
+                recordTimingProfile(execution.getPath().getFile(), profiler.finish());
+            }
+            synchronized (diagnostics) {
+                diagnostics.put(getDiagnosticsKey(execution), extractor.getResult());
+            }
+            if (execution.getBatch() != null) {
+                finishBatch(result);
+                return;
+            }
+            String output = superseded ? result.getOutput()
+                : render(current == 0 ? result.getOutput() : stageOutput.toString());
+            if (result.isSuccess()) {
+                raiseSuccessEvent(execution, operations.get(current), output, dir);
+            } else {
+                raiseFailEvent(execution, operations.get(current), output);
+            }
+            for (int i = current + 1; i < operations.size(); i++) {
+                raiseStartEvent(execution, operations.get(i));
+                if (result.isSuccess()) {
+                    raiseSuccessEvent(execution, operations.get(i), output, dir);
+                } else if (reactor) {
+                    raiseFailEvent(execution, operations.get(i), output);
+                } else {
+                    raiseFailEvent(execution, operations.get(i),
+                        String.format("not executed, because %s failed", operations.get(current)));
+                }
+            }
+        }
+
+    }
+
     private class MavenResult {
         private String output;
 
@@ -17,7 +17,11 @@
 
 package org.openengsb.connector.maven.internal;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openengsb.core.api.Connector;
 import org.openengsb.core.api.context.ContextCurrentService;
@@ -34,25 +38,219 @@ public class MavenServiceInstanceFactory extends AbstractConnectorInstanceFactor
 
     private ContextCurrentService contextService;
 
+    private SharedExecutionService executionService;
+
+    private final Map<String, MavenServiceImpl> instances = new ConcurrentHashMap<String, MavenServiceImpl>();
+
     @Override
     public Connector createNewInstance(String id) {
-        MavenServiceImpl service = new MavenServiceImpl(id);
+        MavenServiceImpl service = new MavenServiceImpl(id, executionService);
         service.setBuildEvents(buildEvents);
         service.setTestEvents(testEvents);
         service.setDeployEvents(deployEvents);
         service.setContextService(contextService);
+        instances.put(id, service);
         return service;
     }
 
+    /**
+     * Disposes the instance whose connector service has been unregistered.
+     */
+    public void unbindConnector(Connector connector, Map<String, ?> properties) {
+        Object id = properties == null ? null : properties.get("id");
+        MavenServiceImpl instance = id == null ? null : instances.remove(id.toString());
+        if (instance != null) {
+            instance.dispose();
+        }
+    }
+
+    public void destroy() {
+        for (MavenServiceImpl instance : instances.values()) {
+            instance.dispose();
+        }
+        instances.clear();
+    }
+
     @Override
     public void doApplyAttributes(MavenServiceImpl instance, Map<String, String> attributes) {
         if (attributes.containsKey("command")) {
-            instance.setCommand(attributes.get("command"));
+            instance.setCommand(compileCommand(attributes.get("command")));
+        }
+        for (MavenOperation operation : MavenOperation.values()) {
+            String key = operation.name().toLowerCase() + "Command";
+            if (attributes.containsKey(key)) {
+                instance.setCommand(operation, compileCommand(attributes.get(key)));
+            }
+        }
+        if (attributes.containsKey("offline")) {
+            instance.setOffline(Boolean.parseBoolean(attributes.get("offline")));
+        }
+        if (attributes.containsKey("quiet")) {
+            instance.setQuiet(Boolean.parseBoolean(attributes.get("quiet")));
+        }
+        if (attributes.containsKey("threads")) {
+            instance.setThreads(attributes.get("threads"));
+        }
+        if (attributes.containsKey("testAcceleration")) {
+            String mode = attributes.get("testAcceleration");
+            instance.setTestAcceleration(mode == null || mode.trim().isEmpty() ? TestAcceleration.Mode.OFF
+                : TestAcceleration.Mode.valueOf(mode.trim().toUpperCase()));
+        }
+        if (attributes.containsKey("testRetries")) {
+            instance.setTestRetries(parseInt(attributes.get("testRetries")));
+        }
+        if (attributes.containsKey("eventOutput")) {
+            instance.setEventOutput(attributes.get("eventOutput"));
+        }
+        if (attributes.containsKey("recordTimings")) {
+            instance.setRecordTimings(Boolean.parseBoolean(attributes.get("recordTimings")));
+        }
+        if (attributes.containsKey("nodes") || attributes.containsKey("nodeSlots")) {
+            int slots = Math.max(1, parseInt(attributes.get("nodeSlots")));
+            instance.setNodes(WorkerNode.parse(attributes.get("nodes"), slots));
+        }
+        if (attributes.containsKey("maxConcurrentExecutions")) {
+            instance.setMaxConcurrentExecutions(parseInt(attributes.get("maxConcurrentExecutions")));
+        }
+        if (attributes.containsKey("queueOrder")) {
+            String order = attributes.get("queueOrder");
+            instance.setQueueOrder(order == null || order.trim().isEmpty() ? ExecutionDispatcher.QueueOrder.FIFO
+                : ExecutionDispatcher.QueueOrder.valueOf(order.trim().toUpperCase().replace('-', '_')));
+        }
+        if (attributes.containsKey("supersede")) {
+            String policy = attributes.get("supersede");
+            instance.setSupersedePolicy(policy == null || policy.trim().isEmpty()
+                ? ExecutionDispatcher.SupersedePolicy.NONE
+                : ExecutionDispatcher.SupersedePolicy.valueOf(policy.trim().toUpperCase()));
+        }
+        if (attributes.containsKey("deployRepository")) {
+            String repository = attributes.get("deployRepository");
+            instance.setDeployRepository(repository == null || repository.trim().isEmpty() ? null : repository.trim());
+        }
+        if (attributes.containsKey("deployThreads")) {
+            instance.setDeployThreads(parseInt(attributes.get("deployThreads")));
+        }
+        if (attributes.containsKey("traceSampleRate")) {
+            String rate = attributes.get("traceSampleRate");
+            instance.setTraceSampleRate(rate == null || rate.trim().isEmpty() ? 0 : Double.parseDouble(rate.trim()));
+        }
+        if (attributes.containsKey("traceLimit")) {
+            instance.setMaxTracesPerMinute(parseInt(attributes.get("traceLimit")));
+        }
+        if (attributes.containsKey("artifactProxy") || attributes.containsKey("artifactProxyMirrorOf")) {
+            List<String> upstreams = new ArrayList<String>();
+            String urls = attributes.get("artifactProxy");
+            for (String url : urls == null ? new String[0] : urls.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    upstreams.add(url.trim());
+                }
+            }
+            String mirrorOf = attributes.get("artifactProxyMirrorOf");
+            boolean defaultMirrorOf = mirrorOf == null || mirrorOf.trim().isEmpty();
+            instance.setArtifactProxy(upstreams, defaultMirrorOf ? ArtifactProxy.DEFAULT_MIRROR_OF : mirrorOf.trim());
+        }
+        if (attributes.containsKey("resourceSampleInterval")) {
+            instance.setResourceSampleInterval(parseInt(attributes.get("resourceSampleInterval")));
+        }
+        if (attributes.containsKey("isolatedWorkingCopies")) {
+            instance.setIsolatedWorkingCopies(Boolean.parseBoolean(attributes.get("isolatedWorkingCopies")));
+        }
+        if (attributes.containsKey("maxQueueLength")) {
+            instance.setMaxQueueLength(parseInt(attributes.get("maxQueueLength")));
+        }
+        if (attributes.containsKey("maxQueueLengthPerContext")) {
+            instance.setMaxQueueLengthPerContext(parseInt(attributes.get("maxQueueLengthPerContext")));
+        }
+        if (attributes.containsKey("overloadPolicy")) {
+            String policy = attributes.get("overloadPolicy");
+            instance.setOverloadPolicy(policy == null || policy.trim().isEmpty()
+                ? AdmissionController.OverloadPolicy.REJECT
+                : AdmissionController.OverloadPolicy.valueOf(policy.trim().toUpperCase()));
+        }
+        if (attributes.containsKey("maxLoad") || attributes.containsKey("minFreeMemory")) {
+            double maxLoad = 0;
+            if (attributes.get("maxLoad") != null && !attributes.get("maxLoad").trim().isEmpty()) {
+                maxLoad = Double.parseDouble(attributes.get("maxLoad").trim());
+            }
+            instance.setThrottle(maxLoad, parseInt(attributes.get("minFreeMemory")) * 1024L * 1024L);
+        }
+        if (attributes.containsKey("executionTimeout")) {
+            instance.setExecutionTimeout(parseInt(attributes.get("executionTimeout")) * 60L * 1000L);
+        }
+        applyJvmProfile(instance, attributes);
+        if (attributes.containsKey("classDataSharing")) {
+            instance.setClassDataSharing(Boolean.parseBoolean(attributes.get("classDataSharing")));
+        }
+        if (attributes.containsKey("niceLevel")) {
+            instance.setNiceLevel(parseInt(attributes.get("niceLevel")));
+        }
+        if (attributes.containsKey("cpuAffinity")) {
+            instance.setCpuAffinity(attributes.get("cpuAffinity"));
         }
         if (attributes.containsKey("mvnVersion")) {
             instance.setMvnVersion(attributes.get("mvnVersion"));
-            
         }
+        if (attributes.containsKey("recoveryPolicy")) {
+            String policy = attributes.get("recoveryPolicy");
+            instance.setRecoveryPolicy(policy == null || policy.trim().isEmpty()
+                ? ExecutionJournal.RecoveryPolicy.NONE
+                : ExecutionJournal.RecoveryPolicy.valueOf(policy.trim().toUpperCase()));
+        }
+        if (Boolean.parseBoolean(attributes.get("warmup"))) {
+            instance.warmup(parsePaths(attributes.get("warmupPaths")));
+        }
+        if (attributes.containsKey("watchOperation")) {
+            String operation = attributes.get("watchOperation");
+            instance.setWatchOperation(operation == null || operation.trim().isEmpty() ? MavenOperation.TEST
+                : MavenOperation.valueOf(operation.trim().toUpperCase()));
+        }
+        if (attributes.containsKey("watchPaths")) {
+            instance.watch(parsePaths(attributes.get("watchPaths")));
+        }
+    }
+
+    private static void applyJvmProfile(MavenServiceImpl instance, Map<String, String> attributes) {
+        JvmProfile profile = instance.getJvmProfile();
+        if (attributes.containsKey("buildMemory")) {
+            profile = profile.withHeap(parseInt(attributes.get("buildMemory")));
+        }
+        if (attributes.containsKey("jvmGarbageCollector")) {
+            String garbageCollector = attributes.get("jvmGarbageCollector");
+            profile = profile.withGarbageCollector(garbageCollector == null ? null : garbageCollector.trim());
+        }
+        if (attributes.containsKey("jvmQuickStart")) {
+            profile = profile.withQuickStart(Boolean.parseBoolean(attributes.get("jvmQuickStart")));
+        }
+        if (attributes.containsKey("jvmOptions")) {
+            profile = profile.withOptions(attributes.get("jvmOptions"));
+        }
+        instance.setJvmProfile(profile);
+    }
+
+    private static int parseInt(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    private static List<File> parsePaths(String value) {
+        List<File> result = new ArrayList<File>();
+        if (value != null) {
+            for (String path : value.split(",")) {
+                if (!path.trim().isEmpty()) {
+                    result.add(new File(path.trim()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static MavenCommandTemplate compileCommand(String command) {
+        if (command == null || command.trim().isEmpty()) {
+            return null;
+        }
+        return MavenCommandTemplate.compile(command);
     }
 
     public void setBuildEvents(BuildDomainEvents buildEvents) {
@@ -70,4 +268,8 @@ public class MavenServiceInstanceFactory extends AbstractConnectorInstanceFactor
     public void setContextService(ContextCurrentService contextService) {
         this.contextService = contextService;
     }
+
+    public void setExecutionService(SharedExecutionService executionService) {
+        this.executionService = executionService;
+    }
 }
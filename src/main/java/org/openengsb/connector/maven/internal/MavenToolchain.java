@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An installed maven distribution. Apart from the cached availability toolchains are immutable, so executions capture
+ * the toolchain in use when they are submitted and keep it even if the connector switches to another version
+ * meanwhile.
+ */
+public final class MavenToolchain {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MavenToolchain.class);
+
+    private static final long PROBE_RETRY_MILLIS = 60 * 1000;
+
+    private final String version;
+    private final String command;
+    private final ClassDataSharing classDataSharing;
+    private boolean systemAvailable;
+    private long lastProbe = -PROBE_RETRY_MILLIS;
+
+    MavenToolchain(String version, String command, File classDataSharingArchive) {
+        this.version = version;
+        this.command = command;
+        classDataSharing = new ClassDataSharing(classDataSharingArchive);
+    }
+
+    /**
+     * Returns the maven version or an empty string for the maven found on the path.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public boolean isSystem() {
+        return version.isEmpty();
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns whether the maven executable can be run. The maven on the path is probed by running it with -v; a
+     * successful probe is kept, a failed one is repeated after a minute at the earliest.
+     */
+    public boolean isAvailable() {
+        if (!isSystem()) {
+            return new File(command).canExecute();
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (!systemAvailable && now - lastProbe >= PROBE_RETRY_MILLIS) {
+                lastProbe = now;
+                systemAvailable = probe();
+            }
+            return systemAvailable;
+        }
+    }
+
+    private boolean probe() {
+        try {
+            Process process = new ProcessBuilder(command, "-v").redirectErrorStream(true).start();
+            IOUtils.toString(process.getInputStream());
+            boolean result = process.waitFor() == 0;
+            if (!result) {
+                LOGGER.warn("{} -v failed, maven is not available", command);
+            }
+            return result;
+        } catch (IOException e) {
+            LOGGER.warn("could not run {}: {}", command, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the class data sharing archive of this maven installation, which is shared by all connector instances.
+     */
+    public ClassDataSharing getClassDataSharing() {
+        return classDataSharing;
+    }
+
+    @Override
+    public String toString() {
+        return isSystem() ? "system maven" : "maven " + version;
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+/**
+ * Accounts the memory reserved by running maven processes against a budget for the whole host. Reservations block
+ * until enough of the budget is free. A single reservation never exceeds the budget itself, so oversized builds run
+ * alone instead of waiting forever.
+ */
+public class MemoryBudget {
+
+    private static final MemoryBudget HOST_BUDGET = new MemoryBudget();
+
+    private long total;
+    private long used;
+
+    public static MemoryBudget getHostBudget() {
+        return HOST_BUDGET;
+    }
+
+    /**
+     * Reserves the given amount of megabytes.
+     *
+     * @return the amount actually reserved, which has to be released later
+     */
+    public synchronized long acquire(long megabytes) throws InterruptedException {
+        if (total <= 0 || megabytes <= 0) {
+            return 0;
+        }
+        long amount = Math.min(megabytes, total);
+        while (total > 0 && used + amount > total) {
+            wait();
+        }
+        used += amount;
+        return amount;
+    }
+
+    public synchronized void release(long megabytes) {
+        used = Math.max(0, used - megabytes);
+        notifyAll();
+    }
+
+    /**
+     * Sets the budget in megabytes, 0 disables the accounting.
+     */
+    public synchronized void setTotal(long total) {
+        this.total = total;
+        notifyAll();
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized long getUsed() {
+        return used;
+    }
+
+}
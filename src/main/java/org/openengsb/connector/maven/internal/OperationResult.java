@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+/**
+ * Outcome of one operation of an execution, carrying the same output as the corresponding success or fail event.
+ */
+public class OperationResult {
+
+    private final MavenOperation operation;
+    private final boolean success;
+    private final String output;
+
+    public OperationResult(MavenOperation operation, boolean success, String output) {
+        this.operation = operation;
+        this.success = success;
+        this.output = output;
+    }
+
+    public MavenOperation getOperation() {
+        return operation;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    @Override
+    public String toString() {
+        return operation + (success ? " succeeded" : " failed");
+    }
+
+}
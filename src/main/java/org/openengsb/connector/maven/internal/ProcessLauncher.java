@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts maven processes with the configured JVM profile in <code>MAVEN_OPTS</code>, reduced scheduling priority
+ * and cpu affinity. Local processes reserve their heap from the host memory budget until they are released.
+ * Processes on remote nodes are neither reprioritized nor accounted, as they do not use resources of this host.
+ */
+public class ProcessLauncher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessLauncher.class);
+
+    private static final int DEFAULT_RESERVATION = 512;
+
+    private static final boolean UNIX = !System.getProperty("os.name").contains("Windows");
+    private static final boolean LINUX = System.getProperty("os.name").contains("Linux");
+
+    private volatile JvmProfile profile = JvmProfile.DEFAULT;
+    private volatile int niceLevel;
+    private volatile String cpuAffinity;
+    private MemoryBudget memoryBudget = MemoryBudget.getHostBudget();
+    private volatile ClassDataSharing classDataSharing;
+
+    public static final class Launch {
+        private final Process process;
+        private final long reservedMemory;
+        private final ClassDataSharing classDataSharing;
+        private final String classDataSharingFlag;
+
+        private Launch(Process process, long reservedMemory, ClassDataSharing classDataSharing,
+                String classDataSharingFlag) {
+            this.process = process;
+            this.reservedMemory = reservedMemory;
+            this.classDataSharing = classDataSharing;
+            this.classDataSharingFlag = classDataSharingFlag;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+    }
+
+    /**
+     * Starts the command once the memory needed by the process is available. The returned launch has to be released
+     * once the process has terminated.
+     */
+    public Launch start(File dir, List<String> command, WorkerNode node) throws IOException, InterruptedException {
+        return start(dir, command, node, classDataSharing);
+    }
+
+    /**
+     * Starts the command like {@link #start(File, List, WorkerNode)}, using the given class data sharing archive
+     * instead of the launcher's one.
+     */
+    public Launch start(File dir, List<String> command, WorkerNode node, ClassDataSharing archive)
+            throws IOException, InterruptedException {
+        JvmProfile currentProfile = profile;
+        ClassDataSharing currentClassDataSharing = null;
+        String classDataSharingFlag = null;
+        List<String> fullCommand = new ArrayList<String>();
+        long reservation = 0;
+        if (node.isLocal()) {
+            fullCommand.addAll(getPriorityPrefix());
+            reservation = memoryBudget.acquire(currentProfile.getHeap() > 0 ? currentProfile.getHeap()
+                : DEFAULT_RESERVATION);
+            if (currentProfile.getSharedArchive() == null) {
+                currentClassDataSharing = archive;
+            }
+        }
+        fullCommand.addAll(command);
+        ProcessBuilder builder = new ProcessBuilder(fullCommand).directory(dir);
+        List<String> flags = new ArrayList<String>(currentProfile.getFlags());
+        if (currentClassDataSharing != null) {
+            classDataSharingFlag = currentClassDataSharing.getJvmFlag();
+            if (classDataSharingFlag != null) {
+                flags.add(classDataSharingFlag);
+            }
+        }
+        if (!flags.isEmpty()) {
+            Map<String, String> environment = builder.environment();
+            String inherited = environment.get("MAVEN_OPTS");
+            StringBuilder mavenOpts = new StringBuilder(inherited == null ? "" : inherited);
+            for (String flag : flags) {
+                mavenOpts.append(' ').append(flag);
+            }
+            environment.put("MAVEN_OPTS", mavenOpts.toString().trim());
+        }
+        try {
+            LOGGER.debug("starting {} with MAVEN_OPTS {}", fullCommand, flags);
+            return new Launch(builder.start(), reservation, currentClassDataSharing, classDataSharingFlag);
+        } catch (IOException e) {
+            memoryBudget.release(reservation);
+            if (currentClassDataSharing != null) {
+                currentClassDataSharing.processFinished(classDataSharingFlag, false);
+            }
+            throw e;
+        }
+    }
+
+    public void release(Launch launch) {
+        memoryBudget.release(launch.reservedMemory);
+        if (launch.classDataSharing != null) {
+            boolean success;
+            try {
+                success = launch.process.exitValue() == 0;
+            } catch (IllegalThreadStateException e) {
+                success = false;
+            }
+            launch.classDataSharing.processFinished(launch.classDataSharingFlag, success);
+        }
+    }
+
+    private List<String> getPriorityPrefix() {
+        List<String> prefix = new ArrayList<String>();
+        if (LINUX && cpuAffinity != null) {
+            prefix.add("taskset");
+            prefix.add("-c");
+            prefix.add(cpuAffinity);
+        }
+        if (UNIX && niceLevel > 0) {
+            prefix.add("nice");
+            prefix.add("-n");
+            prefix.add(String.valueOf(niceLevel));
+        }
+        return prefix;
+    }
+
+    public void setProfile(JvmProfile profile) {
+        this.profile = profile;
+    }
+
+    public JvmProfile getProfile() {
+        return profile;
+    }
+
+    public void setNiceLevel(int niceLevel) {
+        if (niceLevel < 0 || niceLevel > 19) {
+            throw new IllegalArgumentException("nice level must be between 0 and 19");
+        }
+        this.niceLevel = niceLevel;
+    }
+
+    public void setCpuAffinity(String cpuAffinity) {
+        if (cpuAffinity != null && !cpuAffinity.trim().isEmpty() && !cpuAffinity.trim().matches("[0-9,\\-]+")) {
+            throw new IllegalArgumentException("invalid cpu list " + cpuAffinity);
+        }
+        this.cpuAffinity = cpuAffinity == null || cpuAffinity.trim().isEmpty() ? null : cpuAffinity.trim();
+    }
+
+    /**
+     * Sets the class data sharing archive used by local processes whose JVM profile does not name an archive.
+     */
+    public void setClassDataSharing(ClassDataSharing classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+}
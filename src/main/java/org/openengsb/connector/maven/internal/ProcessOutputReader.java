@@ -26,7 +26,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +47,10 @@ public class ProcessOutputReader implements Callable<String> {
 
     private OutputStreamWriter logFileWriter;
 
+    private List<ProcessOutputListener> listeners = new CopyOnWriteArrayList<ProcessOutputListener>();
+
+    private boolean keepOutput = true;
+
     public ProcessOutputReader(InputStream inputStream) {
         this.inputStream = inputStream;
         writer = new StringWriter();
@@ -56,6 +62,17 @@ public class ProcessOutputReader implements Callable<String> {
         logFileWriter = new OutputStreamWriter(logFileOutputStream);
     }
 
+    public void addListener(ProcessOutputListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Passes the lines to the listeners and the log file only, {@link #call()} then returns an empty string.
+     */
+    public void discardOutput() {
+        keepOutput = false;
+    }
+
     @Override
     public String call() throws IOException {
         LOGGER.debug("starting reading inputstream");
@@ -69,8 +86,11 @@ public class ProcessOutputReader implements Callable<String> {
     private void readInputStream(BufferedReader bufferedReader) throws IOException {
         String line;
         while ((line = bufferedReader.readLine()) != null) {
-            writer.append(line + "\n");
+            if (keepOutput) {
+                writer.append(line).append("\n");
+            }
             readToLogFile(line);
+            notifyListeners(line);
         }
     }
 
@@ -81,6 +101,16 @@ public class ProcessOutputReader implements Callable<String> {
         }
     }
 
+    private void notifyListeners(String line) {
+        for (ProcessOutputListener listener : listeners) {
+            try {
+                listener.lineRead(line);
+            } catch (RuntimeException e) {
+                LOGGER.warn("output listener failed on line: " + line, e);
+            }
+        }
+    }
+
     private void closeResources() throws IOException {
         LOGGER.debug("Input stream has ended. cleanup resources");
         writer.close();
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the cpu time, resident memory and disk I/O of a process and its descendants from <code>/proc</code>. Every
+ * process seen is accounted with its last sampled values, so processes ending between two samples lose at most one
+ * interval of usage. Descendants are found through the children files of all threads of a process, or by scanning
+ * all processes if the kernel does not provide them.
+ */
+public class ProcessTreeSampler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessTreeSampler.class);
+
+    private static final File PROC = new File("/proc");
+    /** Length of a clock tick, USER_HZ is 100 on all common Linux configurations. */
+    private static final long TICK_MILLIS = 10;
+    private static final int MAX_PROCESSES = 1000;
+
+    private final File proc;
+    private final long rootPid;
+    private final Map<String, long[]> processes = new HashMap<String, long[]>();
+    private long peakMemory;
+    private ScheduledFuture<?> future;
+
+    ProcessTreeSampler(File proc, long rootPid) {
+        this.proc = proc;
+        this.rootPid = rootPid;
+    }
+
+    /**
+     * Starts sampling the process tree of the given process with the given scheduler, returning null if the process
+     * id or <code>/proc</code> is not available.
+     */
+    public static ProcessTreeSampler start(Process process, long intervalMillis, ScheduledExecutorService scheduler) {
+        long pid = getPid(process);
+        if (pid < 0 || !new File(PROC, "self/stat").isFile()) {
+            return null;
+        }
+        final ProcessTreeSampler sampler = new ProcessTreeSampler(PROC, pid);
+        sampler.sample();
+        sampler.future = scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sampler.sample();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return sampler;
+    }
+
+    /**
+     * Creates a scheduler for samplers, which its owner has to shut down.
+     */
+    public static ScheduledExecutorService newScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "maven-resource-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the process id through <code>Process.pid()</code> where available or the pid field of the unix process
+     * implementation, or -1.
+     */
+    static long getPid(Process process) {
+        try {
+            Method pid = Process.class.getMethod("pid");
+            return ((Number) pid.invoke(process)).longValue();
+        } catch (NoSuchMethodException e) {
+            LOGGER.trace("Process.pid() is not available", e);
+        } catch (Exception e) {
+            LOGGER.debug("could not call Process.pid()", e);
+            return -1;
+        }
+        try {
+            Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getLong(process);
+        } catch (Exception e) {
+            LOGGER.debug("process id of {} is not available", process, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Stops sampling and returns the usage seen so far.
+     */
+    public ResourceUsage stop() {
+        if (future != null) {
+            future.cancel(false);
+        }
+        return getUsage();
+    }
+
+    synchronized ResourceUsage getUsage() {
+        long cpuTicks = 0;
+        long read = 0;
+        long written = 0;
+        for (long[] values : processes.values()) {
+            cpuTicks += values[0];
+            read += values[1];
+            written += values[2];
+        }
+        return new ResourceUsage(cpuTicks * TICK_MILLIS, peakMemory, read, written,
+            Math.max(0, processes.size() - 1));
+    }
+
+    synchronized void sample() {
+        try {
+            long memory = 0;
+            for (long pid : findTree()) {
+                String[] stat = readStat(pid);
+                if (stat == null || stat.length < 20) {
+                    continue;
+                }
+                String key = pid + ":" + stat[19];
+                if (!processes.containsKey(key) && processes.size() >= MAX_PROCESSES) {
+                    continue;
+                }
+                long[] io = readIo(pid);
+                long[] values = { Long.parseLong(stat[11]) + Long.parseLong(stat[12]), io[0], io[1] };
+                long[] previous = processes.get(key);
+                if (previous != null) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = Math.max(values[i], previous[i]);
+                    }
+                }
+                processes.put(key, values);
+                memory += readResidentMemory(pid);
+            }
+            peakMemory = Math.max(peakMemory, memory);
+        } catch (RuntimeException e) {
+            LOGGER.debug("could not sample process tree of {}", rootPid, e);
+        }
+    }
+
+    private List<Long> findTree() {
+        List<Long> tree = new ArrayList<Long>();
+        tree.add(rootPid);
+        Map<Long, List<Long>> children = null;
+        for (int i = 0; i < tree.size() && tree.size() < MAX_PROCESSES; i++) {
+            long pid = tree.get(i);
+            File[] tasks = new File(proc, pid + "/task").listFiles();
+            boolean found = false;
+            for (File task : tasks == null ? new File[0] : tasks) {
+                String content = read(new File(task, "children"));
+                if (content == null) {
+                    continue;
+                }
+                found = true;
+                for (String child : content.trim().split("\\s+")) {
+                    if (!child.isEmpty()) {
+                        tree.add(Long.parseLong(child));
+                    }
+                }
+            }
+            if (!found) {
+                if (children == null) {
+                    children = scanChildren();
+                }
+                if (children.containsKey(pid)) {
+                    tree.addAll(children.get(pid));
+                }
+            }
+        }
+        return tree;
+    }
+
+    private Map<Long, List<Long>> scanChildren() {
+        Map<Long, List<Long>> result = new HashMap<Long, List<Long>>();
+        String[] names = proc.list();
+        for (String name : names == null ? new String[0] : names) {
+            if (!name.matches("\\d+")) {
+                continue;
+            }
+            String[] stat = readStat(Long.parseLong(name));
+            if (stat == null || stat.length < 2) {
+                continue;
+            }
+            Long parent = Long.valueOf(stat[1]);
+            if (!result.containsKey(parent)) {
+                result.put(parent, new ArrayList<Long>());
+            }
+            result.get(parent).add(Long.valueOf(name));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fields of the stat file following the command name, so the state is at index 0, or null.
+     */
+    private String[] readStat(long pid) {
+        String stat = read(new File(proc, pid + "/stat"));
+        int end = stat == null ? -1 : stat.lastIndexOf(')');
+        return end < 0 ? null : stat.substring(end + 1).trim().split("\\s+");
+    }
+
+    private long readResidentMemory(long pid) {
+        String status = read(new File(proc, pid + "/status"));
+        if (status == null) {
+            return 0;
+        }
+        for (String line : status.split("\n")) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+            }
+        }
+        return 0;
+    }
+
+    private long[] readIo(long pid) {
+        long[] result = new long[2];
+        String io = read(new File(proc, pid + "/io"));
+        if (io == null) {
+            return result;
+        }
+        for (String line : io.split("\n")) {
+            if (line.startsWith("read_bytes:")) {
+                result[0] = Long.parseLong(line.substring(11).trim());
+            } else if (line.startsWith("write_bytes:")) {
+                result[1] = Long.parseLong(line.substring(12).trim());
+            }
+        }
+        return result;
+    }
+
+    private static String read(File file) {
+        try {
+            return FileUtils.readFileToString(file, "US-ASCII");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
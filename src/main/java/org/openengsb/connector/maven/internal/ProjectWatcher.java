@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.apache.commons.io.monitor.FileAlterationMonitor;
+import org.apache.commons.io.monitor.FileAlterationObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches project directories for changed sources and reports the changed modules once the changes have settled for
+ * the quiet period, so that a burst of saves or a checkout results in a single build. Build output and hidden
+ * directories are ignored.
+ */
+public class ProjectWatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProjectWatcher.class);
+
+    /**
+     * Receives the changed modules of a project as paths relative to the project, an empty path standing for the
+     * project itself.
+     */
+    public interface ChangeListener {
+        /**
+         * Returns false if the changes cannot be handled right now, they are then reported again together with later
+         * changes.
+         */
+        boolean projectChanged(File project, Set<String> modules);
+    }
+
+    private static final FileFilter SOURCES = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            String name = file.getName();
+            return !name.startsWith(".") && !(file.isDirectory() && "target".equals(name));
+        }
+    };
+
+    private final FileAlterationMonitor monitor;
+    private final long quietMillis;
+    private final ChangeListener listener;
+    private final Map<File, Project> projects = new LinkedHashMap<File, Project>();
+
+    public ProjectWatcher(long intervalMillis, long quietMillis, ChangeListener listener) {
+        monitor = new FileAlterationMonitor(intervalMillis);
+        monitor.setThreadFactory(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "maven-project-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.quietMillis = quietMillis;
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces the watched projects. Changes made while a project was not watched are not reported.
+     */
+    public synchronized void setProjects(Collection<File> directories) {
+        Map<File, Project> remaining = new LinkedHashMap<File, Project>(projects);
+        for (File directory : directories) {
+            File root = directory.getAbsoluteFile();
+            if (remaining.remove(root) == null) {
+                Project project = new Project(root);
+                try {
+                    project.observer.initialize();
+                } catch (Exception e) {
+                    LOGGER.warn("cannot watch " + root, e);
+                    continue;
+                }
+                projects.put(root, project);
+                monitor.addObserver(project.observer);
+            }
+        }
+        for (Project project : remaining.values()) {
+            monitor.removeObserver(project.observer);
+            projects.remove(project.root);
+        }
+    }
+
+    public synchronized void start() throws Exception {
+        monitor.start();
+    }
+
+    public synchronized void stop() {
+        try {
+            monitor.stop(0);
+        } catch (Exception e) {
+            LOGGER.debug("watcher was not running", e);
+        }
+    }
+
+    /**
+     * Returns the directory of the innermost module containing the file relative to the project root, an empty path
+     * for files of the root module.
+     */
+    static String findModule(File root, File file) {
+        String rootPath = root.getAbsolutePath();
+        File current = file.getAbsoluteFile().getParentFile();
+        while (current != null && current.getAbsolutePath().startsWith(rootPath)
+                && current.getAbsolutePath().length() > rootPath.length()) {
+            if (new File(current, "pom.xml").isFile()) {
+                return current.getAbsolutePath().substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+            }
+            current = current.getParentFile();
+        }
+        return "";
+    }
+
+    private final class Project extends FileAlterationListenerAdaptor {
+        private final File root;
+        private final FileAlterationObserver observer;
+        private final List<File> changes = new ArrayList<File>();
+        private long lastChange;
+
+        private Project(File root) {
+            this.root = root;
+            observer = new FileAlterationObserver(root, SOURCES);
+            observer.addListener(this);
+        }
+
+        @Override
+        public void onFileCreate(File file) {
+            changed(file);
+        }
+
+        @Override
+        public void onFileChange(File file) {
+            changed(file);
+        }
+
+        @Override
+        public void onFileDelete(File file) {
+            changed(file);
+        }
+
+        @Override
+        public void onDirectoryDelete(File directory) {
+            changed(new File(directory, "pom.xml"));
+        }
+
+        private void changed(File file) {
+            changes.add(file);
+            lastChange = System.currentTimeMillis();
+        }
+
+        /**
+         * Called by the monitor after each scan of the project.
+         */
+        @Override
+        public void onStop(FileAlterationObserver scanned) {
+            if (changes.isEmpty() || System.currentTimeMillis() - lastChange < quietMillis) {
+                return;
+            }
+            Set<String> modules = new TreeSet<String>();
+            for (File file : changes) {
+                modules.add(findModule(root, file));
+            }
+            if (modules.contains("")) {
+                modules.clear();
+                modules.add("");
+            }
+            try {
+                if (listener.projectChanged(root, modules)) {
+                    changes.clear();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("could not handle changes of " + root, e);
+                changes.clear();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,692 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Copies a staging repository written by the deploy plugin to the target repository, skipping artifacts whose
+ * checksum matches the one the target already holds. Releases are compared file by file, snapshots by the files of
+ * the latest snapshot listed in the target's metadata, so redeploying an unchanged snapshot uploads nothing. Changed
+ * artifacts are uploaded in parallel, the artifact metadata is merged with the target's afterwards. A changed snapshot
+ * continues the build number of the target's snapshot metadata.
+ */
+public class RepositorySync {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositorySync.class);
+
+    private static final String METADATA = "maven-metadata.xml";
+    private static final String[] CHECKSUMS = { ".sha1", ".md5", ".sha256", ".sha512" };
+
+    /**
+     * Access to the files of a repository by their path relative to the repository root.
+     */
+    public interface Transport {
+        /**
+         * Returns the content of the file or null, if it does not exist.
+         */
+        byte[] get(String path) throws IOException;
+
+        void put(String path, byte[] content) throws IOException;
+
+        void put(String path, File file) throws IOException;
+    }
+
+    /**
+     * Lists the files uploaded and skipped by a synchronization.
+     */
+    public static final class Report {
+        private final List<String> uploaded = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> skipped = Collections.synchronizedList(new ArrayList<String>());
+
+        public List<String> getUploaded() {
+            return uploaded;
+        }
+
+        public List<String> getSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("deploy optimization: uploaded %d, skipped %d unchanged", uploaded.size(),
+                skipped.size()));
+            for (String path : uploaded) {
+                result.append("\nuploaded ").append(path);
+            }
+            for (String path : skipped) {
+                result.append("\nskipped ").append(path);
+            }
+            return result.toString();
+        }
+    }
+
+    private final Transport target;
+    private final int threads;
+
+    public RepositorySync(Transport target, int threads) {
+        this.target = target;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns a transport for a file or http(s) url. Credentials for http repositories can be given as user info of
+     * the url.
+     */
+    public static Transport createTransport(String url) {
+        if (url.startsWith("file:")) {
+            return new FileTransport(FileUtils.toFile(toUrl(url)));
+        }
+        if (url.startsWith("http:") || url.startsWith("https:")) {
+            return new HttpTransport(url.endsWith("/") ? url : url + "/");
+        }
+        throw new IllegalArgumentException("unsupported repository url " + stripUserInfo(url));
+    }
+
+    /**
+     * Returns the url without the credentials it may carry, for logs and event output.
+     */
+    public static String stripUserInfo(String url) {
+        return url.replaceFirst("^([a-zA-Z][a-zA-Z0-9+.-]*://)[^/@]*@", "$1");
+    }
+
+    private static URL toUrl(String url) {
+        try {
+            return new URL(url);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid repository url " + stripUserInfo(url));
+        }
+    }
+
+    public Report sync(File staging) throws IOException {
+        Report report = new Report();
+        List<File> versionDirectories = new ArrayList<File>();
+        List<File> metadata = new ArrayList<File>();
+        collect(staging, versionDirectories, metadata);
+        final List<String[]> uploads = new ArrayList<String[]>();
+        Map<String, byte[]> snapshotMetadata = new LinkedHashMap<String, byte[]>();
+        Set<File> changedArtifacts = new LinkedHashSet<File>();
+        for (File version : versionDirectories) {
+            List<File> files = listArtifacts(version);
+            if (version.getName().endsWith("-SNAPSHOT")) {
+                String versionPath = relativePath(staging, version);
+                File versionMetadata = new File(version, METADATA);
+                byte[] remoteMetadata = target.get(versionPath + "/" + METADATA);
+                if (isUnchangedSnapshot(version, versionPath, remoteMetadata, files)) {
+                    for (File file : files) {
+                        report.skipped.add(relativePath(staging, file));
+                    }
+                    continue;
+                }
+                Map<String, String> values = Collections.emptyMap();
+                if (versionMetadata.isFile()) {
+                    byte[] localMetadata = FileUtils.readFileToByteArray(versionMetadata);
+                    if (remoteMetadata != null) {
+                        int buildNumber = readBuildNumber(remoteMetadata) + 1;
+                        values = renumberSnapshot(localMetadata, buildNumber);
+                        localMetadata = mergeSnapshotMetadata(remoteMetadata, localMetadata, values, buildNumber);
+                    }
+                    snapshotMetadata.put(versionPath + "/" + METADATA, localMetadata);
+                }
+                String artifactId = version.getParentFile().getName();
+                for (File file : files) {
+                    uploads.add(new String[]{ versionPath + "/" + renameSnapshotFile(file.getName(), artifactId,
+                        values), file.getPath() });
+                }
+                changedArtifacts.add(version.getParentFile());
+            } else {
+                for (File file : files) {
+                    String path = relativePath(staging, file);
+                    if (sha1(file).equals(readChecksum(path))) {
+                        report.skipped.add(path);
+                    } else {
+                        uploads.add(new String[]{ path, file.getPath() });
+                        changedArtifacts.add(version.getParentFile());
+                    }
+                }
+            }
+        }
+        upload(uploads, report);
+        for (Map.Entry<String, byte[]> entry : snapshotMetadata.entrySet()) {
+            putWithChecksums(entry.getKey(), entry.getValue());
+            report.uploaded.add(entry.getKey());
+        }
+        for (File file : metadata) {
+            String path = relativePath(staging, file);
+            if (changedArtifacts.contains(file.getParentFile())) {
+                byte[] merged = mergeMetadata(target.get(path), FileUtils.readFileToByteArray(file));
+                putWithChecksums(path, merged);
+                report.uploaded.add(path);
+            } else if (!isArtifactDirectory(file.getParentFile()) && target.get(path) == null) {
+                putWithChecksums(path, FileUtils.readFileToByteArray(file));
+                report.uploaded.add(path);
+            }
+        }
+        return report;
+    }
+
+    private void upload(List<String[]> uploads, final Report report) throws IOException {
+        if (uploads.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, uploads.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final String[] upload : uploads) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        File file = new File(upload[1]);
+                        target.put(upload[0], file);
+                        putChecksums(upload[0], sha1(file), digest(file, "MD5"));
+                        report.uploaded.add(upload[0]);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("upload interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                : new IOException(e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Compares the files of a staged snapshot with the files of the latest snapshot in the target, matching them by
+     * classifier and extension.
+     */
+    private boolean isUnchangedSnapshot(File version, String versionPath, byte[] remoteMetadata, List<File> files)
+        throws IOException {
+        File localMetadata = new File(version, METADATA);
+        if (!localMetadata.isFile() || remoteMetadata == null) {
+            return false;
+        }
+        Map<String, String> local = readSnapshotVersions(FileUtils.readFileToByteArray(localMetadata));
+        Map<String, String> remote = readSnapshotVersions(remoteMetadata);
+        String artifactId = version.getParentFile().getName();
+        int compared = 0;
+        for (Map.Entry<String, String> entry : local.entrySet()) {
+            String remoteValue = remote.get(entry.getKey());
+            if (remoteValue == null) {
+                return false;
+            }
+            String[] key = entry.getKey().split(":", 2);
+            File file = new File(version, snapshotFileName(artifactId, entry.getValue(), key[0], key[1]));
+            if (!files.contains(file)) {
+                continue;
+            }
+            String remoteChecksum = readChecksum(versionPath + "/" + snapshotFileName(artifactId, remoteValue,
+                key[0], key[1]));
+            if (!sha1(file).equals(remoteChecksum)) {
+                return false;
+            }
+            compared++;
+        }
+        return compared == files.size();
+    }
+
+    private static String snapshotFileName(String artifactId, String value, String classifier, String extension) {
+        return artifactId + "-" + value + (classifier.isEmpty() ? "" : "-" + classifier) + "." + extension;
+    }
+
+    /**
+     * Returns the build number of the latest snapshot, taken from the values of the files if the metadata does not
+     * state it.
+     */
+    private static int readBuildNumber(byte[] metadata) throws IOException {
+        String buildNumber = childText(parse(metadata).getDocumentElement(), "buildNumber", null);
+        if (buildNumber != null) {
+            return Integer.parseInt(buildNumber);
+        }
+        int result = 0;
+        for (String value : readSnapshotVersions(metadata).values()) {
+            try {
+                result = Math.max(result, Integer.parseInt(value.substring(value.lastIndexOf('-') + 1)));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("no build number in snapshot value {}", value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Maps the snapshot values of the staged metadata, which the deploy plugin numbers as if the snapshot was the
+     * first one, to values with the given build number.
+     */
+    private static Map<String, String> renumberSnapshot(byte[] localMetadata, int buildNumber) throws IOException {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (String value : readSnapshotVersions(localMetadata).values()) {
+            result.put(value, value.substring(0, value.lastIndexOf('-') + 1) + buildNumber);
+        }
+        return result;
+    }
+
+    private static String renameSnapshotFile(String name, String artifactId, Map<String, String> values) {
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            String prefix = artifactId + "-" + value.getKey();
+            if (name.startsWith(prefix + ".") || name.startsWith(prefix + "-")) {
+                return artifactId + "-" + value.getValue() + name.substring(prefix.length());
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Merges staged snapshot metadata into the target's, continuing its build number and keeping the files of
+     * classifiers and extensions which were not deployed again.
+     */
+    static byte[] mergeSnapshotMetadata(byte[] remote, byte[] local, Map<String, String> values, int buildNumber)
+        throws IOException {
+        Element remoteRoot = parse(remote).getDocumentElement();
+        Element localRoot = parse(local).getDocumentElement();
+        Map<String, Element> snapshotVersions = new LinkedHashMap<String, Element>();
+        putSnapshotVersions(snapshotVersions, remoteRoot);
+        putSnapshotVersions(snapshotVersions, localRoot);
+        String version = childText(localRoot, "version", childText(remoteRoot, "version", null));
+        String timestamp = childText(localRoot, "timestamp", null);
+        if (timestamp == null && version != null && !values.isEmpty()) {
+            String value = values.keySet().iterator().next();
+            String prefix = version.substring(0, version.length() - "SNAPSHOT".length());
+            if (value.startsWith(prefix) && value.lastIndexOf('-') > prefix.length()) {
+                timestamp = value.substring(prefix.length(), value.lastIndexOf('-'));
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        result.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n");
+        appendChild(result, "  ", "groupId", childText(localRoot, "groupId", childText(remoteRoot, "groupId", null)));
+        appendChild(result, "  ", "artifactId", childText(localRoot, "artifactId",
+            childText(remoteRoot, "artifactId", null)));
+        appendChild(result, "  ", "version", version);
+        result.append("  <versioning>\n    <snapshot>\n");
+        appendChild(result, "      ", "timestamp", timestamp);
+        appendChild(result, "      ", "buildNumber", String.valueOf(buildNumber));
+        result.append("    </snapshot>\n");
+        appendChild(result, "    ", "lastUpdated", childText(localRoot, "lastUpdated", null));
+        result.append("    <snapshotVersions>\n");
+        for (Element snapshotVersion : snapshotVersions.values()) {
+            String value = childText(snapshotVersion, "value", "");
+            result.append("      <snapshotVersion>\n");
+            appendChild(result, "        ", "classifier", childText(snapshotVersion, "classifier", null));
+            appendChild(result, "        ", "extension", childText(snapshotVersion, "extension", null));
+            appendChild(result, "        ", "value", values.containsKey(value) ? values.get(value) : value);
+            appendChild(result, "        ", "updated", childText(snapshotVersion, "updated", null));
+            result.append("      </snapshotVersion>\n");
+        }
+        result.append("    </snapshotVersions>\n  </versioning>\n</metadata>\n");
+        return result.toString().getBytes("UTF-8");
+    }
+
+    private static void putSnapshotVersions(Map<String, Element> result, Element root) {
+        NodeList versions = root.getElementsByTagName("snapshotVersion");
+        for (int i = 0; i < versions.getLength(); i++) {
+            Element version = (Element) versions.item(i);
+            result.put(childText(version, "classifier", "") + ":" + childText(version, "extension", ""), version);
+        }
+    }
+
+    private static void appendChild(StringBuilder result, String indent, String name, String text) {
+        if (text != null) {
+            result.append(indent).append('<').append(name).append('>').append(text).append("</").append(name)
+                .append(">\n");
+        }
+    }
+
+    private static Map<String, String> readSnapshotVersions(byte[] metadata) throws IOException {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        NodeList versions = parse(metadata).getElementsByTagName("snapshotVersion");
+        for (int i = 0; i < versions.getLength(); i++) {
+            Element version = (Element) versions.item(i);
+            result.put(childText(version, "classifier", "") + ":" + childText(version, "extension", ""),
+                childText(version, "value", ""));
+        }
+        return result;
+    }
+
+    /**
+     * Merges the versions of staged artifact metadata into the target's metadata, keeping the versions deployed
+     * before.
+     */
+    static byte[] mergeMetadata(byte[] remote, byte[] local) throws IOException {
+        Document localDocument = parse(local);
+        Element localRoot = localDocument.getDocumentElement();
+        Set<String> versions = new LinkedHashSet<String>();
+        String latest = null;
+        String release = null;
+        if (remote != null) {
+            Element remoteRoot = parse(remote).getDocumentElement();
+            versions.addAll(childTexts(remoteRoot, "version"));
+            latest = childText(remoteRoot, "latest", null);
+            release = childText(remoteRoot, "release", null);
+        }
+        versions.addAll(childTexts(localRoot, "version"));
+        latest = childText(localRoot, "latest", latest);
+        release = childText(localRoot, "release", release);
+        StringBuilder result = new StringBuilder();
+        result.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n");
+        result.append("  <groupId>").append(childText(localRoot, "groupId", "")).append("</groupId>\n");
+        result.append("  <artifactId>").append(childText(localRoot, "artifactId", "")).append("</artifactId>\n");
+        result.append("  <versioning>\n");
+        if (latest != null) {
+            result.append("    <latest>").append(latest).append("</latest>\n");
+        }
+        if (release != null) {
+            result.append("    <release>").append(release).append("</release>\n");
+        }
+        result.append("    <versions>\n");
+        for (String version : versions) {
+            result.append("      <version>").append(version).append("</version>\n");
+        }
+        result.append("    </versions>\n");
+        result.append("    <lastUpdated>").append(childText(localRoot, "lastUpdated", "")).append("</lastUpdated>\n");
+        result.append("  </versioning>\n</metadata>\n");
+        return result.toString().getBytes("UTF-8");
+    }
+
+    private static void collect(File directory, List<File> versionDirectories, List<File> metadata) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        boolean version = false;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collect(file, versionDirectories, metadata);
+            } else if (file.getName().equals(METADATA)) {
+                metadata.add(file);
+            } else if (file.getName().endsWith(".pom")) {
+                version = true;
+            }
+        }
+        if (version) {
+            versionDirectories.add(directory);
+            metadata.remove(new File(directory, METADATA));
+        }
+    }
+
+    private static boolean isArtifactDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory() && new File(file, file.getParentFile().getName() + "-" + file.getName()
+                        + ".pom").exists()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<File> listArtifacts(File version) {
+        List<File> result = new ArrayList<File>();
+        for (File file : version.listFiles()) {
+            if (file.isFile() && !file.getName().startsWith(METADATA) && !isChecksum(file.getName())) {
+                result.add(file);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static boolean isChecksum(String name) {
+        for (String extension : CHECKSUMS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readChecksum(String path) throws IOException {
+        byte[] content = target.get(path + ".sha1");
+        if (content == null) {
+            return null;
+        }
+        String checksum = new String(content, "UTF-8").trim();
+        int separator = checksum.indexOf(' ');
+        return (separator < 0 ? checksum : checksum.substring(0, separator)).toLowerCase();
+    }
+
+    private void putWithChecksums(String path, byte[] content) throws IOException {
+        target.put(path, content);
+        putChecksums(path, digest(new ByteArrayInputStream(content), "SHA-1"),
+            digest(new ByteArrayInputStream(content), "MD5"));
+    }
+
+    private void putChecksums(String path, String sha1, String md5) throws IOException {
+        target.put(path + ".sha1", sha1.getBytes("UTF-8"));
+        target.put(path + ".md5", md5.getBytes("UTF-8"));
+    }
+
+    private static String sha1(File file) throws IOException {
+        return digest(file, "SHA-1");
+    }
+
+    private static String digest(File file, String algorithm) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return digest(input, algorithm);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String digest(InputStream input, String algorithm) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            digest.update(buffer, 0, read);
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    private static String relativePath(File root, File file) {
+        return file.getAbsolutePath().substring(root.getAbsolutePath().length() + 1).replace(File.separatorChar, '/');
+    }
+
+    private static Document parse(byte[] content) throws IOException {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(content));
+        } catch (Exception e) {
+            throw new IOException("invalid repository metadata: " + e.getMessage());
+        }
+    }
+
+    private static String childText(Element element, String name, String defaultValue) {
+        NodeList nodes = element.getElementsByTagName(name);
+        return nodes.getLength() == 0 ? defaultValue : nodes.item(0).getTextContent().trim();
+    }
+
+    private static List<String> childTexts(Element element, String name) {
+        List<String> result = new ArrayList<String>();
+        NodeList nodes = element.getElementsByTagName(name);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            result.add(nodes.item(i).getTextContent().trim());
+        }
+        return result;
+    }
+
+    private static final class FileTransport implements Transport {
+        private final File root;
+
+        private FileTransport(File root) {
+            this.root = root;
+        }
+
+        @Override
+        public byte[] get(String path) throws IOException {
+            File file = new File(root, path);
+            return file.isFile() ? FileUtils.readFileToByteArray(file) : null;
+        }
+
+        @Override
+        public void put(String path, byte[] content) throws IOException {
+            FileUtils.writeByteArrayToFile(new File(root, path), content);
+        }
+
+        @Override
+        public void put(String path, File file) throws IOException {
+            FileUtils.copyFile(file, new File(root, path));
+        }
+    }
+
+    /**
+     * Returns the basic authorization header value for the user info of a url, whose user name and password may be
+     * percent-encoded.
+     */
+    static String toAuthorization(String userInfo) {
+        try {
+            // a plus is taken literally in the user info of a url
+            String decoded = URLDecoder.decode(userInfo.replace("+", "%2B"), "UTF-8");
+            return "Basic " + DatatypeConverter.printBase64Binary(decoded.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class HttpTransport implements Transport {
+        private final String baseUrl;
+        private final String authorization;
+
+        private HttpTransport(String url) {
+            URL parsed = toUrl(url);
+            String userInfo = parsed.getUserInfo();
+            authorization = userInfo == null ? null : toAuthorization(userInfo);
+            baseUrl = stripUserInfo(url);
+        }
+
+        @Override
+        public byte[] get(String path) throws IOException {
+            HttpURLConnection connection = open(path, "GET");
+            try {
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                    return null;
+                }
+                if (status >= 300) {
+                    throw new IOException(String.format("GET %s%s failed with status %d", baseUrl, path, status));
+                }
+                InputStream input = connection.getInputStream();
+                try {
+                    return IOUtils.toByteArray(input);
+                } finally {
+                    input.close();
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        @Override
+        public void put(String path, byte[] content) throws IOException {
+            put(path, new ByteArrayInputStream(content), content.length);
+        }
+
+        @Override
+        public void put(String path, File file) throws IOException {
+            InputStream input = new FileInputStream(file);
+            try {
+                put(path, input, file.length());
+            } finally {
+                input.close();
+            }
+        }
+
+        private void put(String path, InputStream content, long length) throws IOException {
+            HttpURLConnection connection = open(path, "PUT");
+            try {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode((int) length);
+                OutputStream output = connection.getOutputStream();
+                try {
+                    IOUtils.copy(content, output);
+                } finally {
+                    output.close();
+                }
+                int status = connection.getResponseCode();
+                if (status >= 300) {
+                    throw new IOException(String.format("PUT %s%s failed with status %d", baseUrl, path, status));
+                }
+                LOGGER.debug("uploaded {}{}", baseUrl, path);
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private HttpURLConnection open(String path, String method) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            if (authorization != null) {
+                connection.setRequestProperty("Authorization", authorization);
+            }
+            return connection;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+/**
+ * The resources used by the processes of an execution.
+ */
+public final class ResourceUsage {
+
+    public static final ResourceUsage NONE = new ResourceUsage(0, 0, 0, 0, 0);
+
+    private static final double MB = 1024 * 1024;
+
+    private final long cpuMillis;
+    private final long peakMemory;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final int childProcesses;
+
+    public ResourceUsage(long cpuMillis, long peakMemory, long bytesRead, long bytesWritten, int childProcesses) {
+        this.cpuMillis = cpuMillis;
+        this.peakMemory = peakMemory;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.childProcesses = childProcesses;
+    }
+
+    /**
+     * Combines the usage of two runs one after the other: times, bytes and processes add up, the peak memory is the
+     * higher one.
+     */
+    public ResourceUsage plus(ResourceUsage other) {
+        return new ResourceUsage(cpuMillis + other.cpuMillis, Math.max(peakMemory, other.peakMemory),
+            bytesRead + other.bytesRead, bytesWritten + other.bytesWritten, childProcesses + other.childProcesses);
+    }
+
+    /**
+     * Returns the user and system cpu time of all processes in milliseconds.
+     */
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * Returns the highest resident memory of all processes together in bytes.
+     */
+    public long getPeakMemory() {
+        return peakMemory;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the number of processes started by the maven process and its descendants.
+     */
+    public int getChildProcesses() {
+        return childProcesses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cpu %.1f s, peak memory %.1f MB, read %.1f MB, written %.1f MB, %d child processes",
+            cpuMillis / 1000.0, peakMemory / MB, bytesRead / MB, bytesWritten / MB, childProcesses);
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Node-wide execution resources shared by all maven connector instances: the worker slots of the local node, the
+ * threads reading process output, the thread prefetching dependencies and the artifact proxies. Instances using this
+ * service only see their own queue and are limited by their quota, while the slots and host limits apply to the node
+ * as a whole.
+ */
+public class SharedExecutionService {
+
+    private int slots = Runtime.getRuntime().availableProcessors();
+    private double maxLoadPerCpu;
+    private long minFreeMemory;
+    private ExecutionDispatcher.QueueOrder queueOrder = ExecutionDispatcher.QueueOrder.FIFO;
+
+    private ExecutionDispatcher dispatcher;
+    private ExecutorService outputReaderPool;
+    private ExecutorService warmupExecutor;
+    private ScheduledExecutorService samplerScheduler;
+    private final Map<List<String>, ArtifactProxy> artifactProxies = new HashMap<List<String>, ArtifactProxy>();
+    private final Map<ArtifactProxy, Integer> artifactProxyUsers = new HashMap<ArtifactProxy, Integer>();
+
+    public synchronized void init() {
+        if (dispatcher != null) {
+            return;
+        }
+        dispatcher = new ExecutionDispatcher("shared", WorkerNode.local(slots));
+        dispatcher.setThrottle(maxLoadPerCpu, minFreeMemory);
+        dispatcher.setQueueOrder(queueOrder);
+        outputReaderPool = Executors.newCachedThreadPool();
+        warmupExecutor = Executors.newSingleThreadExecutor();
+        samplerScheduler = ProcessTreeSampler.newScheduler();
+    }
+
+    public synchronized void destroy() {
+        if (dispatcher == null) {
+            return;
+        }
+        dispatcher.shutdown(null);
+        outputReaderPool.shutdown();
+        warmupExecutor.shutdownNow();
+        samplerScheduler.shutdownNow();
+        for (ArtifactProxy proxy : artifactProxies.values()) {
+            proxy.stop();
+        }
+        artifactProxies.clear();
+        artifactProxyUsers.clear();
+        dispatcher = null;
+    }
+
+    public synchronized ExecutionDispatcher getDispatcher() {
+        init();
+        return dispatcher;
+    }
+
+    public synchronized ExecutorService getOutputReaderPool() {
+        init();
+        return outputReaderPool;
+    }
+
+    public synchronized ExecutorService getWarmupExecutor() {
+        init();
+        return warmupExecutor;
+    }
+
+    public synchronized ScheduledExecutorService getSamplerScheduler() {
+        init();
+        return samplerScheduler;
+    }
+
+    /**
+     * Returns the running proxy of the given upstream repositories, starting it if necessary. Every call has to be
+     * matched by a call of {@link #releaseArtifactProxy(ArtifactProxy)} once the caller stops using the proxy.
+     */
+    public synchronized ArtifactProxy acquireArtifactProxy(List<String> upstreams) throws IOException {
+        init();
+        ArtifactProxy proxy = artifactProxies.get(upstreams);
+        if (proxy == null) {
+            proxy = new ArtifactProxy(ArtifactProxy.getCacheDirectory(upstreams), upstreams);
+            proxy.start();
+            artifactProxies.put(new ArrayList<String>(upstreams), proxy);
+        }
+        Integer users = artifactProxyUsers.get(proxy);
+        artifactProxyUsers.put(proxy, users == null ? 1 : users + 1);
+        return proxy;
+    }
+
+    /**
+     * Stops the given proxy once the last instance using it released it.
+     */
+    public synchronized void releaseArtifactProxy(ArtifactProxy proxy) {
+        Integer users = artifactProxyUsers.get(proxy);
+        if (users == null) {
+            return;
+        }
+        if (users > 1) {
+            artifactProxyUsers.put(proxy, users - 1);
+            return;
+        }
+        artifactProxyUsers.remove(proxy);
+        artifactProxies.values().remove(proxy);
+        proxy.stop();
+    }
+
+    /**
+     * Sets the number of maven executions running concurrently on the host, 0 for one per cpu.
+     */
+    public void setSlots(int slots) {
+        if (slots < 0) {
+            throw new IllegalArgumentException("invalid number of slots " + slots);
+        }
+        this.slots = slots == 0 ? Runtime.getRuntime().availableProcessors() : slots;
+    }
+
+    /**
+     * Sets the load average per cpu above which no further executions are started, 0 for no limit.
+     */
+    public void setMaxLoadPerCpu(double maxLoadPerCpu) {
+        this.maxLoadPerCpu = maxLoadPerCpu;
+    }
+
+    /**
+     * Sets the free physical memory in megabytes below which no further executions are started, 0 for no limit.
+     */
+    public void setMinFreeMemory(long megabytes) {
+        this.minFreeMemory = megabytes * 1024L * 1024L;
+    }
+
+    /**
+     * Sets the memory in megabytes shared by all local maven processes of the host, 0 disables the budget.
+     */
+    public void setHostMemoryBudget(long megabytes) {
+        MemoryBudget.getHostBudget().setTotal(megabytes);
+    }
+
+    public void setQueueOrder(String queueOrder) {
+        this.queueOrder = ExecutionDispatcher.QueueOrder.valueOf(queueOrder.trim().toUpperCase().replace('-', '_'));
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads the failed tests from the XML reports surefire and failsafe write into the target directories of a project and
+ * its modules.
+ */
+public final class SurefireReports {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SurefireReports.class);
+
+    private static final String[] REPORT_DIRECTORIES = { "surefire-reports", "failsafe-reports" };
+
+    private SurefireReports() {
+    }
+
+    /**
+     * Returns the failed tests as <code>class#method</code> from all reports written since the given time.
+     */
+    public static Set<String> findFailedTests(File project, long since) {
+        Set<String> result = new LinkedHashSet<String>();
+        collect(project, since, result);
+        return result;
+    }
+
+    private static void collect(File directory, long since, Set<String> result) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (!child.isDirectory() || child.getName().startsWith(".") || "src".equals(child.getName())) {
+                continue;
+            }
+            if ("target".equals(child.getName())) {
+                for (String name : REPORT_DIRECTORIES) {
+                    readReports(new File(child, name), since, result);
+                }
+            } else {
+                collect(child, since, result);
+            }
+        }
+    }
+
+    private static void readReports(File reportDirectory, long since, Set<String> result) {
+        File[] reports = reportDirectory.listFiles();
+        if (reports == null) {
+            return;
+        }
+        for (File report : reports) {
+            if (report.getName().startsWith("TEST-") && report.getName().endsWith(".xml")
+                    && report.lastModified() >= since) {
+                try {
+                    readReport(report, result);
+                } catch (IOException e) {
+                    LOGGER.warn("could not read test report " + report, e);
+                } catch (SAXException e) {
+                    LOGGER.warn("could not parse test report " + report, e);
+                }
+            }
+        }
+    }
+
+    private static void readReport(File report, final Set<String> result) throws IOException, SAXException {
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(report, new DefaultHandler() {
+                private String currentTest;
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("testcase".equals(qName)) {
+                        currentTest = attributes.getValue("classname") + "#" + stripSuffix(attributes.getValue("name"));
+                    } else if (currentTest != null && ("failure".equals(qName) || "error".equals(qName))) {
+                        result.add(currentTest);
+                    }
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    if ("testcase".equals(qName)) {
+                        currentTest = null;
+                    }
+                }
+            });
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes the parameters of parameterized tests and the parentheses JUnit 5 appends to method names.
+     */
+    private static String stripSuffix(String name) {
+        int index = name.indexOf('[');
+        if (index < 0) {
+            index = name.indexOf('(');
+        }
+        return index > 0 ? name.substring(0, index) : name;
+    }
+
+    /**
+     * Builds a filter for the <code>test</code> property of surefire selecting exactly the given tests.
+     */
+    public static String toTestFilter(Collection<String> tests) {
+        Map<String, Set<String>> methods = new LinkedHashMap<String, Set<String>>();
+        for (String test : tests) {
+            String[] parts = test.split("#", 2);
+            Set<String> classMethods = methods.get(parts[0]);
+            if (classMethods == null) {
+                classMethods = new LinkedHashSet<String>();
+                methods.put(parts[0], classMethods);
+            }
+            classMethods.add(parts[1]);
+        }
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Set<String>> entry : methods.entrySet()) {
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(entry.getKey()).append('#');
+            boolean first = true;
+            for (String method : entry.getValue()) {
+                if (!first) {
+                    result.append('+');
+                }
+                result.append(method);
+                first = false;
+            }
+        }
+        return result.toString();
+    }
+
+}
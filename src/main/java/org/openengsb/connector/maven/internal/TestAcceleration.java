@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Injects surefire and failsafe settings which spread the tests of an execution over the cores left by the other
+ * running executions. FORKS runs test classes in reused forked JVMs, PARALLEL additionally runs the classes of each
+ * fork in parallel threads. Both order the classes by the run times surefire recorded for them, so the longest ones
+ * start first. Settings given in the command are never overridden. Projects whose tests failed with the injected
+ * settings but passed with the defaults are remembered and run with the defaults from then on.
+ */
+public class TestAcceleration {
+
+    public enum Mode {
+        OFF, FORKS, PARALLEL
+    }
+
+    private static final List<String> FORK_FAILURE_MARKERS = Arrays.asList("The forked VM terminated",
+        "There was a timeout or other error in the fork", "ExecutionException");
+
+    private volatile Mode mode = Mode.OFF;
+    private final Set<String> unsafeProjects = Collections.synchronizedSet(new HashSet<String>());
+
+    public boolean isApplicable(MavenExecution execution) {
+        return mode != Mode.OFF && !execution.isPipeline() && execution.getOperations().get(0) == MavenOperation.TEST
+                && !unsafeProjects.contains(execution.getPath().getFile().getAbsolutePath());
+    }
+
+    /**
+     * Adds the settings for the given number of executions running concurrently, including this one.
+     */
+    public MavenCommandTemplate tune(MavenCommandTemplate template, int concurrentExecutions) {
+        return tune(template, Runtime.getRuntime().availableProcessors(), concurrentExecutions);
+    }
+
+    MavenCommandTemplate tune(MavenCommandTemplate template, int cores, int concurrentExecutions) {
+        int share = Math.max(1, cores / Math.max(1, concurrentExecutions));
+        MavenCommandTemplate result = template;
+        if (mode == Mode.PARALLEL) {
+            int forks = Math.max(1, share / 2);
+            result = result.withProperty("forkCount", String.valueOf(forks))
+                .withProperty("parallel", "classes")
+                .withProperty("threadCount", String.valueOf(Math.max(2, share / forks)))
+                .withProperty("perCoreThreadCount", "false");
+        } else {
+            result = result.withProperty("forkCount", String.valueOf(share));
+        }
+        return result.withProperty("reuseForks", "true")
+            .withProperty("surefire.runOrder", "balanced")
+            .withProperty("failsafe.runOrder", "balanced");
+    }
+
+    /**
+     * Returns whether a run which failed without failed tests may have failed because of the injected settings, i.e.
+     * because a forked JVM crashed or timed out, rather than e.g. because of a compile error.
+     */
+    public static boolean isForkFailure(String output) {
+        for (String marker : FORK_FAILURE_MARKERS) {
+            if (output.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that the tests of the project only pass with the default settings.
+     */
+    public void markUnsafe(File project) {
+        unsafeProjects.add(project.getAbsolutePath());
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+}
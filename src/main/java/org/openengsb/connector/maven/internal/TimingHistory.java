@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Append-only binary history of the timing profiles of a project. Every record carries its own string table, so
+ * module and mojo names are stored once per run. When the file grows beyond its limit, the older half of the records
+ * is dropped. A record cut off by a crash ends the history when it is read.
+ */
+public class TimingHistory {
+
+    private static final int MAGIC = 0x4d564e54;
+    private static final long DEFAULT_MAX_SIZE = 512 * 1024;
+    private static final int BASELINE_RUNS = 10;
+
+    /**
+     * A mojo or resolution step which took considerably longer in the latest run than it usually does.
+     */
+    public static final class Regression {
+        private final String module;
+        private final String mojo;
+        private final long baselineMillis;
+        private final long latestMillis;
+
+        public Regression(String module, String mojo, long baselineMillis, long latestMillis) {
+            this.module = module;
+            this.mojo = mojo;
+            this.baselineMillis = baselineMillis;
+            this.latestMillis = latestMillis;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getMojo() {
+            return mojo;
+        }
+
+        public long getBaselineMillis() {
+            return baselineMillis;
+        }
+
+        public long getLatestMillis() {
+            return latestMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %d ms instead of %d ms", module, mojo, latestMillis, baselineMillis);
+        }
+    }
+
+    private final File file;
+    private final long maxSize;
+
+    public TimingHistory(File file) {
+        this(file, DEFAULT_MAX_SIZE);
+    }
+
+    public TimingHistory(File file, long maxSize) {
+        this.file = file;
+        this.maxSize = maxSize;
+    }
+
+    public synchronized void append(TimingProfile profile) throws IOException {
+        if (!file.exists()) {
+            FileUtils.forceMkdir(file.getParentFile());
+        }
+        boolean created = !file.exists() || file.length() == 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        try {
+            if (created) {
+                out.writeInt(MAGIC);
+            }
+            out.write(encode(profile));
+        } finally {
+            out.close();
+        }
+        if (file.length() > maxSize) {
+            List<TimingProfile> profiles = read();
+            write(profiles.subList(profiles.size() / 2, profiles.size()));
+        }
+    }
+
+    public synchronized List<TimingProfile> read() throws IOException {
+        List<TimingProfile> result = new ArrayList<TimingProfile>();
+        if (!file.isFile()) {
+            return result;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is no timing history");
+            }
+            while (true) {
+                int length = in.readInt();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                result.add(decode(record));
+            }
+        } catch (EOFException e) {
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Compares the latest run with the median of the runs before and returns the steps which took more than the given
+     * factor longer and at least the given minimum more time.
+     */
+    public List<Regression> findRegressions(double factor, long minimumMillis) throws IOException {
+        List<TimingProfile> profiles = read();
+        List<Regression> result = new ArrayList<Regression>();
+        if (profiles.size() < 2) {
+            return result;
+        }
+        Map<String, List<Long>> baseline = new HashMap<String, List<Long>>();
+        for (TimingProfile profile : profiles.subList(Math.max(0, profiles.size() - 1 - BASELINE_RUNS),
+            profiles.size() - 1)) {
+            for (Map.Entry<String, Long> entry : sumByStep(profile).entrySet()) {
+                List<Long> values = baseline.get(entry.getKey());
+                if (values == null) {
+                    values = new ArrayList<Long>();
+                    baseline.put(entry.getKey(), values);
+                }
+                values.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Long> latest : sumByStep(profiles.get(profiles.size() - 1)).entrySet()) {
+            List<Long> values = baseline.get(latest.getKey());
+            if (values == null) {
+                continue;
+            }
+            Collections.sort(values);
+            long median = values.get(values.size() / 2);
+            if (latest.getValue() > median * factor && latest.getValue() - median >= minimumMillis) {
+                String[] step = latest.getKey().split("\n", 2);
+                result.add(new Regression(step[0], step[1], median, latest.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Long> sumByStep(TimingProfile profile) {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (TimingProfile.Entry entry : profile.getEntries()) {
+            String key = entry.getModule() + "\n" + entry.getMojo();
+            Long current = result.get(key);
+            result.put(key, current == null ? entry.getMillis() : current + entry.getMillis());
+        }
+        return result;
+    }
+
+    private void write(List<TimingProfile> profiles) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            for (TimingProfile profile : profiles) {
+                out.write(encode(profile));
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            FileUtils.forceDelete(file);
+            FileUtils.moveFile(tmp, file);
+        }
+    }
+
+    private static byte[] encode(TimingProfile profile) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for (TimingProfile.Entry entry : profile.getEntries()) {
+            index(entry.getModule(), strings, indexes);
+            index(entry.getMojo(), strings, indexes);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeLong(profile.getTimestamp());
+        record.writeInt((int) profile.getTotalMillis());
+        record.writeShort(strings.size());
+        for (String string : strings) {
+            record.writeUTF(string);
+        }
+        record.writeShort(profile.getEntries().size());
+        for (TimingProfile.Entry entry : profile.getEntries()) {
+            record.writeShort(indexes.get(entry.getModule()));
+            record.writeShort(indexes.get(entry.getMojo()));
+            record.writeByte(entry.getPhaseIndex());
+            record.writeInt((int) entry.getMillis());
+        }
+        record.close();
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.size() + 4);
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.close();
+        return result.toByteArray();
+    }
+
+    private static void index(String string, List<String> strings, Map<String, Integer> indexes) {
+        if (!indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static TimingProfile decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long timestamp = in.readLong();
+        long totalMillis = in.readInt();
+        String[] strings = new String[in.readUnsignedShort()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int count = in.readUnsignedShort();
+        List<TimingProfile.Entry> entries = new ArrayList<TimingProfile.Entry>(count);
+        for (int i = 0; i < count; i++) {
+            String module = strings[in.readUnsignedShort()];
+            String mojo = strings[in.readUnsignedShort()];
+            int phaseIndex = in.readByte();
+            entries.add(new TimingProfile.Entry(module, mojo, phaseIndex, in.readInt()));
+        }
+        return new TimingProfile(timestamp, totalMillis, entries);
+    }
+
+}
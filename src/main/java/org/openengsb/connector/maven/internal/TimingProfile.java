@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time spent in the mojos and in dependency resolution of the modules during one maven run.
+ */
+public class TimingProfile {
+
+    /**
+     * Name used instead of a mojo for the time a module spends resolving plugins and dependencies.
+     */
+    public static final String RESOLUTION = "(resolution)";
+
+    public static final class Entry {
+        private final String module;
+        private final String mojo;
+        private final int phaseIndex;
+        private final long millis;
+
+        public Entry(String module, String mojo, int phaseIndex, long millis) {
+            this.module = module;
+            this.mojo = mojo;
+            this.phaseIndex = phaseIndex;
+            this.millis = millis;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getMojo() {
+            return mojo;
+        }
+
+        /**
+         * Returns the default lifecycle index of the phase the mojo belongs to or -1, if it is not known.
+         */
+        public int getPhaseIndex() {
+            return phaseIndex;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public boolean isResolution() {
+            return RESOLUTION.equals(mojo);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %d ms", module, mojo, millis);
+        }
+    }
+
+    private final long timestamp;
+    private final long totalMillis;
+    private final List<Entry> entries;
+
+    public TimingProfile(long timestamp, long totalMillis, List<Entry> entries) {
+        this.timestamp = timestamp;
+        this.totalMillis = totalMillis;
+        this.entries = Collections.unmodifiableList(new ArrayList<Entry>(entries));
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public long getResolutionMillis() {
+        long result = 0;
+        for (Entry entry : entries) {
+            if (entry.isResolution()) {
+                result += entry.millis;
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Long> getModuleMillis() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Entry entry : entries) {
+            add(result, entry.module, entry.millis);
+        }
+        return result;
+    }
+
+    /**
+     * Sums up the mojo times per default lifecycle phase, mojos of unknown phases are left out.
+     */
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Entry entry : entries) {
+            if (entry.phaseIndex >= 0) {
+                add(result, MavenLifecycle.DEFAULT_PHASES.get(entry.phaseIndex), entry.millis);
+            }
+        }
+        return result;
+    }
+
+    private static void add(Map<String, Long> map, String key, long millis) {
+        Long current = map.get(key);
+        map.put(key, current == null ? millis : current + millis);
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link TimingProfile} from the maven output while it is read. A mojo lasts from the line announcing it to
+ * the line announcing the next one. Periods in which maven only reports downloads, as well as the time before the
+ * first mojo of a module, are accounted to the dependency resolution of the module.
+ */
+public class TimingProfiler implements ProcessOutputListener {
+
+    public static final int MAX_ENTRIES = 2000;
+
+    private final long timestamp = System.currentTimeMillis();
+    private final List<TimingProfile.Entry> entries = new ArrayList<TimingProfile.Entry>();
+    private final Map<String, Long> resolutionNanos = new LinkedHashMap<String, Long>();
+    private long startNanos = -1;
+    private long segmentStart;
+    private long segmentDownloadNanos;
+    private long downloadSince = -1;
+    private MavenLifecycle.MojoStart currentMojo;
+    private long totalMillis;
+
+    public synchronized void start() {
+        start(System.nanoTime());
+    }
+
+    synchronized void start(long now) {
+        startNanos = now;
+        segmentStart = now;
+    }
+
+    @Override
+    public void lineRead(String line) {
+        lineRead(line, System.nanoTime());
+    }
+
+    synchronized void lineRead(String line, long now) {
+        if (startNanos < 0) {
+            start(now);
+        }
+        boolean download = isDownload(line);
+        if (download && downloadSince < 0) {
+            downloadSince = now;
+        } else if (!download && downloadSince >= 0) {
+            segmentDownloadNanos += now - downloadSince;
+            downloadSince = -1;
+        }
+        MavenLifecycle.MojoStart mojo = download ? null : MavenLifecycle.parseMojoStart(line);
+        if (mojo != null) {
+            closeSegment(now, mojo.getModule());
+            currentMojo = mojo;
+        } else if (line.startsWith("[INFO] Building ") && !line.contains(":")) {
+            closeSegment(now, null);
+            currentMojo = null;
+        }
+    }
+
+    public synchronized TimingProfile finish() {
+        return finish(System.nanoTime());
+    }
+
+    synchronized TimingProfile finish(long now) {
+        if (startNanos < 0) {
+            start(now);
+        }
+        if (downloadSince >= 0) {
+            segmentDownloadNanos += now - downloadSince;
+            downloadSince = -1;
+        }
+        closeSegment(now, null);
+        currentMojo = null;
+        totalMillis = toMillis(now - startNanos);
+        return getProfile();
+    }
+
+    public synchronized TimingProfile getProfile() {
+        List<TimingProfile.Entry> result = new ArrayList<TimingProfile.Entry>(entries);
+        for (Map.Entry<String, Long> resolution : resolutionNanos.entrySet()) {
+            result.add(new TimingProfile.Entry(resolution.getKey(), TimingProfile.RESOLUTION, -1,
+                toMillis(resolution.getValue())));
+        }
+        return new TimingProfile(timestamp, totalMillis, result);
+    }
+
+    /**
+     * Accounts the time since the last mojo or module start, either to the running mojo or, if there is none, to the
+     * resolution of the module the next mojo belongs to.
+     */
+    private void closeSegment(long now, String nextModule) {
+        long duration = now - segmentStart;
+        long download = Math.min(segmentDownloadNanos, duration);
+        if (currentMojo != null) {
+            addResolution(currentMojo.getModule(), download);
+            if (entries.size() < MAX_ENTRIES) {
+                entries.add(new TimingProfile.Entry(currentMojo.getModule(), currentMojo.toString(),
+                    currentMojo.getPhaseIndex(), toMillis(duration - download)));
+            }
+        } else if (nextModule != null) {
+            addResolution(nextModule, duration);
+        }
+        segmentStart = now;
+        segmentDownloadNanos = 0;
+    }
+
+    private void addResolution(String module, long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        Long current = resolutionNanos.get(module);
+        if (current != null || resolutionNanos.size() < MAX_ENTRIES) {
+            resolutionNanos.put(module, current == null ? nanos : current + nanos);
+        }
+    }
+
+    private static boolean isDownload(String line) {
+        return line.startsWith("Download") || line.startsWith("[INFO] Download");
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+}
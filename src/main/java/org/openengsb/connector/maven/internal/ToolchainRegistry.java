@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Node-wide registry of the maven distributions installed in a directory, usually <code>karaf.data</code>. Missing
+ * versions are downloaded once, even if several connector instances request them concurrently, and are only visible
+ * after they have been unpacked completely.
+ */
+public class ToolchainRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ToolchainRegistry.class);
+
+    private static final String MIRROR = "http://repo1.maven.org/maven2/org/apache/maven/apache-maven";
+    private static final String DISTRIBUTION_PREFIX = "apache-maven-";
+
+    private static final ConcurrentMap<File, ToolchainRegistry> REGISTRIES =
+        new ConcurrentHashMap<File, ToolchainRegistry>();
+
+    private final File root;
+    private final ConcurrentMap<String, MavenToolchain> toolchains = new ConcurrentHashMap<String, MavenToolchain>();
+    private final ConcurrentMap<String, Object> installLocks = new ConcurrentHashMap<String, Object>();
+
+    ToolchainRegistry(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the registry of the distributions installed in <code>karaf.data</code>.
+     */
+    public static ToolchainRegistry getDefault() {
+        File root = new File(System.getProperty("karaf.data")).getAbsoluteFile();
+        ToolchainRegistry registry = REGISTRIES.get(root);
+        if (registry == null) {
+            REGISTRIES.putIfAbsent(root, new ToolchainRegistry(root));
+            registry = REGISTRIES.get(root);
+        }
+        return registry;
+    }
+
+    /**
+     * Returns the toolchain for the maven found on the path.
+     */
+    public MavenToolchain getSystemToolchain() {
+        MavenToolchain toolchain = toolchains.get("");
+        if (toolchain == null) {
+            toolchains.putIfAbsent("", new MavenToolchain("", "mvn" + getSystemEnding(),
+                new File(root, "mvn-default.jsa")));
+            toolchain = toolchains.get("");
+        }
+        return toolchain;
+    }
+
+    /**
+     * Returns the toolchain for the given maven version, installing the version first if necessary. An empty or null
+     * version resolves to the maven found on the path.
+     */
+    public MavenToolchain resolve(String version) throws IOException {
+        if (version == null || version.trim().isEmpty()) {
+            return getSystemToolchain();
+        }
+        String trimmed = version.trim();
+        if (!trimmed.matches("[A-Za-z0-9._\\-]+")) {
+            throw new IllegalArgumentException("invalid maven version " + version);
+        }
+        MavenToolchain toolchain = toolchains.get(trimmed);
+        if (toolchain != null) {
+            return toolchain;
+        }
+        installLocks.putIfAbsent(trimmed, new Object());
+        synchronized (installLocks.get(trimmed)) {
+            toolchain = toolchains.get(trimmed);
+            if (toolchain == null) {
+                if (!isInstalled(trimmed)) {
+                    install(trimmed);
+                }
+                File command = new File(getInstallation(trimmed), "bin/mvn" + getSystemEnding());
+                command.setExecutable(true);
+                toolchain = new MavenToolchain(trimmed, command.getPath(), new File(root, DISTRIBUTION_PREFIX
+                        + trimmed + ".jsa"));
+                toolchains.put(trimmed, toolchain);
+            }
+        }
+        return toolchain;
+    }
+
+    /**
+     * Returns whether the given version is installed, for an empty version whether maven can be run from the path.
+     */
+    public boolean isInstalled(String version) {
+        if (version.isEmpty()) {
+            return getSystemToolchain().isAvailable();
+        }
+        return getInstallation(version).isDirectory();
+    }
+
+    /**
+     * Returns the maven versions installed in the registry's directory.
+     */
+    public List<String> getInstalledVersions() {
+        List<String> result = new ArrayList<String>();
+        File[] files = root.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory() && file.getName().startsWith(DISTRIBUTION_PREFIX)) {
+                    result.add(file.getName().substring(DISTRIBUTION_PREFIX.length()));
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private File getInstallation(String version) {
+        return new File(root, DISTRIBUTION_PREFIX + version);
+    }
+
+    private void install(String version) throws IOException {
+        String url = String.format("%s/%s/apache-maven-%s-bin.zip", MIRROR, version, version);
+        LOGGER.info("installing maven {} from {}", version, url);
+        File archive = File.createTempFile("mvn_setup", "zip");
+        File staging = new File(root, "." + DISTRIBUTION_PREFIX + version + "-" + UUID.randomUUID());
+        try {
+            try {
+                FileUtils.copyURLToFile(new URL(url), archive);
+            } catch (IOException e) {
+                LOGGER.error("could not download maven from mirror " + url, e);
+                throw new IllegalStateException(
+                    String.format("Maven download not possible, because %s does not answer", url));
+            }
+            unzip(archive, staging);
+            File unpacked = new File(staging, DISTRIBUTION_PREFIX + version);
+            if (!unpacked.isDirectory()) {
+                throw new IOException("maven distribution " + url + " does not contain " + unpacked.getName());
+            }
+            if (!unpacked.renameTo(getInstallation(version)) && !isInstalled(version)) {
+                throw new IOException("could not install maven " + version + " to " + getInstallation(version));
+            }
+        } finally {
+            FileUtils.deleteQuietly(archive);
+            FileUtils.deleteQuietly(staging);
+        }
+    }
+
+    private static void unzip(File archive, File target) throws IOException {
+        ZipFile zipFile = new ZipFile(archive);
+        try {
+            Enumeration<?> e = zipFile.getEntries();
+            while (e.hasMoreElements()) {
+                ZipArchiveEntry zipEntry = (ZipArchiveEntry) e.nextElement();
+                File file = new File(target, zipEntry.getName());
+                if (zipEntry.isDirectory()) {
+                    FileUtils.forceMkdir(file);
+                } else {
+                    InputStream is = zipFile.getInputStream(zipEntry);
+                    FileOutputStream os = FileUtils.openOutputStream(file);
+                    try {
+                        IOUtils.copy(is, os);
+                    } finally {
+                        os.close();
+                        is.close();
+                    }
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static String getSystemEnding() {
+        if (System.getProperty("os.name").contains("Windows")) {
+            return ".bat";
+        }
+        return "";
+    }
+
+}
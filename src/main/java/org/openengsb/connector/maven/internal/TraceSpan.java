@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A timed stage of a traced execution. Spans of unsampled executions are the shared {@link #NOOP} span, which ignores
+ * all calls.
+ */
+public final class TraceSpan {
+
+    public static final TraceSpan NOOP = new TraceSpan(null, null, null, "noop");
+
+    private static final Pattern URL_USER_INFO = Pattern.compile("([a-zA-Z][a-zA-Z0-9+.-]*://)[^/@\\s]*@");
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentId;
+    private final String name;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+    private volatile long durationNanos = -1;
+
+    TraceSpan(String traceId, String spanId, String parentId, String name) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.name = name;
+    }
+
+    /**
+     * Sets an attribute of the span. Credentials in urls contained in the value are removed, as traces are written to
+     * files.
+     */
+    public TraceSpan setAttribute(String key, Object value) {
+        if (this != NOOP && value != null) {
+            String text = URL_USER_INFO.matcher(String.valueOf(value)).replaceAll("$1");
+            synchronized (attributes) {
+                attributes.put(key, text);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Ends the span unless it has been ended before.
+     */
+    public void end() {
+        if (this != NOOP && durationNanos < 0) {
+            durationNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    public boolean isEnded() {
+        return durationNanos >= 0;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Returns the id of the enclosing span or null for the root span of a trace.
+     */
+    public String getParentId() {
+        return parentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getDurationMicros() {
+        return durationNanos / 1000;
+    }
+
+    public Map<String, String> getAttributes() {
+        synchronized (attributes) {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, String>(attributes));
+        }
+    }
+
+    /**
+     * Returns the span as a single line JSON object.
+     */
+    public String toJson() {
+        StringBuilder result = new StringBuilder("{");
+        appendField(result, "traceId", traceId).append(',');
+        appendField(result, "spanId", spanId).append(',');
+        if (parentId != null) {
+            appendField(result, "parentId", parentId).append(',');
+        }
+        appendField(result, "name", name).append(',');
+        result.append("\"start\":").append(startMillis).append(',');
+        result.append("\"durationMicros\":").append(getDurationMicros()).append(",\"attributes\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> attribute : getAttributes().entrySet()) {
+            if (!first) {
+                result.append(',');
+            }
+            appendField(result, attribute.getKey(), attribute.getValue());
+            first = false;
+        }
+        return result.append("}}").toString();
+    }
+
+    private static StringBuilder appendField(StringBuilder result, String key, String value) {
+        return appendString(appendString(result, key).append(':'), value);
+    }
+
+    private static StringBuilder appendString(StringBuilder result, String text) {
+        result.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Decides which executions are traced. An execution is sampled with the configured probability as long as fewer
+ * than the configured number of traces have been started in the current minute, so tracing stays cheap under load.
+ */
+public class Tracer {
+
+    private static final long WINDOW_MILLIS = 60 * 1000;
+
+    private final Random random = new Random();
+    private volatile SpanExporter exporter;
+    private volatile double sampleRate;
+    private volatile int maxTracesPerMinute;
+    private long windowStart;
+    private int tracesInWindow;
+
+    public Tracer(SpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Starts the trace of an execution, returning {@link ExecutionTrace#NONE} if the execution is not sampled.
+     */
+    public ExecutionTrace startTrace(MavenExecution execution) {
+        SpanExporter currentExporter = exporter;
+        double rate = sampleRate;
+        if (currentExporter == null || rate <= 0 || rate < 1 && random.nextDouble() >= rate || !acquire()) {
+            return ExecutionTrace.NONE;
+        }
+        ExecutionTrace trace = new ExecutionTrace(UUID.randomUUID().toString(), "execution", currentExporter);
+        trace.getRoot().setAttribute("contextId", execution.getContextId()).setAttribute("id", execution.getId())
+            .setAttribute("processId", execution.getProcessId()).setAttribute("operations", execution.getOperations())
+            .setAttribute("path", execution.getPath().getFile().getAbsolutePath());
+        return trace;
+    }
+
+    private synchronized boolean acquire() {
+        int limit = maxTracesPerMinute;
+        if (limit <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= WINDOW_MILLIS) {
+            windowStart = now;
+            tracesInWindow = 0;
+        }
+        if (tracesInWindow >= limit) {
+            return false;
+        }
+        tracesInWindow++;
+        return true;
+    }
+
+    public void setExporter(SpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    public SpanExporter getExporter() {
+        return exporter;
+    }
+
+    /**
+     * Sets the probability between 0, which disables tracing, and 1, which traces every execution.
+     */
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("invalid trace sample rate " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Limits the number of traces started per minute, 0 for no limit.
+     */
+    public void setMaxTracesPerMinute(int maxTracesPerMinute) {
+        if (maxTracesPerMinute < 0) {
+            throw new IllegalArgumentException("invalid trace limit " + maxTracesPerMinute);
+        }
+        this.maxTracesPerMinute = maxTracesPerMinute;
+    }
+
+}
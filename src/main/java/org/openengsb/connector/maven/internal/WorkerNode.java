@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A host maven executions are dispatched to. Remote nodes are reached through a launcher command (e.g.
+ * <code>ssh build1</code>) which is prepended to the maven command line, so the output of the remote build is
+ * streamed back through the launcher process. Project paths are expected to be the same on every node.
+ */
+public class WorkerNode {
+
+    public static final String LOCAL = "local";
+
+    private static final int MAX_WARM_PATHS = 64;
+
+    private final String name;
+    private final List<String> launcher;
+    private final int slots;
+
+    private final LinkedList<ExecutionDispatcher.Job> queue = new LinkedList<ExecutionDispatcher.Job>();
+    private final Set<String> warmPaths = new LinkedHashSet<String>();
+    private int running;
+
+    public WorkerNode(String name, List<String> launcher, int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("a worker node needs at least one slot");
+        }
+        this.name = name;
+        this.launcher = Collections.unmodifiableList(new ArrayList<String>(launcher));
+        this.slots = slots;
+    }
+
+    /**
+     * Parses a node list of the form <code>name[=launcher];name[=launcher]</code>. Nodes without launcher run maven
+     * on this host. An empty specification results in a single local node.
+     */
+    public static List<WorkerNode> parse(String specification, int slots) {
+        List<WorkerNode> result = new ArrayList<WorkerNode>();
+        if (specification != null) {
+            for (String entry : specification.split(";")) {
+                if (entry.trim().isEmpty()) {
+                    continue;
+                }
+                int separator = entry.indexOf('=');
+                String nodeName = (separator < 0 ? entry : entry.substring(0, separator)).trim();
+                List<String> nodeLauncher = new ArrayList<String>();
+                if (separator >= 0) {
+                    for (String token : entry.substring(separator + 1).trim().split("\\s+")) {
+                        if (!token.isEmpty()) {
+                            nodeLauncher.add(token);
+                        }
+                    }
+                }
+                result.add(new WorkerNode(nodeName, nodeLauncher, slots));
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(new WorkerNode(LOCAL, new ArrayList<String>(), slots));
+        }
+        return result;
+    }
+
+    public static List<WorkerNode> local(int slots) {
+        return Arrays.asList(new WorkerNode(LOCAL, new ArrayList<String>(), slots));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getLauncher() {
+        return launcher;
+    }
+
+    public boolean isLocal() {
+        return launcher.isEmpty();
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    LinkedList<ExecutionDispatcher.Job> getQueue() {
+        return queue;
+    }
+
+    int getRunning() {
+        return running;
+    }
+
+    void started(String path) {
+        running++;
+        warmPaths.remove(path);
+        warmPaths.add(path);
+        if (warmPaths.size() > MAX_WARM_PATHS) {
+            Iterator<String> oldest = warmPaths.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    void finished() {
+        running--;
+    }
+
+    boolean isWarm(String path) {
+        return warmPaths.contains(path);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
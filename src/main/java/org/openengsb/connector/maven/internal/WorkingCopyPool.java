@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps isolated working copies of project directories, so that several executions on the same project can run at
+ * the same time. Every copy has its own <code>target</code> directories and is brought up to date with its source
+ * before it is leased again, so only changed files are transferred. With rsync available unchanged files are hard
+ * links into the source tree, which means builds must not modify their sources in place; without rsync changed files
+ * are copied.
+ */
+public class WorkingCopyPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkingCopyPool.class);
+
+    private static final String OUTPUT_DIRECTORY = "target";
+
+    private static volatile Boolean rsyncAvailable;
+
+    private final File root;
+    private final Map<String, LinkedList<File>> free = new HashMap<String, LinkedList<File>>();
+    private final Map<String, Integer> created = new HashMap<String, Integer>();
+    private final Set<File> leased = new HashSet<File>();
+
+    public WorkingCopyPool(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns an up to date working copy of the source directory, which is not used by anyone else until it is
+     * released.
+     */
+    public File lease(File source) throws IOException {
+        File copy = reserve(source.getAbsoluteFile());
+        try {
+            synchronize(source.getAbsoluteFile(), copy);
+            return copy;
+        } catch (IOException e) {
+            release(copy);
+            throw e;
+        }
+    }
+
+    public void release(File copy) {
+        synchronized (this) {
+            if (leased.remove(copy)) {
+                getFree(copy.getParentFile().getName()).addFirst(copy);
+            }
+        }
+    }
+
+    private synchronized File reserve(File source) throws IOException {
+        String key = String.format("%s-%08x", source.getName(), source.getPath().hashCode());
+        LinkedList<File> copies = getFree(key);
+        File copy;
+        if (!copies.isEmpty()) {
+            copy = copies.removeFirst();
+        } else {
+            int index = created.get(key);
+            created.put(key, index + 1);
+            copy = new File(new File(root, key), String.valueOf(index));
+            if (!copy.mkdirs() && !copy.isDirectory()) {
+                throw new IOException("cannot create working copy " + copy);
+            }
+        }
+        leased.add(copy);
+        return copy;
+    }
+
+    /**
+     * Returns the free copies of a source, picking up the copies left on disk by a previous run on first access.
+     */
+    private LinkedList<File> getFree(String key) {
+        LinkedList<File> copies = free.get(key);
+        if (copies == null) {
+            copies = new LinkedList<File>();
+            int index = 0;
+            File[] existing = new File(root, key).listFiles();
+            if (existing != null) {
+                for (File file : existing) {
+                    if (file.isDirectory() && file.getName().matches("\\d+")) {
+                        copies.add(file);
+                        index = Math.max(index, Integer.parseInt(file.getName()) + 1);
+                    }
+                }
+            }
+            free.put(key, copies);
+            created.put(key, index);
+        }
+        return copies;
+    }
+
+    private void synchronize(File source, File copy) throws IOException {
+        if (isRsyncAvailable()) {
+            rsync(source, copy);
+        } else {
+            copyChanges(source, copy);
+        }
+    }
+
+    private void rsync(File source, File copy) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add("rsync");
+        command.add("-a");
+        command.add("--delete");
+        command.add("--exclude=" + OUTPUT_DIRECTORY + "/");
+        command.add("--link-dest=" + source.getPath());
+        command.add(source.getPath() + "/");
+        command.add(copy.getPath() + "/");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream());
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("could not update working copy " + copy + ": " + output);
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while updating working copy " + copy);
+        }
+    }
+
+    private void copyChanges(File source, File copy) throws IOException {
+        File[] sourceFiles = source.listFiles();
+        if (sourceFiles == null) {
+            throw new IOException("cannot read directory " + source);
+        }
+        Set<String> names = new HashSet<String>();
+        for (File sourceFile : sourceFiles) {
+            if (sourceFile.isDirectory() && OUTPUT_DIRECTORY.equals(sourceFile.getName())) {
+                continue;
+            }
+            names.add(sourceFile.getName());
+            File target = new File(copy, sourceFile.getName());
+            if (sourceFile.isDirectory()) {
+                if (target.isFile()) {
+                    FileUtils.forceDelete(target);
+                }
+                FileUtils.forceMkdir(target);
+                copyChanges(sourceFile, target);
+            } else if (!target.isFile() || target.length() != sourceFile.length()
+                    || target.lastModified() != sourceFile.lastModified()) {
+                if (target.isDirectory()) {
+                    FileUtils.deleteDirectory(target);
+                }
+                FileUtils.copyFile(sourceFile, target, true);
+            }
+        }
+        File[] copyFiles = copy.listFiles();
+        for (File copyFile : copyFiles == null ? new File[0] : copyFiles) {
+            if (!names.contains(copyFile.getName())
+                    && !(copyFile.isDirectory() && OUTPUT_DIRECTORY.equals(copyFile.getName()))) {
+                FileUtils.forceDelete(copyFile);
+            }
+        }
+    }
+
+    private static boolean isRsyncAvailable() {
+        if (rsyncAvailable == null) {
+            boolean available;
+            try {
+                Process process = new ProcessBuilder("rsync", "--version").redirectErrorStream(true).start();
+                IOUtils.toString(process.getInputStream());
+                available = process.waitFor() == 0;
+            } catch (IOException e) {
+                available = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                available = false;
+            }
+            LOGGER.info("working copies are updated {}", available ? "with rsync" : "by copying changed files");
+            rsyncAvailable = available;
+        }
+        return rsyncAvailable;
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+
+public class AdmissionControllerTest {
+
+    private ExecutionDispatcher dispatcher;
+    private AdmissionController admissionController;
+    private CountDownLatch blocker;
+    private ExecutionDispatcher.ExecutionRunner runner;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(1));
+        admissionController = new AdmissionController();
+        blocker = new CountDownLatch(1);
+        runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        dispatcher.submit(createExecution("running", "context"), runner);
+        while (dispatcher.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        blocker.countDown();
+        dispatcher.shutdown(null);
+    }
+
+    @Test
+    public void admitWithFreeQueue_shouldAccept() {
+        admissionController.setMaxQueueLength(2);
+        dispatcher.submit(createExecution("queued", "context"), runner);
+        assertThat(admissionController.admit(createExecution("new", "context"), dispatcher, runner), nullValue());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void admitWithFullQueue_shouldReject() {
+        admissionController.setMaxQueueLength(2);
+        dispatcher.submit(createExecution("queued1", "context"), runner);
+        dispatcher.submit(createExecution("queued2", "context"), runner);
+        admissionController.admit(createExecution("new", "context"), dispatcher, runner);
+    }
+
+    @Test
+    public void admitWithFullQueueAndShedPolicy_shouldShedOldest() {
+        admissionController.setMaxQueueLength(2);
+        admissionController.setOverloadPolicy(AdmissionController.OverloadPolicy.SHED);
+        dispatcher.submit(createExecution("queued1", "context"), runner);
+        dispatcher.submit(createExecution("queued2", "context"), runner);
+
+        MavenExecution shed = admissionController.admit(createExecution("new", "context"), dispatcher, runner);
+
+        assertThat(shed.getId(), is("queued1"));
+        assertThat(dispatcher.getQueueLength(), is(1));
+    }
+
+    @Test
+    public void admitWithFullQueueOfSupersededExecutions_shouldAccept() {
+        admissionController.setMaxQueueLength(2);
+        dispatcher.submit(createExecution("queued", "context"), runner);
+        dispatcher.submit(createExecution("new", "context"), runner);
+        MavenExecution execution = createExecution("new", "context");
+
+        assertThat(admissionController.admit(execution, dispatcher, runner, true), nullValue());
+        assertThat(dispatcher.getQueueLength(), is(2));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void admitWithFullQueueOfOtherExecutions_shouldRejectEvenIfSuperseding() {
+        admissionController.setMaxQueueLength(2);
+        dispatcher.submit(createExecution("queued1", "context"), runner);
+        dispatcher.submit(createExecution("queued2", "context"), runner);
+        admissionController.admit(createExecution("new", "context"), dispatcher, runner, true);
+    }
+
+    @Test
+    public void admitWithFullContextQueue_shouldOnlyRejectThatContext() {
+        admissionController.setMaxQueueLengthPerContext(1);
+        dispatcher.submit(createExecution("queued", "busy"), runner);
+        assertThat(admissionController.admit(createExecution("new", "idle"), dispatcher, runner), nullValue());
+        try {
+            admissionController.admit(createExecution("new", "busy"), dispatcher, runner);
+            throw new AssertionError("execution should have been rejected");
+        } catch (RejectedExecutionException e) {
+            assertThat(e.getMessage(), is("1 executions queued for context busy"));
+        }
+    }
+
+    private static MavenExecution createExecution(String id, String contextId) {
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(new File(id));
+        MavenExecution execution = new MavenExecution(id, null, path, MavenOperation.BUILD);
+        execution.setContextId(contextId);
+        return execution;
+    }
+
+}
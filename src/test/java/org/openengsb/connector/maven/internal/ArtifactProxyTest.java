@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ArtifactProxyTest {
+
+    private File directory;
+    private File upstreamDir;
+    private HttpServer upstream;
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+    private volatile long upstreamDelay;
+    private ArtifactProxy proxy;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "maven-artifact-proxy-test").getAbsoluteFile();
+        FileUtils.deleteDirectory(directory);
+        upstreamDir = new File(directory, "upstream");
+        FileUtils.writeStringToFile(new File(upstreamDir, "org/example/a/1.0/a-1.0.jar"), "jar");
+        FileUtils.writeStringToFile(new File(upstreamDir, "org/example/a/maven-metadata.xml"), "<metadata/>");
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveUpstream(exchange);
+            }
+        });
+        upstream.start();
+        proxy = new ArtifactProxy(new File(directory, "cache"),
+            Arrays.asList("http://127.0.0.1:" + upstream.getAddress().getPort() + "/"));
+        proxy.start();
+    }
+
+    private void serveUpstream(HttpExchange exchange) throws IOException {
+        upstreamRequests.incrementAndGet();
+        try {
+            Thread.sleep(upstreamDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        File file = new File(upstreamDir, exchange.getRequestURI().getPath());
+        if (!file.isFile()) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        String etag = "\"" + file.lastModified() + "-" + file.length() + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().add("ETag", etag);
+        byte[] content = FileUtils.readFileToByteArray(file);
+        exchange.sendResponseHeaders(200, content.length);
+        OutputStream output = exchange.getResponseBody();
+        output.write(content);
+        output.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        proxy.stop();
+        upstream.stop(0);
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxy.getUrl() + path).openConnection();
+        try {
+            if (connection.getResponseCode() != 200) {
+                return null;
+            }
+            InputStream input = connection.getInputStream();
+            try {
+                return IOUtils.toString(input, "UTF-8");
+            } finally {
+                input.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void cachedArtifact_shouldBeServedWithoutUpstreamRequest() throws Exception {
+        assertThat(get("org/example/a/1.0/a-1.0.jar"), is("jar"));
+        assertThat(get("org/example/a/1.0/a-1.0.jar"), is("jar"));
+
+        assertThat(upstreamRequests.get(), is(1));
+        assertThat(proxy.getHits(), is(1L));
+    }
+
+    @Test
+    public void missingArtifact_shouldBeNotFound() throws Exception {
+        assertThat(get("org/example/b/1.0/b-1.0.jar"), nullValue());
+        assertThat(get("org/example/b/1.0/b-1.0.jar"), nullValue());
+
+        assertThat(upstreamRequests.get(), is(1));
+    }
+
+    @Test
+    public void concurrentRequests_shouldShareOneDownload() throws Exception {
+        upstreamDelay = 300;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return get("org/example/a/1.0/a-1.0.jar");
+                }
+            }));
+        }
+        for (Future<String> result : results) {
+            assertThat(result.get(), is("jar"));
+        }
+        executor.shutdown();
+
+        assertThat(upstreamRequests.get(), is(1));
+        assertThat(proxy.getCoalescedRequests(), is(3L));
+    }
+
+    @Test
+    public void expiredMetadata_shouldBeRevalidated() throws Exception {
+        proxy.setRevalidateMillis(0);
+        get("org/example/a/maven-metadata.xml");
+
+        assertThat(get("org/example/a/maven-metadata.xml"), is("<metadata/>"));
+
+        assertThat(upstreamRequests.get(), is(2));
+        assertThat(proxy.getRevalidations(), is(1L));
+        assertThat(proxy.getDownloads(), is(1L));
+    }
+
+    @Test
+    public void unreachableUpstream_shouldServeStaleMetadata() throws Exception {
+        proxy.setRevalidateMillis(0);
+        get("org/example/a/maven-metadata.xml");
+        upstream.stop(0);
+
+        assertThat(get("org/example/a/maven-metadata.xml"), is("<metadata/>"));
+    }
+
+    @Test
+    public void invalidPath_shouldBeRejected() throws Exception {
+        assertThat(ArtifactProxy.toPath("/org/../../etc/passwd"), nullValue());
+        assertThat(ArtifactProxy.toPath("/org/example/a/"), nullValue());
+        assertThat(ArtifactProxy.toPath("/org/example/a/a-1.0.jar?x=y"), is("org/example/a/a-1.0.jar"));
+    }
+
+    @Test
+    public void settings_shouldMirrorThroughTheProxy() throws Exception {
+        File settings = new File(directory, "settings.xml");
+
+        proxy.writeSettings(settings, "central");
+
+        String content = FileUtils.readFileToString(settings);
+        assertThat(content, containsString("<mirrorOf>central</mirrorOf>"));
+        assertThat(content, containsString("<url>" + proxy.getUrl() + "</url>"));
+    }
+
+    @Test
+    public void settingsBasedOnUserSettings_shouldKeepThemAndMirrorThroughTheProxyFirst() throws Exception {
+        File base = new File(directory, "user-settings.xml");
+        FileUtils.writeStringToFile(base, "<settings xmlns=\"http://maven.apache.org/SETTINGS/1.0.0\">"
+                + "<servers><server><id>internal</id></server></servers>"
+                + "<mirrors><mirror><id>company</id><mirrorOf>*</mirrorOf></mirror></mirrors></settings>", "UTF-8");
+        File settings = new File(directory, "settings.xml");
+
+        proxy.writeSettings(settings, "central", base);
+
+        String content = FileUtils.readFileToString(settings);
+        assertThat(content, containsString("<server><id>internal</id></server>"));
+        assertThat(content, containsString("<mirrors><mirror><id>openengsb-artifact-proxy</id>"
+                + "<mirrorOf>central</mirrorOf><url>" + proxy.getUrl() + "</url></mirror><mirror><id>company</id>"));
+    }
+
+}
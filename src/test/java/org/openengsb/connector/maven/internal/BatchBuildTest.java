@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+
+public class BatchBuildTest {
+
+    private File directory;
+    private MavenExecution named;
+    private MavenExecution unnamed;
+    private BatchBuild batch;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "maven-batch-test").getAbsoluteFile();
+        FileUtils.deleteDirectory(directory);
+        FileUtils.writeStringToFile(new File(directory, "projects/a/pom.xml"), "<project><parent>"
+                + "<artifactId>parent</artifactId></parent><artifactId>a</artifactId><name>Project A</name></project>");
+        FileUtils.writeStringToFile(new File(directory, "projects/b/pom.xml"),
+            "<project><artifactId>b</artifactId></project>");
+        named = createExecution(new File(directory, "projects/a"));
+        unnamed = createExecution(new File(directory, "projects/b"));
+        batch = new BatchBuild(new File(directory, "batches"), Arrays.asList(named, unnamed));
+    }
+
+    private static MavenExecution createExecution(File project) {
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(project);
+        return new MavenExecution(null, null, path, MavenOperation.BUILD);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void aggregator_shouldReferenceProjectsRelatively() throws Exception {
+        String pom = FileUtils.readFileToString(new File(batch.getDirectory(), "pom.xml"));
+
+        assertThat(pom, containsString("<module>../../projects/a</module>"));
+        assertThat(pom, containsString("<module>../../projects/b</module>"));
+        assertThat(pom, containsString("<packaging>pom</packaging>"));
+    }
+
+    @Test
+    public void sameProjects_shouldReuseTheAggregator() throws Exception {
+        BatchBuild other = new BatchBuild(new File(directory, "batches"), Arrays.asList(unnamed, named));
+
+        assertThat(other.getDirectory(), is(batch.getDirectory()));
+    }
+
+    @Test
+    public void getStatus_shouldMatchSummaryByNameOrArtifactId() {
+        List<BuildDiagnostics.ModuleResult> summary = Arrays.asList(
+            new BuildDiagnostics.ModuleResult("Project A 1.0-SNAPSHOT", "FAILURE", 10),
+            new BuildDiagnostics.ModuleResult("b", "SUCCESS", 10));
+
+        assertThat(batch.getStatus(named, summary), is("FAILURE"));
+        assertThat(batch.getStatus(unnamed, summary), is("SUCCESS"));
+    }
+
+    @Test
+    public void getStatus_shouldReturnNullForMissingProjects() {
+        List<BuildDiagnostics.ModuleResult> summary = Arrays.asList(
+            new BuildDiagnostics.ModuleResult("parent", "SUCCESS", 10));
+
+        assertThat(batch.getStatus(named, summary), is(nullValue()));
+    }
+
+    @Test
+    public void relativize_shouldHandleNestedPaths() {
+        assertThat(BatchBuild.relativize(new File("/x/y/z"), new File("/x/a")), is("../../a"));
+        assertThat(BatchBuild.relativize(new File("/x"), new File("/x/a/b")), is("a/b"));
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ClassDataSharingTestUT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassDataSharingTestUT.class);
+
+    private static final int RUNS = 5;
+
+    private final List<String> command = Arrays.asList("mvn" + (isWindows() ? ".bat" : ""), "-v");
+    private final File dir = FileUtils.getTempDirectory();
+
+    @Test
+    public void startupWithArchive_shouldRunMaven() throws Exception {
+        File archive = new File(FileUtils.getTempDirectory(), "maven-cds-benchmark.jsa");
+        FileUtils.deleteQuietly(archive);
+        ClassDataSharing classDataSharing = new ClassDataSharing(archive);
+        ProcessLauncher launcher = new ProcessLauncher();
+
+        long without = measure(launcher);
+        launcher.setClassDataSharing(classDataSharing);
+        run(launcher);
+        assumeTrue(archive.exists());
+        try {
+            long with = measure(launcher);
+            // wall-clock timings vary too much between hosts to assert on them
+            LOGGER.info("mvn -v startup: {} ms without, {} ms with class data sharing", without, with);
+
+            assertThat(run(launcher), containsString("Apache Maven"));
+        } finally {
+            classDataSharing.deleteArchive();
+        }
+    }
+
+    private long measure(ProcessLauncher launcher) throws Exception {
+        run(launcher);
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            run(launcher);
+        }
+        return (System.nanoTime() - start) / RUNS / 1000000;
+    }
+
+    private String run(ProcessLauncher launcher) throws Exception {
+        ProcessLauncher.Launch launch = launcher.start(dir, command, WorkerNode.local(1).get(0));
+        try {
+            String output = IOUtils.toString(launch.getProcess().getInputStream());
+            assertThat(launch.getProcess().waitFor(), is(0));
+            return output;
+        } finally {
+            launcher.release(launch);
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("windows");
+    }
+
+}
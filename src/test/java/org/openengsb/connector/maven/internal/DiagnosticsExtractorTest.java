@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class DiagnosticsExtractorTest {
+
+    private final DiagnosticsExtractor extractor = new DiagnosticsExtractor();
+
+    private void read(String... lines) {
+        for (String line : lines) {
+            extractor.lineRead(line);
+        }
+    }
+
+    @Test
+    public void compilerError_shouldBeExtractedWithLocationAndModule() {
+        read("[INFO] Building core 1.0-SNAPSHOT",
+            "[ERROR] COMPILATION ERROR : ",
+            "[ERROR] /src/core/src/main/java/A.java:[12,5] cannot find symbol",
+            "[ERROR] Failed to execute goal org.apache.maven.plugins:maven-compiler-plugin:3.1:compile "
+                    + "(default-compile) on project core: Compilation failure",
+            "[ERROR] /src/core/src/main/java/A.java:[12,5] cannot find symbol",
+            "[INFO] BUILD FAILURE");
+
+        BuildDiagnostics result = extractor.getResult();
+
+        assertThat(result.getDiagnostics().size(), is(1));
+        BuildDiagnostics.Diagnostic diagnostic = result.getDiagnostics().get(0);
+        assertThat(diagnostic.getSeverity(), is("ERROR"));
+        assertThat(diagnostic.getModule(), is("core"));
+        assertThat(diagnostic.getFile(), is("/src/core/src/main/java/A.java"));
+        assertThat(diagnostic.getLine(), is(12));
+        assertThat(diagnostic.getColumn(), is(5));
+        assertThat(diagnostic.getMessage(), is("cannot find symbol"));
+        assertThat(result.getFailingModule(), is("core"));
+        assertThat(result.getFailure(), is("Compilation failure"));
+        assertThat(result.getSuccess(), is(false));
+    }
+
+    @Test
+    public void reactorSummary_shouldProvideModuleTimings() {
+        read("[INFO] Reactor Summary:",
+            "[INFO] ",
+            "[INFO] parent ............................................. SUCCESS [  0.512 s]",
+            "[INFO] core ............................................... FAILURE [01:02 min]",
+            "[INFO] web ................................................ SKIPPED",
+            "[INFO] ------------------------------------------------------------------------",
+            "[INFO] BUILD FAILURE",
+            "[INFO] Total time: 01:03 min");
+
+        BuildDiagnostics result = extractor.getResult();
+
+        assertThat(result.getModules().size(), is(3));
+        assertThat(result.getModules().get(0).getName(), is("parent"));
+        assertThat(result.getModules().get(0).getMillis(), is(512L));
+        assertThat(result.getModules().get(1).getStatus(), is("FAILURE"));
+        assertThat(result.getModules().get(1).getMillis(), is(62000L));
+        assertThat(result.getModules().get(2).getMillis(), is(-1L));
+        assertThat(result.getTotalMillis(), is(63000L));
+    }
+
+    @Test
+    public void oldReactorSummaryFormat_shouldBeParsed() {
+        read("[INFO] Reactor Summary:", "[INFO] parent ....... SUCCESS [1.234s]");
+
+        assertThat(extractor.getResult().getModules().get(0).getMillis(), is(1234L));
+    }
+
+    @Test
+    public void packagingLines_shouldNotChangeTheModule() {
+        read("[INFO] Building core 1.0", "[INFO] Building jar: /src/core/target/core-1.0.jar",
+            "[WARNING] /src/core/src/main/java/A.java:[3] deprecated");
+
+        assertThat(extractor.getResult().getDiagnostics().get(0).getModule(), is("core"));
+        assertThat(extractor.getResult().getDiagnostics().get(0).getColumn(), is(0));
+    }
+
+    @Test
+    public void manyDiagnostics_shouldBeBounded() {
+        for (int i = 0; i < DiagnosticsExtractor.MAX_DIAGNOSTICS + 50; i++) {
+            extractor.lineRead("[WARNING] /A.java:[" + i + ",1] unchecked call");
+        }
+
+        BuildDiagnostics result = extractor.getResult();
+
+        assertThat(result.getDiagnostics().size(), is(DiagnosticsExtractor.MAX_DIAGNOSTICS));
+        assertThat(result.getOmittedDiagnostics(), is(50));
+    }
+
+    @Test
+    public void successfulBuild_shouldHaveNoFailure() {
+        read("[INFO] BUILD SUCCESS");
+
+        assertThat(extractor.getResult().getSuccess(), is(true));
+        assertThat(extractor.getResult().getFailingModule(), nullValue());
+    }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class DurationModelTest {
+
+    private final DurationModel model = new DurationModel();
+
+    @Test
+    public void unknownKey_shouldHaveNoEstimate() {
+        assertThat(model.estimate("unknown"), is(-1L));
+    }
+
+    @Test
+    public void firstRecord_shouldBeTheEstimate() {
+        model.record("build", 1000);
+
+        assertThat(model.estimate("build"), is(1000L));
+    }
+
+    @Test
+    public void laterRecords_shouldMoveTheEstimateGradually() {
+        model.record("build", 1000);
+        model.record("build", 2000);
+
+        assertThat(model.estimate("build"), is(1300L));
+    }
+
+}
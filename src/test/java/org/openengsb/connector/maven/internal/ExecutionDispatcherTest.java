@@ -0,0 +1,474 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+
+public class ExecutionDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutionDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown(null);
+        }
+    }
+
+    @Test
+    public void executionsOnSameProject_shouldNotRunConcurrently() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.parse("a;b", 2));
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                int running = current.incrementAndGet();
+                max.set(Math.max(max.get(), running));
+                sleep(50);
+                current.decrementAndGet();
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            dispatcher.submit(createExecution("project"), runner);
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(max.get(), is(1));
+    }
+
+    @Test
+    public void batchAndExecutionOnMemberProject_shouldNotRunConcurrently() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(2));
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(2);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                int running = current.incrementAndGet();
+                max.set(Math.max(max.get(), running));
+                sleep(50);
+                current.decrementAndGet();
+                done.countDown();
+            }
+        };
+        File project = folder.newFolder("member");
+        BatchBuild batch = new BatchBuild(folder.newFolder("batches"),
+            Arrays.asList(createExecution(project.getPath()), createExecution(folder.newFolder("other").getPath())));
+        MavenExecution execution = createExecution(batch.getDirectory().getPath());
+        execution.setBatch(batch);
+        dispatcher.submit(execution, runner);
+        dispatcher.submit(createExecution(project.getPath()), runner);
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(max.get(), is(1));
+    }
+
+    @Test
+    public void executionsOnSameProjectWithoutSerialization_shouldRunConcurrently() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.parse("a", 2));
+        dispatcher.setSerializePaths(false);
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicInteger overlapping = new AtomicInteger();
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                bothRunning.countDown();
+                try {
+                    if (bothRunning.await(1, TimeUnit.SECONDS)) {
+                        overlapping.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        };
+        dispatcher.submit(createExecution("project"), runner);
+        dispatcher.submit(createExecution("project"), runner);
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(overlapping.get(), is(2));
+    }
+
+    @Test
+    public void executionsOfParallelOwnerOnRemoteNodes_shouldNotRunConcurrently() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.parse("a=env;b=env", 2));
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                int running = current.incrementAndGet();
+                max.set(Math.max(max.get(), running));
+                sleep(50);
+                current.decrementAndGet();
+                done.countDown();
+            }
+        };
+        dispatcher.setSerializePaths(runner, false);
+        for (int i = 0; i < 4; i++) {
+            dispatcher.submit(createExecution("project"), runner);
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(max.get(), is(1));
+    }
+
+    @Test
+    public void executionsWithPinnedVersion_shouldOnlyRunOnLocalNodes() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.parse("remote=env;local", 1));
+        final Set<String> usedNodes = Collections.synchronizedSet(new HashSet<String>());
+        final CountDownLatch done = new CountDownLatch(4);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                usedNodes.add(node.getName());
+                sleep(20);
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            MavenExecution execution = createExecution("project" + i);
+            execution.setToolchain(new MavenToolchain("3.0.4", "mvn", new File("mvn.jsa")));
+            dispatcher.submit(execution, runner);
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(usedNodes, is((Set<String>) new HashSet<String>(Arrays.asList("local"))));
+    }
+
+    @Test
+    public void idleNodes_shouldShareTheWork() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.parse("a=env;b=env", 1));
+        final Set<String> usedNodes = Collections.synchronizedSet(new HashSet<String>());
+        final CountDownLatch done = new CountDownLatch(6);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                usedNodes.add(node.getName());
+                sleep(50);
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < 6; i++) {
+            dispatcher.submit(createExecution("project" + i), runner);
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(usedNodes.size(), is(2));
+    }
+
+    @Test
+    public void warmNode_shouldBePreferred() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.parse("a=env;b=env", 1));
+        final String[] nodes = new String[2];
+        final AtomicInteger run = new AtomicInteger();
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                nodes[run.getAndIncrement()] = node.getName();
+            }
+        };
+        dispatcher.runNow(createExecution("other"), runner);
+        run.set(0);
+        dispatcher.runNow(createExecution("project"), runner);
+        dispatcher.runNow(createExecution("project"), runner);
+        assertThat(nodes[1], is(nodes[0]));
+    }
+
+    @Test
+    public void shutdown_shouldMoveQueuedExecutionsToSuccessor() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(1));
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            dispatcher.submit(createExecution("project" + i), runner);
+        }
+        ExecutionDispatcher successor = new ExecutionDispatcher("successor", WorkerNode.local(2));
+        dispatcher.shutdown(successor);
+        blocked.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        successor.shutdown(null);
+    }
+
+    @Test
+    public void shortestFirst_shouldRunShortExecutionsFirst() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(1));
+        dispatcher.setQueueOrder(ExecutionDispatcher.QueueOrder.SHORTEST_FIRST);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                order.add(execution.getId());
+                done.countDown();
+            }
+        };
+        dispatcher.submit(createExecution("blocking", "blocking", 1000), runner);
+        sleep(50);
+        dispatcher.submit(createExecution("long", "long", 600000), runner);
+        sleep(10);
+        dispatcher.submit(createExecution("short", "short", 1000), runner);
+        sleep(50);
+
+        long blockingCompletion = dispatcher.estimateCompletion("blocking");
+        long shortCompletion = dispatcher.estimateCompletion("short");
+        long longCompletion = dispatcher.estimateCompletion("long");
+        assertThat(blockingCompletion < shortCompletion, is(true));
+        assertThat(shortCompletion < longCompletion, is(true));
+        assertThat(dispatcher.estimateCompletion("unknown"), is(-1L));
+
+        blocked.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(order, is(Arrays.asList("blocking", "short", "long")));
+    }
+
+    @Test
+    public void runnerAtQuota_shouldLeaveSlotsToOtherRunners() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(3));
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(5);
+        ExecutionDispatcher.ExecutionRunner limited = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                int running = current.incrementAndGet();
+                max.set(Math.max(max.get(), running));
+                sleep(50);
+                current.decrementAndGet();
+                done.countDown();
+            }
+        };
+        final CountDownLatch otherDone = new CountDownLatch(1);
+        ExecutionDispatcher.ExecutionRunner other = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                otherDone.countDown();
+            }
+        };
+        dispatcher.setQuota(limited, 1);
+        for (int i = 0; i < 5; i++) {
+            dispatcher.submit(createExecution("project" + i), limited);
+        }
+        dispatcher.submit(createExecution("other"), other);
+        assertThat(otherDone.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(done.getCount() > 0, is(true));
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(max.get(), is(1));
+    }
+
+    @Test
+    public void transfer_shouldOnlyMoveExecutionsOfTheRunner() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(1));
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ExecutionDispatcher.ExecutionRunner blocking = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        final List<String> moved = Collections.synchronizedList(new ArrayList<String>());
+        ExecutionDispatcher.ExecutionRunner recording = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                moved.add(execution.getId());
+            }
+        };
+        dispatcher.submit(createExecution("running"), blocking);
+        dispatcher.submit(createExecution("stays"), blocking);
+        dispatcher.submit(createExecution("moves"), recording);
+        ExecutionDispatcher target = new ExecutionDispatcher("target", WorkerNode.local(1));
+        try {
+            dispatcher.transfer(recording, target);
+            sleep(100);
+            assertThat(moved.size(), is(1));
+            assertThat(dispatcher.getQueueLength(), is(1));
+        } finally {
+            blocked.countDown();
+            target.shutdown(null);
+        }
+    }
+
+    @Test
+    public void removeSuperseded_shouldOnlyRemoveQueuedExecutionsWithSameTarget() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(1));
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            dispatcher.submit(createExecution("running"), runner);
+            sleep(50);
+            MavenExecution older = createExecution("project", "older", 0);
+            dispatcher.submit(older, runner);
+            dispatcher.submit(createExecution("other", "other", 0), runner);
+            MavenExecution newer = createExecution("project", "newer", 0);
+
+            List<MavenExecution> removed = dispatcher.removeSuperseded(runner, newer);
+
+            assertThat(removed, is(Arrays.asList(older)));
+            assertThat(dispatcher.getQueueLength(), is(1));
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void runNow_shouldWaitForRunningExecutionOnSameProject() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(2));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        ExecutionDispatcher.ExecutionRunner runner = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                int running = current.incrementAndGet();
+                max.set(Math.max(max.get(), running));
+                started.countDown();
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                current.decrementAndGet();
+            }
+        };
+        dispatcher.submit(createExecution("project"), runner);
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+        Thread release = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sleep(100);
+                blocked.countDown();
+            }
+        });
+        release.start();
+
+        dispatcher.runNow(createExecution("project"), runner);
+
+        release.join();
+        assertThat(max.get(), is(1));
+    }
+
+    @Test
+    public void release_shouldRemoveQueuedExecutionsOfTheRunner() throws Exception {
+        dispatcher = new ExecutionDispatcher("test", WorkerNode.local(1));
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ExecutionDispatcher.ExecutionRunner blocking = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ExecutionDispatcher.ExecutionRunner released = new ExecutionDispatcher.ExecutionRunner() {
+            @Override
+            public void run(MavenExecution execution, WorkerNode node) {
+            }
+        };
+        try {
+            dispatcher.submit(createExecution("running"), blocking);
+            sleep(50);
+            dispatcher.submit(createExecution("stays"), blocking);
+            MavenExecution removed = createExecution("removed", "removed", 0);
+            dispatcher.submit(removed, released);
+            dispatcher.setQuota(released, 1);
+
+            assertThat(dispatcher.release(released), is(Arrays.asList(removed)));
+            assertThat(dispatcher.getQueueLength(), is(1));
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    private static MavenExecution createExecution(String project, String id, long expectedMillis) {
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(new File(project));
+        MavenExecution execution = new MavenExecution(id, null, path, MavenOperation.BUILD);
+        execution.setExpectedMillis(expectedMillis);
+        return execution;
+    }
+
+    private static MavenExecution createExecution(String project) {
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(new File(project));
+        return new MavenExecution("id", null, path, MavenOperation.BUILD);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
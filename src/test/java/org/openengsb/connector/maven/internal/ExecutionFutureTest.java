@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class ExecutionFutureTest {
+
+    private final ExecutionFuture future = new ExecutionFuture("id", 2);
+
+    @Test
+    public void allOperationsFinished_shouldCompleteFuture() throws Exception {
+        future.operationFinished(new OperationResult(MavenOperation.BUILD, true, "built"));
+        assertThat(future.isDone(), is(false));
+
+        future.operationFinished(new OperationResult(MavenOperation.TEST, false, "failed"));
+
+        assertThat(future.isDone(), is(true));
+        assertThat(future.get().size(), is(2));
+        assertThat(future.get().get(1).getOutput(), is("failed"));
+        assertThat(future.isSuccess(), is(false));
+    }
+
+    @Test
+    public void listener_shouldReceiveProgressAndResult() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        future.addListener(listener);
+
+        future.operationStarted(MavenOperation.BUILD);
+        future.lineRead("[INFO] BUILD SUCCESS");
+        future.operationFinished(new OperationResult(MavenOperation.BUILD, true, ""));
+        future.operationStarted(MavenOperation.TEST);
+        future.operationFinished(new OperationResult(MavenOperation.TEST, true, ""));
+
+        assertThat(listener.events.toString(), is("[started BUILD, line [INFO] BUILD SUCCESS, BUILD succeeded, "
+                + "started TEST, TEST succeeded, finished 2]"));
+    }
+
+    @Test
+    public void listenerAddedAfterCompletion_shouldBeInformedAtOnce() throws Exception {
+        future.operationFinished(new OperationResult(MavenOperation.BUILD, true, ""));
+        future.operationFinished(new OperationResult(MavenOperation.TEST, true, ""));
+        RecordingListener listener = new RecordingListener();
+
+        future.addListener(listener);
+
+        assertThat(listener.events.toString(), is("[finished 2]"));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void unfinishedExecution_shouldTimeOut() throws Exception {
+        future.get(10, TimeUnit.MILLISECONDS);
+    }
+
+    private static class RecordingListener implements ExecutionListener {
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void operationStarted(MavenOperation operation) {
+            events.add("started " + operation);
+        }
+
+        @Override
+        public void lineRead(String line) {
+            events.add("line " + line);
+        }
+
+        @Override
+        public void operationFinished(OperationResult result) {
+            events.add(result.toString());
+        }
+
+        @Override
+        public void executionFinished(List<OperationResult> results) {
+            events.add("finished " + results.size());
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+
+public class ExecutionJournalTest {
+
+    private File directory;
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "maven-journal-test");
+        FileUtils.deleteDirectory(directory);
+        journalFile = new File(directory, "test.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void reopen_shouldReturnUnfinishedExecutions() throws Exception {
+        ExecutionJournal journal = new ExecutionJournal(journalFile, 4096, 5);
+        MavenExecution finished = createExecution("finished", null, MavenOperation.BUILD);
+        MavenExecution started = createExecution("started", null, MavenOperation.TEST);
+        MavenExecution queued = createExecution(null, 42L, MavenOperation.DEPLOY);
+        queued.setContextId("context");
+        journal.submitted(finished);
+        journal.submitted(started);
+        journal.submitted(queued);
+        journal.started(finished);
+        journal.started(started);
+        journal.finished(finished);
+        journal.close();
+
+        List<MavenExecution> incomplete = new ExecutionJournal(journalFile, 4096, 5).getIncompleteExecutions();
+
+        assertThat(incomplete.size(), is(2));
+        assertThat(incomplete.get(0).getId(), is("started"));
+        assertThat(incomplete.get(0).getOperations(), is(Arrays.asList(MavenOperation.TEST)));
+        assertThat(incomplete.get(1).getProcessId(), is(42L));
+        assertThat(incomplete.get(1).getKey(), is(queued.getKey()));
+        assertThat(incomplete.get(1).getContextId(), is("context"));
+        assertThat(incomplete.get(1).getPath().getFile(), is(queued.getPath().getFile().getAbsoluteFile()));
+    }
+
+    @Test
+    public void reopen_shouldRestoreJournalLeftBeforeRename() throws Exception {
+        ExecutionJournal journal = new ExecutionJournal(journalFile, 4096, 5);
+        journal.submitted(createExecution("queued", null, MavenOperation.BUILD));
+        journal.close();
+        FileUtils.moveFile(journalFile, new File(journalFile.getPath() + ".new"));
+
+        List<MavenExecution> incomplete = new ExecutionJournal(journalFile, 4096, 5).getIncompleteExecutions();
+
+        assertThat(incomplete.size(), is(1));
+        assertThat(incomplete.get(0).getId(), is("queued"));
+    }
+
+    @Test
+    public void reopen_shouldRestoreExecutionOptions() throws Exception {
+        MavenExecution execution = createExecution("rerun", null, MavenOperation.TEST);
+        execution.setFailedTestsOnly(true);
+        execution.setModules(Arrays.asList("core", "api"));
+        execution.setToolchain(new MavenToolchain("3.0.4", "mvn", new File(directory, "mvn.jsa")));
+        MavenExecution plain = createExecution("plain", null, MavenOperation.TEST);
+        ExecutionJournal journal = new ExecutionJournal(journalFile, 4096, 5);
+        journal.submitted(execution);
+        journal.submitted(plain);
+        journal.close();
+
+        ExecutionJournal reopened = new ExecutionJournal(journalFile, 4096, 5);
+        List<MavenExecution> incomplete = reopened.getIncompleteExecutions();
+
+        assertThat(incomplete.get(0).isFailedTestsOnly(), is(true));
+        assertThat(incomplete.get(0).getModules(), is(Arrays.asList("core", "api")));
+        assertThat(reopened.getToolchainVersion(incomplete.get(0)), is("3.0.4"));
+        assertThat(incomplete.get(1).isFailedTestsOnly(), is(false));
+        assertThat(incomplete.get(1).getModules().isEmpty(), is(true));
+        assertThat(reopened.getToolchainVersion(incomplete.get(1)), nullValue());
+    }
+
+    @Test
+    public void reopen_shouldRestoreBatchMembers() throws Exception {
+        MavenExecution first = createExecution("first", new File(directory, "first"));
+        MavenExecution second = createExecution("second", new File(directory, "second"));
+        BatchBuild batch = new BatchBuild(new File(directory, "batches"), Arrays.asList(first, second));
+        OpenEngSBFileModel batchPath = new OpenEngSBFileModel();
+        batchPath.setFile(batch.getDirectory());
+        MavenExecution execution = new MavenExecution("batch", null, batchPath, MavenOperation.BUILD);
+        execution.setBatch(batch);
+        ExecutionJournal journal = new ExecutionJournal(journalFile, 4096, 5);
+        journal.submitted(execution);
+        journal.close();
+
+        List<MavenExecution> incomplete = new ExecutionJournal(journalFile, 4096, 5).getIncompleteExecutions();
+
+        BatchBuild restored = incomplete.get(0).getBatch();
+        assertThat(restored.getDirectory(), is(batch.getDirectory()));
+        assertThat(restored.getMembers().size(), is(2));
+        assertThat(restored.getMembers().get(0).getId(), is("first"));
+        assertThat(restored.getMembers().get(1).getPath().getFile(), is(second.getPath().getFile()));
+    }
+
+    @Test
+    public void fullJournal_shouldBeCompacted() throws Exception {
+        ExecutionJournal journal = new ExecutionJournal(journalFile, 512, 1);
+        MavenExecution pending = createExecution("pending", null, MavenOperation.BUILD);
+        journal.submitted(pending);
+        for (int i = 0; i < 100; i++) {
+            MavenExecution execution = createExecution("execution" + i, null, MavenOperation.BUILD);
+            journal.submitted(execution);
+            journal.started(execution);
+            journal.finished(execution);
+        }
+        journal.close();
+
+        List<MavenExecution> incomplete = new ExecutionJournal(journalFile, 512, 1).getIncompleteExecutions();
+
+        assertThat(incomplete.size(), is(1));
+        assertThat(incomplete.get(0).getId(), is("pending"));
+    }
+
+    private static MavenExecution createExecution(String id, Long processId, MavenOperation operation) {
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(new File("project"));
+        return new MavenExecution(id, processId, path, operation);
+    }
+
+    private static MavenExecution createExecution(String id, File project) throws IOException {
+        FileUtils.writeStringToFile(new File(project, "pom.xml"), "<project><artifactId>" + id
+                + "</artifactId></project>", "UTF-8");
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(project.getAbsoluteFile());
+        return new MavenExecution(id, null, path, MavenOperation.BUILD);
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.openengsb.core.api.AliveState;
+
+public class HealthMonitorTest {
+
+    private final HealthMonitor monitor = new HealthMonitor(1000);
+
+    @Test
+    public void healthySignals_shouldBeOnline() {
+        assertThat(monitor.update(new HealthMonitor.Signals(), 0), is(AliveState.ONLINE));
+    }
+
+    @Test
+    public void missingInstallation_shouldGoOfflineAtOnce() {
+        assertThat(monitor.update(new HealthMonitor.Signals().installed(false), 0), is(AliveState.OFFLINE));
+    }
+
+    @Test
+    public void fullDisk_shouldGoOffline() {
+        assertThat(monitor.update(new HealthMonitor.Signals().freeDisk(1024), 0), is(AliveState.OFFLINE));
+    }
+
+    @Test
+    public void stuckExecutions_shouldDegradeByShareOfSlots() {
+        assertThat(monitor.update(new HealthMonitor.Signals().stuckExecutions(1, 2), 0), is(AliveState.CONNECTING));
+        assertThat(monitor.update(new HealthMonitor.Signals().stuckExecutions(2, 2), 0), is(AliveState.OFFLINE));
+    }
+
+    @Test
+    public void recovery_shouldWaitForRecoveryPeriod() {
+        monitor.update(new HealthMonitor.Signals().installed(false), 0);
+
+        assertThat(monitor.update(new HealthMonitor.Signals(), 100), is(AliveState.OFFLINE));
+        assertThat(monitor.update(new HealthMonitor.Signals(), 900), is(AliveState.OFFLINE));
+        assertThat(monitor.update(new HealthMonitor.Signals(), 1100), is(AliveState.ONLINE));
+    }
+
+    @Test
+    public void relapseDuringRecovery_shouldRestartRecoveryPeriod() {
+        monitor.update(new HealthMonitor.Signals().installed(false), 0);
+        monitor.update(new HealthMonitor.Signals(), 100);
+        monitor.update(new HealthMonitor.Signals().installed(false), 600);
+
+        assertThat(monitor.update(new HealthMonitor.Signals(), 1200), is(AliveState.OFFLINE));
+        assertThat(monitor.update(new HealthMonitor.Signals(), 2200), is(AliveState.ONLINE));
+    }
+
+    @Test
+    public void saturatedQueue_shouldStayConnectingUntilDrained() {
+        assertThat(monitor.update(new HealthMonitor.Signals().queue(10, 10), 0), is(AliveState.CONNECTING));
+
+        assertThat(monitor.update(new HealthMonitor.Signals().queue(9, 10), 2000), is(AliveState.CONNECTING));
+        assertThat(monitor.update(new HealthMonitor.Signals().queue(9, 10), 4000), is(AliveState.CONNECTING));
+        monitor.update(new HealthMonitor.Signals().queue(7, 10), 5000);
+        assertThat(monitor.update(new HealthMonitor.Signals().queue(7, 10), 6000), is(AliveState.ONLINE));
+    }
+
+    @Test
+    public void queueWithoutLimit_shouldUseDefaultLimitPerSlot() {
+        HealthMonitor.Signals signals = new HealthMonitor.Signals().stuckExecutions(0, 2)
+            .queue(2 * HealthMonitor.DEFAULT_QUEUE_LIMIT_PER_SLOT, 0);
+
+        assertThat(monitor.update(signals, 0), is(AliveState.CONNECTING));
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MavenCommandTemplateTest {
+
+    @Test
+    public void compile_shouldParseGoalsProfilesAndProperties() {
+        MavenCommandTemplate template = MavenCommandTemplate.compile("clean  install -P ci,release -DskipTests -D a=b");
+        assertThat(template.getGoals(), is(Arrays.asList("clean", "install")));
+        assertThat(template.getProfiles(), is(Arrays.asList("ci", "release")));
+        assertThat(template.getProperties().containsKey("skipTests"), is(true));
+        assertThat(template.getProperties().get("a"), is("b"));
+    }
+
+    @Test
+    public void compile_shouldKeepQuotedArguments() {
+        MavenCommandTemplate template = MavenCommandTemplate.compile("install \"-Dmessage=a b\"");
+        assertThat(template.toArguments(new HashMap<String, String>()), is(Arrays.asList("install",
+            "-Dmessage=a b")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectUnbalancedQuotes() {
+        MavenCommandTemplate.compile("install \"-Dmessage=a b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectUnknownPlaceholders() {
+        MavenCommandTemplate.compile("install -Dx=${unknown}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectMissingOptionValue() {
+        MavenCommandTemplate.compile("install -pl");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_shouldRejectCommandsWithoutGoal() {
+        MavenCommandTemplate.compile("-o -q");
+    }
+
+    @Test
+    public void toArguments_shouldReplacePlaceholders() {
+        MavenCommandTemplate template = MavenCommandTemplate.compile("install -Dctx=${contextId} -f ${path}/pom.xml");
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put("contextId", "foo");
+        variables.put("path", "/tmp/project");
+        assertThat(template.toArguments(variables), is(Arrays.asList("install", "-Dctx=foo", "-f",
+            "/tmp/project/pom.xml")));
+    }
+
+    @Test
+    public void withOption_shouldNotOverrideExplicitOption() {
+        MavenCommandTemplate template = MavenCommandTemplate.compile("install -T4");
+        MavenCommandTemplate result = template.withOption(Arrays.asList("-T", "--threads"), "-T", "1C");
+        assertThat(result.toString(), is("install -T4"));
+        assertThat(template.withOption(Arrays.asList("-o", "--offline"), "-o").toString(), is("install -T4 -o"));
+    }
+
+    @Test
+    public void overrideProperty_shouldReplaceConfiguredValue() {
+        MavenCommandTemplate template = MavenCommandTemplate.compile("test -Dtest=Slow*");
+        assertThat(template.overrideProperty("test", "FastTest").toString(), is("test -Dtest=FastTest"));
+    }
+
+    @Test
+    public void hasOption_shouldOnlyAcceptAttachedValuesForOptionsTakingValues() {
+        MavenCommandTemplate template = MavenCommandTemplate.compile("install -fae -T4");
+        assertThat(template.hasOption(Arrays.asList("-f", "--file")), is(false));
+        assertThat(template.hasOption(Arrays.asList("-T", "--threads")), is(true));
+        assertThat(template.hasOption(Arrays.asList("-fae", "--fail-at-end")), is(true));
+    }
+
+    @Test
+    public void merge_shouldCollapsePhases() {
+        MavenCommandTemplate merged = merge("clean compile", "test", "deploy");
+        assertThat(merged.toString(), is("clean deploy"));
+    }
+
+    @Test
+    public void merge_shouldKeepOptionsOnce() {
+        MavenCommandTemplate merged = merge("compile -o -P ci", "test -o", "install -P ci -DskipITs");
+        assertThat(merged.toString(), is("install -Pci -DskipITs -o"));
+    }
+
+    @Test
+    public void merge_shouldKeepPluginGoals() {
+        MavenCommandTemplate merged = merge("compile", "test sonar:sonar", "deploy");
+        assertThat(merged.toString(), is("deploy sonar:sonar"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_shouldRejectConflictingProperties() {
+        merge("compile -Denv=dev", "test", "deploy -Denv=prod");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_shouldRejectSkippedTests() {
+        merge("compile -DskipTests", "test", "deploy");
+    }
+
+    @Test
+    public void merge_shouldAllowExplicitlyEnabledTests() {
+        assertThat(merge("compile", "test -DskipTests=false", "deploy").toString(), is("deploy -DskipTests=false"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_shouldRejectQuietOutput() {
+        merge("compile", "test", "deploy --quiet");
+    }
+
+    @Test
+    public void getHighestPhaseIndex_shouldIgnoreOptionValues() {
+        assertThat(MavenCommandTemplate.compile("compile -pl test").getHighestPhaseIndex(),
+            is(MavenLifecycle.phaseIndex("compile")));
+    }
+
+    private static MavenCommandTemplate merge(String... commands) {
+        MavenCommandTemplate[] templates = new MavenCommandTemplate[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            templates[i] = MavenCommandTemplate.compile(commands[i]);
+        }
+        return MavenCommandTemplate.merge(Arrays.asList(templates));
+    }
+
+}
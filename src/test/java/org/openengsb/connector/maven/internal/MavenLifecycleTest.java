@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class MavenLifecycleTest {
+
+    @Test
+    public void phaseIndexOfMojoStart_shouldDetectSurefire() {
+        String line = "[INFO] --- maven-surefire-plugin:2.5:test (default-test) @ test-unit-success ---";
+        assertThat(MavenLifecycle.phaseIndexOfMojoStart(line), is(MavenLifecycle.phaseIndex("test")));
+    }
+
+    @Test
+    public void phaseIndexOfMojoStart_shouldIgnoreOtherLines() {
+        assertThat(MavenLifecycle.phaseIndexOfMojoStart("[INFO] BUILD SUCCESS"), is(-1));
+    }
+
+}
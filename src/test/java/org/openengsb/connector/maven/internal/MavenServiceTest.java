@@ -29,7 +29,12 @@ import static org.mockito.Mockito.verify;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -56,6 +61,8 @@ import org.openengsb.domain.test.TestSuccessEvent;
 
 public class MavenServiceTest {
 
+    private static final long RECOVERY_MILLIS = 50;
+
     private MavenServiceImpl mavenService;
     private TestDomainEvents testEvents;
     private BuildDomainEvents buildEvents;
@@ -142,6 +149,35 @@ public class MavenServiceTest {
         verify(deployEvents).raiseEvent(refEq(new DeploySuccessEvent(id, null), "output"));
     }
 
+    @Test
+    public void pipeline_shouldRaiseEventsForAllDomains() {
+        mavenService.setCommand(MavenOperation.BUILD, "clean compile");
+        mavenService.setCommand(MavenOperation.TEST, "test");
+        mavenService.setCommand(MavenOperation.DEPLOY, "install");
+        String id = mavenService.runPipeline(getFileModel("test-unit-success"));
+        ArgumentCaptor<BuildSuccessEvent> buildCaptor = ArgumentCaptor.forClass(BuildSuccessEvent.class);
+
+        verify(buildEvents).raiseEvent(any(BuildStartEvent.class));
+        verify(buildEvents).raiseEvent(buildCaptor.capture());
+        assertThat(buildCaptor.getValue().getBuildId(), is(id));
+        verify(testEvents).raiseTestStartEvent(any(TestStartEvent.class));
+        verify(testEvents).raiseTestSuccessEvent(any(TestSuccessEvent.class));
+        verify(deployEvents).raiseEvent(any(DeployStartEvent.class));
+        verify(deployEvents).raiseEvent(refEq(new DeploySuccessEvent(id, null), "output"));
+    }
+
+    @Test
+    public void buildOnWorkerNodes_shouldRaiseSuccessEvent() {
+        mavenService.setNodes(WorkerNode.parse("node1=env;node2=env", 1));
+        mavenService.setCommand("clean compile");
+        mavenService.build(getFileModel("test-unit-success"));
+        ArgumentCaptor<BuildSuccessEvent> argumentCaptor = ArgumentCaptor.forClass(BuildSuccessEvent.class);
+
+        verify(buildEvents).raiseEvent(any(BuildStartEvent.class));
+        verify(buildEvents).raiseEvent(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getOutput(), containsString("SUCCESS"));
+    }
+
     @Ignore("no idea why this fails, it works from cmd-line")
     @Test
     public void testTestFail() {
@@ -156,6 +192,81 @@ public class MavenServiceTest {
         assertThat(mavenService.getAliveState(), is(AliveState.ONLINE));
     }
 
+    @Test
+    public void buildAsync_shouldCompleteWithResult() throws Exception {
+        mavenService.setCommand("clean compile");
+        ExecutionFuture future = mavenService.buildAsync(getFileModel("test-unit-success"));
+
+        List<OperationResult> results = future.get(60, TimeUnit.SECONDS);
+
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0).isSuccess(), is(true));
+        verify(buildEvents).raiseEvent(any(BuildSuccessEvent.class));
+    }
+
+    @Test
+    public void warmup_shouldReportConnectingUntilDone() throws Exception {
+        SharedExecutionService executionService = new SharedExecutionService();
+        CountDownLatch blocked = blockWarmups(executionService);
+        try {
+            MavenServiceImpl service = new MavenServiceImpl("warmup", executionService);
+            service.setHealthMonitor(new HealthMonitor(RECOVERY_MILLIS));
+            service.warmup(Collections.<File>emptyList());
+            assertThat(service.getAliveState(), is(AliveState.CONNECTING));
+
+            blocked.countDown();
+
+            assertThat(awaitAliveState(service, AliveState.ONLINE), is(true));
+        } finally {
+            blocked.countDown();
+            executionService.destroy();
+        }
+    }
+
+    @Test
+    public void warmupOfSameProjects_shouldBeSkipped() throws Exception {
+        SharedExecutionService executionService = new SharedExecutionService();
+        MavenServiceImpl service = new MavenServiceImpl("warmup", executionService);
+        service.setHealthMonitor(new HealthMonitor(RECOVERY_MILLIS));
+        service.warmup(Collections.<File>emptyList());
+        assertThat(awaitAliveState(service, AliveState.ONLINE), is(true));
+        CountDownLatch blocked = blockWarmups(executionService);
+        try {
+            service.warmup(Collections.<File>emptyList());
+
+            assertThat(service.getAliveState(), is(AliveState.ONLINE));
+        } finally {
+            blocked.countDown();
+            executionService.destroy();
+        }
+    }
+
+    private static CountDownLatch blockWarmups(SharedExecutionService executionService) {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executionService.getWarmupExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return blocked;
+    }
+
+    private static boolean awaitAliveState(MavenServiceImpl service, AliveState state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RECOVERY_MILLIS * 100;
+        while (service.getAliveState() != state) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
     @Test
     public void build_shouldWriteLogFile() throws Exception {
         mavenService.setUseLogFile(true);
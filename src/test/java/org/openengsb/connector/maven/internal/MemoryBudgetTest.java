@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void acquireWithoutBudget_shouldNotReserve() throws Exception {
+        MemoryBudget budget = new MemoryBudget();
+        assertThat(budget.acquire(1024), is(0L));
+    }
+
+    @Test
+    public void acquireMoreThanBudget_shouldReserveWholeBudget() throws Exception {
+        MemoryBudget budget = new MemoryBudget();
+        budget.setTotal(1000);
+        assertThat(budget.acquire(4000), is(1000L));
+    }
+
+    @Test
+    public void acquireWithExhaustedBudget_shouldWaitForRelease() throws Exception {
+        final MemoryBudget budget = new MemoryBudget();
+        budget.setTotal(1000);
+        long first = budget.acquire(800);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    budget.acquire(400);
+                    acquired.countDown();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }.start();
+        assertThat(acquired.await(200, TimeUnit.MILLISECONDS), is(false));
+        budget.release(first);
+        assertThat(acquired.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(budget.getUsed(), is(400L));
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessTreeSamplerTest {
+
+    private File proc;
+
+    @Before
+    public void setUp() throws Exception {
+        proc = new File(FileUtils.getTempDirectory(), "maven-process-tree-test").getAbsoluteFile();
+        FileUtils.deleteDirectory(proc);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(proc);
+    }
+
+    private void writeProcess(long pid, long parent, long cpuTicks, long rssKb, long read, long written)
+        throws IOException {
+        FileUtils.writeStringToFile(new File(proc, pid + "/stat"), pid + " (java (main)) S " + parent
+                + " 1 1 0 -1 4194560 100 0 0 0 " + cpuTicks + " 0 0 0 20 0 1 0 " + (1000 + pid) + " 0 0");
+        FileUtils.writeStringToFile(new File(proc, pid + "/status"), "Name:\tjava\nVmRSS:\t  " + rssKb + " kB\n");
+        FileUtils.writeStringToFile(new File(proc, pid + "/io"), "rchar: 1\nwchar: 1\nread_bytes: " + read
+                + "\nwrite_bytes: " + written + "\n");
+    }
+
+    private void writeChildren(long pid, long task, String children) throws IOException {
+        FileUtils.writeStringToFile(new File(proc, pid + "/task/" + task + "/children"), children);
+    }
+
+    @Test
+    public void sample_shouldSumTheProcessTree() throws Exception {
+        writeProcess(100, 1, 150, 1024, 100, 200);
+        writeProcess(101, 100, 50, 512, 10, 20);
+        writeProcess(200, 1, 999, 999, 999, 999);
+        writeChildren(100, 100, "");
+        writeChildren(100, 102, "101 ");
+        writeChildren(101, 101, "");
+        ProcessTreeSampler sampler = new ProcessTreeSampler(proc, 100);
+
+        sampler.sample();
+
+        ResourceUsage usage = sampler.getUsage();
+        assertThat(usage.getCpuMillis(), is(2000L));
+        assertThat(usage.getPeakMemory(), is(1536 * 1024L));
+        assertThat(usage.getBytesRead(), is(110L));
+        assertThat(usage.getBytesWritten(), is(220L));
+        assertThat(usage.getChildProcesses(), is(1));
+    }
+
+    @Test
+    public void endedProcess_shouldKeepItsLastSample() throws Exception {
+        writeProcess(100, 1, 10, 1024, 0, 0);
+        writeProcess(101, 100, 30, 4096, 0, 0);
+        ProcessTreeSampler sampler = new ProcessTreeSampler(proc, 100);
+        sampler.sample();
+        FileUtils.deleteDirectory(new File(proc, "101"));
+        writeProcess(100, 1, 20, 1024, 0, 0);
+
+        sampler.sample();
+
+        ResourceUsage usage = sampler.getUsage();
+        assertThat(usage.getCpuMillis(), is(500L));
+        assertThat(usage.getPeakMemory(), is(5120 * 1024L));
+        assertThat(usage.getChildProcesses(), is(1));
+    }
+
+    @Test
+    public void missingChildrenFiles_shouldScanAllProcesses() throws Exception {
+        writeProcess(100, 1, 10, 0, 0, 0);
+        writeProcess(101, 100, 10, 0, 0, 0);
+        writeProcess(102, 101, 10, 0, 0, 0);
+        writeProcess(103, 1, 10, 0, 0, 0);
+        ProcessTreeSampler sampler = new ProcessTreeSampler(proc, 100);
+
+        sampler.sample();
+
+        assertThat(sampler.getUsage().getChildProcesses(), is(2));
+    }
+
+    @Test
+    public void plus_shouldAddUpAndKeepThePeak() throws Exception {
+        ResourceUsage usage = new ResourceUsage(1000, 300, 1, 2, 3).plus(new ResourceUsage(500, 200, 1, 1, 1));
+
+        assertThat(usage.getCpuMillis(), is(1500L));
+        assertThat(usage.getPeakMemory(), is(300L));
+        assertThat(usage.getBytesWritten(), is(3L));
+        assertThat(usage.getChildProcesses(), is(4));
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProjectWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File project;
+    private ProjectWatcher watcher;
+    private final List<Set<String>> changes = Collections.synchronizedList(new ArrayList<Set<String>>());
+
+    @Before
+    public void setUp() throws Exception {
+        project = folder.newFolder("project").getAbsoluteFile();
+        FileUtils.writeStringToFile(new File(project, "pom.xml"), "<project/>");
+        FileUtils.writeStringToFile(new File(project, "a/pom.xml"), "<project/>");
+        FileUtils.writeStringToFile(new File(project, "a/src/main/java/A.java"), "class A {}");
+        FileUtils.writeStringToFile(new File(project, "b/pom.xml"), "<project/>");
+        watcher = new ProjectWatcher(20, 100, new ProjectWatcher.ChangeListener() {
+            @Override
+            public boolean projectChanged(File changed, Set<String> modules) {
+                changes.add(modules);
+                return true;
+            }
+        });
+        watcher.setProjects(Arrays.asList(project));
+        watcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+    }
+
+    @Test
+    public void burstOfChanges_shouldBeReportedOnceWithChangedModules() throws Exception {
+        FileUtils.writeStringToFile(new File(project, "a/src/main/java/A.java"), "class A { int a; }");
+        FileUtils.writeStringToFile(new File(project, "a/src/main/java/B.java"), "class B {}");
+        FileUtils.writeStringToFile(new File(project, "b/src/main/java/C.java"), "class C {}");
+
+        assertThat(awaitChange(), is((Set<String>) new TreeSet<String>(Arrays.asList("a", "b"))));
+    }
+
+    @Test
+    public void buildOutput_shouldBeIgnored() throws Exception {
+        FileUtils.writeStringToFile(new File(project, "a/target/classes/A.class"), "");
+        FileUtils.writeStringToFile(new File(project, "b/src/main/java/C.java"), "class C {}");
+
+        assertThat(awaitChange(), is((Set<String>) new TreeSet<String>(Arrays.asList("b"))));
+    }
+
+    @Test
+    public void findModule_shouldReturnRootForFilesOutsideModules() {
+        assertThat(ProjectWatcher.findModule(project, new File(project, "a/src/main/java/A.java")), is("a"));
+        assertThat(ProjectWatcher.findModule(project, new File(project, "a/pom.xml")), is("a"));
+        assertThat(ProjectWatcher.findModule(project, new File(project, "pom.xml")), is(""));
+        assertThat(ProjectWatcher.findModule(project, new File(project, "src/site/index.apt")), is(""));
+    }
+
+    /**
+     * Waits for the first reported change and returns its modules, failing if there is none or more than one.
+     */
+    private Set<String> awaitChange() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (changes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(changes.size(), is(1));
+        return changes.get(0);
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedExecutionServiceTest {
+
+    private static final List<String> UPSTREAMS = Arrays.asList("http://localhost:1/repository/");
+
+    private SharedExecutionService service;
+
+    @Before
+    public void setUp() {
+        service = new SharedExecutionService();
+    }
+
+    @After
+    public void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    public void acquireArtifactProxy_shouldShareTheProxy() throws Exception {
+        ArtifactProxy first = service.acquireArtifactProxy(UPSTREAMS);
+        ArtifactProxy second = service.acquireArtifactProxy(UPSTREAMS);
+        assertThat(second, sameInstance(first));
+    }
+
+    @Test
+    public void releaseArtifactProxy_shouldStopTheProxyWithTheLastUser() throws Exception {
+        ArtifactProxy proxy = service.acquireArtifactProxy(UPSTREAMS);
+        service.acquireArtifactProxy(UPSTREAMS);
+
+        service.releaseArtifactProxy(proxy);
+        assertThat(isRunning(proxy), is(true));
+
+        service.releaseArtifactProxy(proxy);
+        assertThat(isRunning(proxy), is(false));
+        assertThat(service.acquireArtifactProxy(UPSTREAMS) == proxy, is(false));
+    }
+
+    private static boolean isRunning(ArtifactProxy proxy) {
+        try {
+            proxy.getUrl();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+}
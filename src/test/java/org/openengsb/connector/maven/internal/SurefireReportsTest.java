@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SurefireReportsTest {
+
+    private File project;
+
+    @Before
+    public void setUp() throws Exception {
+        project = new File(FileUtils.getTempDirectory(), "surefire-reports-test");
+        FileUtils.deleteDirectory(project);
+        writeReport("target/surefire-reports/TEST-a.BTest.xml", "<testsuite name=\"a.BTest\">"
+                + "<testcase classname=\"a.BTest\" name=\"passes\"/>"
+                + "<testcase classname=\"a.BTest\" name=\"fails\"><failure message=\"x\">trace</failure></testcase>"
+                + "<testcase classname=\"a.BTest\" name=\"errs[1]\"><error type=\"E\"/></testcase>"
+                + "</testsuite>");
+        writeReport("module/target/failsafe-reports/TEST-c.DIT.xml", "<testsuite name=\"c.DIT\">"
+                + "<testcase classname=\"c.DIT\" name=\"deploys()\"><failure/></testcase></testsuite>");
+        writeReport("module/target/surefire-reports/other.xml", "<testsuite>"
+                + "<testcase classname=\"e.F\" name=\"ignored\"><failure/></testcase></testsuite>");
+    }
+
+    private void writeReport(String path, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(project, path), content);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(project);
+    }
+
+    @Test
+    public void findFailedTests_shouldCollectFailuresAndErrorsOfAllModules() {
+        Set<String> result = SurefireReports.findFailedTests(project, 0);
+
+        assertThat(result, is((Set<String>) new LinkedHashSet<String>(
+            Arrays.asList("a.BTest#fails", "a.BTest#errs", "c.DIT#deploys"))));
+    }
+
+    @Test
+    public void findFailedTests_shouldIgnoreOldReports() {
+        Set<String> result = SurefireReports.findFailedTests(project, System.currentTimeMillis() + 60000);
+
+        assertThat(result.isEmpty(), is(true));
+    }
+
+    @Test
+    public void toTestFilter_shouldGroupMethodsByClass() {
+        String result = SurefireReports.toTestFilter(Arrays.asList("a.B#one", "c.D#three", "a.B#two"));
+
+        assertThat(result, is("a.B#one+two,c.D#three"));
+    }
+
+    @Test
+    public void toTestFilter_shouldReturnEmptyFilterForNoTests() {
+        assertThat(SurefireReports.toTestFilter(Collections.<String> emptyList()), is(""));
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openengsb.core.api.model.OpenEngSBFileModel;
+
+public class TestAccelerationTest {
+
+    private final TestAcceleration acceleration = new TestAcceleration();
+
+    @Test
+    public void forks_shouldShareCoresWithConcurrentExecutions() {
+        acceleration.setMode(TestAcceleration.Mode.FORKS);
+
+        Map<String, String> properties =
+            acceleration.tune(MavenCommandTemplate.compile("test"), 8, 2).getProperties();
+
+        assertThat(properties.get("forkCount"), is("4"));
+        assertThat(properties.get("reuseForks"), is("true"));
+        assertThat(properties.get("surefire.runOrder"), is("balanced"));
+        assertThat(properties.containsKey("parallel"), is(false));
+    }
+
+    @Test
+    public void parallel_shouldAddThreadsPerFork() {
+        acceleration.setMode(TestAcceleration.Mode.PARALLEL);
+
+        Map<String, String> properties =
+            acceleration.tune(MavenCommandTemplate.compile("test"), 8, 1).getProperties();
+
+        assertThat(properties.get("forkCount"), is("4"));
+        assertThat(properties.get("parallel"), is("classes"));
+        assertThat(properties.get("threadCount"), is("2"));
+        assertThat(properties.get("surefire.runOrder"), is("balanced"));
+    }
+
+    @Test
+    public void settingsOfTheCommand_shouldBeKept() {
+        acceleration.setMode(TestAcceleration.Mode.FORKS);
+
+        Map<String, String> properties =
+            acceleration.tune(MavenCommandTemplate.compile("test -DforkCount=1"), 8, 1).getProperties();
+
+        assertThat(properties.get("forkCount"), is("1"));
+    }
+
+    @Test
+    public void unsafeProject_shouldNotBeAccelerated() {
+        acceleration.setMode(TestAcceleration.Mode.FORKS);
+        MavenExecution execution = createExecution(MavenOperation.TEST);
+        assertThat(acceleration.isApplicable(execution), is(true));
+
+        acceleration.markUnsafe(execution.getPath().getFile());
+
+        assertThat(acceleration.isApplicable(execution), is(false));
+    }
+
+    @Test
+    public void otherOperations_shouldNotBeAccelerated() {
+        acceleration.setMode(TestAcceleration.Mode.FORKS);
+
+        assertThat(acceleration.isApplicable(createExecution(MavenOperation.BUILD)), is(false));
+    }
+
+    @Test
+    public void isForkFailure_shouldIgnoreOtherFailures() {
+        assertThat(TestAcceleration.isForkFailure("[ERROR] The forked VM terminated without properly saying goodbye."),
+            is(true));
+        assertThat(TestAcceleration.isForkFailure("[ERROR] COMPILATION ERROR"), is(false));
+    }
+
+    private static MavenExecution createExecution(MavenOperation operation) {
+        OpenEngSBFileModel path = new OpenEngSBFileModel();
+        path.setFile(new File("project"));
+        return new MavenExecution("id", null, path, operation);
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingHistoryTest {
+
+    private File directory;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "maven-timings-test");
+        FileUtils.deleteDirectory(directory);
+        file = new File(directory, "project.timings");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void appendedProfiles_shouldBeReadInOrder() throws Exception {
+        TimingHistory history = new TimingHistory(file);
+        history.append(createProfile(1, 100));
+        history.append(createProfile(2, 200));
+
+        List<TimingProfile> profiles = new TimingHistory(file).read();
+
+        assertThat(profiles.size(), is(2));
+        assertThat(profiles.get(1).getTimestamp(), is(2L));
+        TimingProfile.Entry entry = profiles.get(1).getEntries().get(0);
+        assertThat(entry.getModule(), is("core"));
+        assertThat(entry.getMojo(), is("maven-compiler-plugin:compile (default-compile)"));
+        assertThat(entry.getPhaseIndex(), is(MavenLifecycle.phaseIndex("compile")));
+        assertThat(entry.getMillis(), is(200L));
+    }
+
+    @Test
+    public void fullHistory_shouldDropOlderHalf() throws Exception {
+        TimingHistory history = new TimingHistory(file, 1024);
+        for (int i = 0; i < 50; i++) {
+            history.append(createProfile(i, 100));
+        }
+
+        List<TimingProfile> profiles = history.read();
+
+        assertThat(file.length() <= 1024, is(true));
+        assertThat(profiles.get(profiles.size() - 1).getTimestamp(), is(49L));
+    }
+
+    @Test
+    public void slowerLatestRun_shouldBeReportedAsRegression() throws Exception {
+        TimingHistory history = new TimingHistory(file);
+        history.append(createProfile(1, 1000));
+        history.append(createProfile(2, 1200));
+        history.append(createProfile(3, 1100));
+        history.append(createProfile(4, 5000));
+
+        List<TimingHistory.Regression> regressions = history.findRegressions(1.5, 1000);
+
+        assertThat(regressions.size(), is(1));
+        assertThat(regressions.get(0).getBaselineMillis(), is(1100L));
+        assertThat(regressions.get(0).getLatestMillis(), is(5000L));
+    }
+
+    @Test
+    public void smallDifferences_shouldNotBeRegressions() throws Exception {
+        TimingHistory history = new TimingHistory(file);
+        history.append(createProfile(1, 100));
+        history.append(createProfile(2, 400));
+
+        assertThat(history.findRegressions(1.5, 1000).isEmpty(), is(true));
+    }
+
+    private static TimingProfile createProfile(long timestamp, long millis) {
+        return new TimingProfile(timestamp, millis, Arrays.asList(new TimingProfile.Entry("core",
+            "maven-compiler-plugin:compile (default-compile)", MavenLifecycle.phaseIndex("compile"), millis)));
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TimingProfilerTest {
+
+    private static final long MS = 1000000;
+
+    private final TimingProfiler profiler = new TimingProfiler();
+
+    @Test
+    public void mojos_shouldLastUntilTheNextMojo() {
+        profiler.start(0);
+        profiler.lineRead("[INFO] --- maven-resources-plugin:2.5:resources (default-resources) @ core ---", 100 * MS);
+        profiler.lineRead("[INFO] --- maven-compiler-plugin:2.3.2:compile (default-compile) @ core ---", 300 * MS);
+        TimingProfile profile = profiler.finish(1300 * MS);
+
+        List<TimingProfile.Entry> entries = profile.getEntries();
+        assertThat(entries.get(0).getMojo(), is("maven-resources-plugin:resources (default-resources)"));
+        assertThat(entries.get(0).getMillis(), is(200L));
+        assertThat(entries.get(1).getModule(), is("core"));
+        assertThat(entries.get(1).getMillis(), is(1000L));
+        assertThat(profile.getPhaseMillis().get("compile"), is(1000L));
+        assertThat(profile.getTotalMillis(), is(1300L));
+    }
+
+    @Test
+    public void timeBeforeFirstMojoAndDownloads_shouldCountAsResolution() {
+        profiler.start(0);
+        profiler.lineRead("[INFO] Building core 1.0", 100 * MS);
+        profiler.lineRead("[INFO] --- maven-compiler-plugin:2.3.2:compile (default-compile) @ core ---", 400 * MS);
+        profiler.lineRead("Downloading: http://repo/a.jar", 500 * MS);
+        profiler.lineRead("Downloaded: http://repo/a.jar (1 KB at 1 KB/sec)", 700 * MS);
+        profiler.lineRead("[INFO] Compiling 1 source file", 900 * MS);
+        TimingProfile profile = profiler.finish(1000 * MS);
+
+        assertThat(profile.getResolutionMillis(), is(300L + 400L));
+        assertThat(profile.getModuleMillis().get("core"), is(900L));
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ToolchainRegistryTest {
+
+    private File directory;
+    private ToolchainRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "maven-toolchains-test");
+        FileUtils.deleteDirectory(directory);
+        FileUtils.writeStringToFile(new File(directory, "apache-maven-3.0.3/bin/mvn"), "");
+        FileUtils.writeStringToFile(new File(directory, "apache-maven-2.2.1/bin/mvn"), "");
+        registry = new ToolchainRegistry(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void resolve_shouldReturnSystemToolchainForEmptyVersion() throws Exception {
+        MavenToolchain toolchain = registry.resolve("");
+
+        assertThat(toolchain.isSystem(), is(true));
+        assertThat(toolchain, sameInstance(registry.getSystemToolchain()));
+    }
+
+    @Test
+    public void isAvailable_shouldProbeSystemMaven() throws Exception {
+        MavenToolchain missing = new MavenToolchain("", new File(directory, "missing-mvn").getPath(),
+            new File(directory, "missing.jsa"));
+
+        assertThat(missing.isAvailable(), is(false));
+    }
+
+    @Test
+    public void resolve_shouldUseInstalledVersionWithoutDownload() throws Exception {
+        MavenToolchain toolchain = registry.resolve(" 3.0.3 ");
+
+        assertThat(toolchain.getVersion(), is("3.0.3"));
+        assertThat(new File(toolchain.getCommand()).getParentFile().getParentFile().getName(),
+            is("apache-maven-3.0.3"));
+        assertThat(registry.resolve("3.0.3"), sameInstance(toolchain));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resolve_shouldRejectVersionsLeavingTheDirectory() throws Exception {
+        registry.resolve("../3.0.3");
+    }
+
+    @Test
+    public void getInstalledVersions_shouldListInstalledDistributions() {
+        assertThat(registry.getInstalledVersions(), is(Arrays.asList("2.2.1", "3.0.3")));
+    }
+
+}
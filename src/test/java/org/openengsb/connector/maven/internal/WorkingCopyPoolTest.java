@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.connector.maven.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkingCopyPoolTest {
+
+    private File directory;
+    private File source;
+    private WorkingCopyPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(FileUtils.getTempDirectory(), "maven-copies-test");
+        FileUtils.deleteDirectory(directory);
+        source = new File(directory, "project");
+        FileUtils.writeStringToFile(new File(source, "pom.xml"), "<project/>");
+        FileUtils.writeStringToFile(new File(source, "src/main/java/A.java"), "class A {}");
+        FileUtils.writeStringToFile(new File(source, "target/classes/A.class"), "");
+        pool = new WorkingCopyPool(new File(directory, "copies"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void lease_shouldCopySourcesWithoutOutput() throws Exception {
+        File copy = pool.lease(source);
+
+        assertThat(FileUtils.readFileToString(new File(copy, "src/main/java/A.java")), is("class A {}"));
+        assertThat(new File(copy, "pom.xml").isFile(), is(true));
+        assertThat(new File(copy, "target").exists(), is(false));
+    }
+
+    @Test
+    public void leaseTwice_shouldReturnSeparateCopies() throws Exception {
+        File first = pool.lease(source);
+        File second = pool.lease(source);
+
+        assertThat(second, not(first));
+    }
+
+    @Test
+    public void leaseAfterRelease_shouldUpdateCopyAndKeepOutput() throws Exception {
+        File copy = pool.lease(source);
+        FileUtils.writeStringToFile(new File(copy, "target/classes/A.class"), "compiled");
+        pool.release(copy);
+        FileUtils.writeStringToFile(new File(source, "src/main/java/B.java"), "class B {}");
+        FileUtils.forceDelete(new File(source, "src/main/java/A.java"));
+
+        File updated = pool.lease(source);
+
+        assertThat(updated, is(copy));
+        assertThat(new File(copy, "src/main/java/A.java").exists(), is(false));
+        assertThat(FileUtils.readFileToString(new File(copy, "src/main/java/B.java")), is("class B {}"));
+        assertThat(FileUtils.readFileToString(new File(copy, "target/classes/A.class")), is("compiled"));
+    }
+
+    @Test
+    public void newPool_shouldReuseCopiesOnDisk() throws Exception {
+        File copy = pool.lease(source);
+        pool.release(copy);
+
+        File reused = new WorkingCopyPool(new File(directory, "copies")).lease(source);
+
+        assertThat(reused, is(copy));
+    }
+
+}